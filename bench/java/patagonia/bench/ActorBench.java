@@ -0,0 +1,150 @@
+package patagonia.bench;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import patagonia.Actor;
+import patagonia.Actor.Address;
+import patagonia.Actor.Behavior;
+import patagonia.Actor.Effect;
+import patagonia.Actor.Fun;
+import patagonia.Actor.Overflow;
+
+/**
+ * Ping-pong and fan-out throughput of {@link Actor} under different
+ * settings. The baseline is {@code Actor.create(initial, executor)}, which
+ * keeps the original behaviour of one message per scheduling and an
+ * unbounded mailbox.
+ *
+ * <pre>lein with-profile +bench run -m patagonia.bench.ActorBench</pre>
+ */
+public class ActorBench {
+
+    private static final int PAIRS = 2 * Runtime.getRuntime().availableProcessors();
+    private static final int IN_FLIGHT = 64;
+    private static final int EXCHANGES = 20000;
+    private static final int WORKERS = 4 * Runtime.getRuntime().availableProcessors();
+    private static final int FAN_OUT = 2000000;
+
+    static abstract class Setup {
+        final String name;
+
+        Setup(String name) {
+            this.name = name;
+        }
+
+        abstract Address create(Fun<Address, Behavior> initial);
+    }
+
+    public static void main(String[] args) throws Exception {
+        final ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        final Executor shared = Actor.sharedExecutor();
+        Setup[] setups = {
+            new Setup("baseline (1/scheduling, fixed pool)") {
+                Address create(Fun<Address, Behavior> initial) {
+                    return Actor.create(initial, pool);
+                }
+            },
+            new Setup("throughput 5, fixed pool") {
+                Address create(Fun<Address, Behavior> initial) {
+                    return Actor.create(initial, pool, 5, 0, Overflow.DROP);
+                }
+            },
+            new Setup("throughput 5, shared pool") {
+                Address create(Fun<Address, Behavior> initial) {
+                    return Actor.create(initial, shared, 5, 0, Overflow.DROP);
+                }
+            },
+            new Setup("throughput 50, shared pool") {
+                Address create(Fun<Address, Behavior> initial) {
+                    return Actor.create(initial, shared, 50, 0, Overflow.DROP);
+                }
+            },
+            new Setup("throughput 50, shared pool, bounded 1024/BLOCK") {
+                Address create(Fun<Address, Behavior> initial) {
+                    return Actor.create(initial, shared, 50, 1024, Overflow.BLOCK);
+                }
+            },
+        };
+        System.out.println("shared executor: " + shared.getClass().getName());
+        for (int round = 0; round < 2; round++) {
+            System.out.println(round == 0 ? "-- warmup" : "-- measured");
+            for (Setup s : setups) {
+                System.out.printf("%-48s ping-pong %,12.0f msg/s   fan-out %,12.0f msg/s%n",
+                        s.name, pingPong(s), fanOut(s));
+            }
+        }
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Each pair bats {@code IN_FLIGHT} counters back and forth until they
+     * reach zero.
+     */
+    static double pingPong(Setup s) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(PAIRS * IN_FLIGHT);
+        Address[][] pairs = new Address[PAIRS][];
+        for (int p = 0; p < PAIRS; p++) {
+            final Address[] pair = new Address[2];
+            for (int i = 0; i < 2; i++) {
+                final int other = 1 - i;
+                pair[i] = s.create(new Fun<Address, Behavior>() {
+                    public Behavior apply(Address self) {
+                        return new Behavior() {
+                            public Effect apply(Object msg) {
+                                int n = (Integer) msg;
+                                if (n == 0) {
+                                    done.countDown();
+                                } else {
+                                    pair[other].tell(n - 1);
+                                }
+                                return Actor.Stay;
+                            }
+                        };
+                    }
+                });
+            }
+            pairs[p] = pair;
+        }
+        long start = System.nanoTime();
+        for (Address[] pair : pairs) {
+            for (int k = 0; k < IN_FLIGHT; k++) {
+                pair[0].tell(EXCHANGES / IN_FLIGHT);
+            }
+        }
+        done.await();
+        long messages = (long) PAIRS * IN_FLIGHT * (EXCHANGES / IN_FLIGHT + 1);
+        return messages / ((System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * One sender spreads messages round robin over {@code WORKERS} actors.
+     */
+    static double fanOut(Setup s) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(FAN_OUT);
+        Address[] workers = new Address[WORKERS];
+        for (int i = 0; i < WORKERS; i++) {
+            workers[i] = s.create(new Fun<Address, Behavior>() {
+                public Behavior apply(Address self) {
+                    return new Behavior() {
+                        public Effect apply(Object msg) {
+                            done.countDown();
+                            return Actor.Stay;
+                        }
+                    };
+                }
+            });
+        }
+        long start = System.nanoTime();
+        Integer msg = 1;
+        for (int i = 0; i < FAN_OUT; i++) {
+            workers[i % WORKERS].tell(msg);
+        }
+        done.await();
+        return FAN_OUT / ((System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,81 @@
+package patagonia.bench;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import patagonia.edn.binary.BinaryReader;
+import patagonia.edn.binary.BinaryWriter;
+import patagonia.edn.parser.Parser;
+import patagonia.edn.parser.Parsers;
+import patagonia.edn.printer.Printers;
+import patagonia.edn.printer.Utf8Output;
+
+/**
+ * Size, encode and decode throughput of the binary encoding against edn
+ * text printed by the UTF-8 printer and parsed from bytes. Each side
+ * sends the messages of {@link EdnParseBench} over a connection of its
+ * own, so the binary one spells out each keyword once per round.
+ *
+ * <pre>lein with-profile +bench run -m patagonia.bench.BinaryEdnBench</pre>
+ */
+public class BinaryEdnBench {
+
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        byte[][] text = EdnParseBench.messages(new Random(42));
+        Parser parser = Parsers.newParser(Parsers.defaultConfiguration());
+        Object[] messages = new Object[text.length];
+        long textBytes = 0;
+        for (int i = 0; i < text.length; i++) {
+            messages[i] = parser.nextValue(Parsers.newParseable(text[i]));
+            textBytes += text[i].length;
+        }
+        BinaryWriter sizer = new BinaryWriter();
+        byte[][] binary = new byte[messages.length][];
+        long binaryBytes = 0;
+        for (int i = 0; i < messages.length; i++) {
+            binary[i] = sizer.encode(messages[i]);
+            binaryBytes += binary[i].length;
+        }
+        System.out.printf("%d messages: text %d bytes, binary %d bytes on average (%.0f%%)%n",
+                messages.length, textBytes / messages.length, binaryBytes / messages.length,
+                100.0 * binaryBytes / textBytes);
+
+        Utf8Output out = new Utf8Output(64 * 1024);
+        for (int round = 0; round < ROUNDS; round++) {
+            BinaryWriter writer = new BinaryWriter();
+            BinaryReader reader = new BinaryReader(Parsers.defaultConfiguration());
+            long n = 0;
+            long t0 = System.nanoTime();
+            for (Object m : messages) {
+                out.reset();
+                Printers.newUtf8Printer(out).printValue(m);
+                n += out.size();
+            }
+            long t1 = System.nanoTime();
+            for (Object m : messages) {
+                ByteBuffer b = writer.encodeToBuffer(m);
+                n += b.remaining();
+            }
+            long t2 = System.nanoTime();
+            for (byte[] m : text) {
+                n += parser.nextValue(Parsers.newParseable(m)) != null ? 1 : 0;
+            }
+            long t3 = System.nanoTime();
+            for (byte[] m : binary) {
+                n += reader.decode(m) != null ? 1 : 0;
+            }
+            long t4 = System.nanoTime();
+            if (round >= ROUNDS / 2) {
+                System.out.printf("encode: text %9.0f msg/s, binary %9.0f msg/s   "
+                        + "decode: text %9.0f msg/s, binary %9.0f msg/s%n",
+                        messages.length / ((t1 - t0) / 1e9), messages.length / ((t2 - t1) / 1e9),
+                        messages.length / ((t3 - t2) / 1e9), messages.length / ((t4 - t3) / 1e9));
+            }
+            if (n != textBytes + binaryBytes + 2 * messages.length) {
+                throw new AssertionError();
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package patagonia.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import patagonia.edn.Keyword;
+import patagonia.edn.Named;
+import patagonia.edn.binary.BinaryReader;
+import patagonia.edn.binary.BinaryWriter;
+import patagonia.edn.parser.Parsers;
+
+/**
+ * Checks that names past the first 96 a connection defines, which are
+ * used by their index in the dictionary rather than by a byte of their
+ * own, come back from the reader as they went in, on their own and at
+ * the end of a larger message, whether defined by messages or preset.
+ * Throws an AssertionError on the first disagreement.
+ *
+ * <pre>lein with-profile +bench run -m patagonia.bench.BinaryNamesCheck</pre>
+ */
+public class BinaryNamesCheck {
+
+    private static final int NAMES = 300;
+
+    public static void main(String[] args) {
+        List<Keyword> keywords = new ArrayList<Keyword>();
+        for (int i = 0; i < NAMES; i++) {
+            keywords.add(Keyword.newKeyword("k" + i));
+        }
+        BinaryWriter writer = new BinaryWriter();
+        BinaryReader reader = new BinaryReader(Parsers.defaultConfiguration());
+        for (Keyword k : keywords) {
+            check(writer, reader, k);
+        }
+        uses(writer, reader, keywords);
+
+        List<Named> preset = new ArrayList<Named>(keywords);
+        uses(new BinaryWriter(preset),
+            new BinaryReader(Parsers.defaultConfiguration(), preset), keywords);
+
+        preset.add(keywords.get(0));
+        try {
+            new BinaryWriter(preset);
+            throw new AssertionError("writer took a name preset twice");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            new BinaryReader(Parsers.defaultConfiguration(), preset);
+            throw new AssertionError("reader took a name preset twice");
+        } catch (IllegalArgumentException expected) {
+        }
+        System.out.println("ok");
+    }
+
+    /** Use each of the names, now that they're all defined. */
+    private static void uses(BinaryWriter writer, BinaryReader reader, List<Keyword> keywords) {
+        Keyword a = keywords.get(0);
+        for (Keyword k : keywords) {
+            check(writer, reader, k);
+            Map<Object, Object> m = new HashMap<Object, Object>();
+            m.put(a, k);
+            check(writer, reader, m);
+            check(writer, reader, Arrays.asList(k, a, k));
+        }
+    }
+
+    private static void check(BinaryWriter writer, BinaryReader reader, Object value) {
+        Object back = reader.decode(writer.encode(value));
+        if (!value.equals(back)) {
+            throw new AssertionError(value + " came back as " + back);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package patagonia.bench;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import patagonia.edn.Keyword;
+import patagonia.edn.parser.Parser;
+import patagonia.edn.parser.Parsers;
+import patagonia.edn.printer.Printers;
+
+/**
+ * Parse throughput of the char-based path, which decodes each message to
+ * a String first, against the byte-based path, which scans the UTF-8
+ * bytes directly. The payloads are shaped like the game's pushes: a
+ * packet envelope around a vector of entity updates with ids,
+ * coordinates, counters and the odd non-ASCII name.
+ *
+ * <pre>lein with-profile +bench run -m patagonia.bench.EdnParseBench</pre>
+ */
+public class EdnParseBench {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int MESSAGES = 2000;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        byte[][] messages = messages(new Random(42));
+        long bytes = 0;
+        for (byte[] m : messages) {
+            bytes += m.length;
+        }
+        System.out.printf("%d messages, %d bytes on average%n", messages.length, bytes / messages.length);
+
+        Parser parser = Parsers.newParser(Parsers.defaultConfiguration());
+        for (int round = 0; round < ROUNDS; round++) {
+            long t0 = System.nanoTime();
+            int n = 0;
+            for (byte[] m : messages) {
+                n += parser.nextValue(Parsers.newParseable(new String(m, UTF8))) != null ? 1 : 0;
+            }
+            long t1 = System.nanoTime();
+            for (byte[] m : messages) {
+                n += parser.nextValue(Parsers.newParseable(m)) != null ? 1 : 0;
+            }
+            long t2 = System.nanoTime();
+            if (round >= ROUNDS / 2) {
+                System.out.printf("chars %7.1f MB/s %9.0f msg/s   bytes %7.1f MB/s %9.0f msg/s%n",
+                        bytes / ((t1 - t0) / 1e3), messages.length / ((t1 - t0) / 1e9),
+                        bytes / ((t2 - t1) / 1e3), messages.length / ((t2 - t1) / 1e9));
+            }
+            if (n != 2 * messages.length) {
+                throw new AssertionError();
+            }
+        }
+    }
+
+    static byte[][] messages(Random r) {
+        String[] names = { "orc", "goblin", "troll", "Élan", "ranger", "Ægir", "wolf" };
+        byte[][] out = new byte[MESSAGES][];
+        UUID session = UUID.randomUUID();
+        for (int i = 0; i < MESSAGES; i++) {
+            UUID channel = UUID.randomUUID();
+            Map<Keyword, Object> to = new HashMap<Keyword, Object>();
+            to.put(Keyword.newKeyword("type"), Keyword.newKeyword("patagonia.sys", "global-messaging"));
+            to.put(Keyword.newKeyword("object"), channel);
+
+            List<Object> entities = new ArrayList<Object>();
+            for (int e = 0, n = 1 + r.nextInt(20); e < n; e++) {
+                Map<Keyword, Object> entity = new HashMap<Keyword, Object>();
+                entity.put(Keyword.newKeyword("entity", "id"), (long) r.nextInt(100000));
+                entity.put(Keyword.newKeyword("entity", "name"), names[r.nextInt(names.length)]);
+                entity.put(Keyword.newKeyword("pos"), Arrays.asList(r.nextInt(4096) - 2048L, r.nextInt(4096) - 2048L));
+                entity.put(Keyword.newKeyword("vel"), Arrays.asList(r.nextDouble() * 4 - 2, r.nextDouble() * 4 - 2));
+                entity.put(Keyword.newKeyword("hp"), (long) r.nextInt(200));
+                entity.put(Keyword.newKeyword("tick"), 1000000L + i);
+                entity.put(Keyword.newKeyword("alive?"), r.nextBoolean());
+                entities.add(entity);
+            }
+
+            Map<Keyword, Object> packet = new HashMap<Keyword, Object>();
+            packet.put(Keyword.newKeyword("version"), "0.1");
+            packet.put(Keyword.newKeyword("tag"), Keyword.newKeyword("push"));
+            packet.put(Keyword.newKeyword("to"), to);
+            packet.put(Keyword.newKeyword("context-id"), channel);
+            packet.put(Keyword.newKeyword("session-id"), session);
+            packet.put(Keyword.newKeyword("game", "entities"), entities);
+            out[i] = Printers.printString(packet).getBytes(UTF8);
+        }
+        return out;
+    }
+}
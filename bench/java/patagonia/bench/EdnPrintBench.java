@@ -0,0 +1,58 @@
+package patagonia.bench;
+
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import patagonia.edn.parser.Parser;
+import patagonia.edn.parser.Parsers;
+import patagonia.edn.printer.Printers;
+import patagonia.edn.printer.Utf8Output;
+
+/**
+ * Print throughput of the String path, which prints each message to a
+ * String and encodes it, against a UTF-8 printer writing into one reused
+ * {@link Utf8Output}. The messages are those of {@link EdnParseBench}.
+ *
+ * <pre>lein with-profile +bench run -m patagonia.bench.EdnPrintBench</pre>
+ */
+public class EdnPrintBench {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        byte[][] encoded = EdnParseBench.messages(new Random(42));
+        Parser parser = Parsers.newParser(Parsers.defaultConfiguration());
+        Object[] messages = new Object[encoded.length];
+        long bytes = 0;
+        for (int i = 0; i < encoded.length; i++) {
+            messages[i] = parser.nextValue(Parsers.newParseable(encoded[i]));
+            bytes += encoded[i].length;
+        }
+        System.out.printf("%d messages, %d bytes on average%n", messages.length, bytes / messages.length);
+
+        Utf8Output out = new Utf8Output(64 * 1024);
+        for (int round = 0; round < ROUNDS; round++) {
+            long t0 = System.nanoTime();
+            long n = 0;
+            for (Object m : messages) {
+                n += Printers.printString(m).getBytes(UTF8).length;
+            }
+            long t1 = System.nanoTime();
+            for (Object m : messages) {
+                out.reset();
+                Printers.newUtf8Printer(out).printValue(m);
+                n -= out.size();
+            }
+            long t2 = System.nanoTime();
+            if (round >= ROUNDS / 2) {
+                System.out.printf("string %7.1f MB/s %9.0f msg/s   utf-8 %7.1f MB/s %9.0f msg/s%n",
+                        bytes / ((t1 - t0) / 1e3), messages.length / ((t1 - t0) / 1e9),
+                        bytes / ((t2 - t1) / 1e3), messages.length / ((t2 - t1) / 1e9));
+            }
+            if (n != 0) {
+                throw new AssertionError();
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package patagonia.bench;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import patagonia.edn.parser.FormSplitter;
+import patagonia.edn.parser.IncrementalParser;
+import patagonia.edn.parser.Parser;
+import patagonia.edn.parser.Parsers;
+
+/**
+ * A long-poll body bundling the messages of {@link EdnParseBench} in a
+ * vector, arriving in 4 KB buffers, parsed the way responses used to be,
+ * by splitting off each complete value with a {@link FormSplitter} and
+ * then parsing it, against pushing the buffers through an
+ * {@link IncrementalParser}.
+ *
+ * <pre>lein with-profile +bench run -m patagonia.bench.IncrementalParseBench</pre>
+ */
+public class IncrementalParseBench {
+
+    private static final int CHUNK = 4096;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        byte[][] messages = EdnParseBench.messages(new Random(42));
+        int total = 2;
+        for (byte[] m : messages) {
+            total += m.length + 1;
+        }
+        byte[] body = new byte[total];
+        int n = 0;
+        body[n++] = '[';
+        for (byte[] m : messages) {
+            System.arraycopy(m, 0, body, n, m.length);
+            n += m.length;
+            body[n++] = ' ';
+        }
+        body[n++] = ']';
+        System.out.printf("%d values in %d bytes, %d byte buffers%n", messages.length, body.length, CHUNK);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long t0 = System.nanoTime();
+            int split = splitAndParse(body);
+            long t1 = System.nanoTime();
+            int pushed = incremental(body);
+            long t2 = System.nanoTime();
+            if (round >= ROUNDS / 2) {
+                System.out.printf("split and parse %7.1f MB/s   incremental %7.1f MB/s%n",
+                        body.length / ((t1 - t0) / 1e3), body.length / ((t2 - t1) / 1e3));
+            }
+            if (split != messages.length || pushed != messages.length) {
+                throw new AssertionError();
+            }
+        }
+    }
+
+    private static int splitAndParse(byte[] body) {
+        Parser parser = Parsers.newParser(Parsers.defaultConfiguration());
+        FormSplitter splitter = new FormSplitter(true);
+        byte[] buf = new byte[CHUNK];
+        int len = 0;
+        int scanned = 0;
+        int values = 0;
+        for (int off = 0; off < body.length; off += CHUNK) {
+            int n = Math.min(CHUNK, body.length - off);
+            if (len + n > buf.length) {
+                int drop = splitter.inForm() ? splitter.getFormStart() : scanned;
+                System.arraycopy(buf, drop, buf, 0, len - drop);
+                len -= drop;
+                scanned -= drop;
+                splitter.shift(drop);
+                if (len + n > buf.length) {
+                    byte[] bigger = new byte[Math.max(len + n, buf.length * 2)];
+                    System.arraycopy(buf, 0, bigger, 0, len);
+                    buf = bigger;
+                }
+            }
+            System.arraycopy(body, off, buf, len, n);
+            len += n;
+            int end;
+            while ((end = splitter.next(buf, scanned, len)) >= 0) {
+                int start = splitter.getFormStart();
+                splitter.consumed();
+                scanned = end;
+                if (parser.nextValue(Parsers.newParseable(buf, start, end - start)) != null) {
+                    values++;
+                }
+            }
+            scanned = len;
+        }
+        splitter.finish(len);
+        return values;
+    }
+
+    private static int incremental(byte[] body) {
+        IncrementalParser parser = new IncrementalParser(Parsers.defaultConfiguration(), true);
+        ByteBuffer buf = ByteBuffer.allocate(CHUNK);
+        int values = 0;
+        for (int off = 0; off < body.length; off += CHUNK) {
+            buf.clear();
+            buf.put(body, off, Math.min(CHUNK, body.length - off));
+            buf.flip();
+            parser.feed(buf);
+            while (parser.hasNext()) {
+                if (parser.next() != null) {
+                    values++;
+                }
+            }
+        }
+        parser.finish();
+        return values;
+    }
+}
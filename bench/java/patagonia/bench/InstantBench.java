@@ -0,0 +1,100 @@
+package patagonia.bench;
+
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import patagonia.edn.parser.Parser;
+import patagonia.edn.parser.Parsers;
+import patagonia.edn.printer.Printers;
+
+/**
+ * Parsing and printing {@code #inst} values, against the regex and
+ * {@link GregorianCalendar}/{@link String#format} approach they used to
+ * take, which is reproduced here as the baseline.
+ *
+ * <pre>lein with-profile +bench run -m patagonia.bench.InstantBench</pre>
+ */
+public class InstantBench {
+
+    private static final int COUNT = 100000;
+    private static final int ROUNDS = 10;
+
+    private static final Pattern INSTANT = Pattern.compile(
+            "(\\d\\d\\d\\d)(?:-(\\d\\d)(?:-(\\d\\d)" +
+            "(?:[T](\\d\\d)(?::(\\d\\d)(?::(\\d\\d)(?:[.](\\d{1,9}))?)?)?)?)?)?" +
+            "(?:[Z]|([-+])(\\d\\d):(\\d\\d))?");
+
+    private static final TimeZone GMT = TimeZone.getTimeZone("GMT");
+
+    public static void main(String[] args) {
+        Random r = new Random(42);
+        Date[] dates = new Date[COUNT];
+        String[] literals = new String[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            dates[i] = new Date(1400000000000L + (long) (r.nextDouble() * 400000000000L));
+            literals[i] = Printers.printString(dates[i]);
+        }
+        Parser parser = Parsers.newParser(Parsers.defaultConfiguration());
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long sink = 0;
+            long t0 = System.nanoTime();
+            for (String s : literals) {
+                sink += baselineParse(s.substring(s.indexOf('"') + 1, s.length() - 1)).getTime();
+            }
+            long t1 = System.nanoTime();
+            for (String s : literals) {
+                sink += ((Date) parser.nextValue(Parsers.newParseable(s))).getTime();
+            }
+            long t2 = System.nanoTime();
+            for (Date d : dates) {
+                sink += baselineFormat(d).length();
+            }
+            long t3 = System.nanoTime();
+            for (Date d : dates) {
+                sink += Printers.printString(d).length();
+            }
+            long t4 = System.nanoTime();
+            if (round >= ROUNDS / 2) {
+                System.out.printf("parse: baseline %5.0f ns, now %5.0f ns   "
+                        + "print: baseline %5.0f ns, now %5.0f ns   (%d)%n",
+                        (t1 - t0) / (double) COUNT, (t2 - t1) / (double) COUNT,
+                        (t3 - t2) / (double) COUNT, (t4 - t3) / (double) COUNT,
+                        sink & 1);
+            }
+        }
+    }
+
+    /** Parse the way InstantUtils used to: a regex, then a calendar. */
+    private static Date baselineParse(String value) {
+        Matcher m = INSTANT.matcher(value);
+        if (!m.matches()) {
+            throw new IllegalArgumentException(value);
+        }
+        GregorianCalendar cal = new GregorianCalendar(GMT);
+        cal.set(GregorianCalendar.YEAR, Integer.parseInt(m.group(1)));
+        cal.set(GregorianCalendar.MONTH, Integer.parseInt(m.group(2)) - 1);
+        cal.set(GregorianCalendar.DAY_OF_MONTH, Integer.parseInt(m.group(3)));
+        cal.set(GregorianCalendar.HOUR_OF_DAY, Integer.parseInt(m.group(4)));
+        cal.set(GregorianCalendar.MINUTE, Integer.parseInt(m.group(5)));
+        cal.set(GregorianCalendar.SECOND, Integer.parseInt(m.group(6)));
+        String frac = m.group(7);
+        cal.set(GregorianCalendar.MILLISECOND,
+                Integer.parseInt((frac + "000000000").substring(0, 9)) / 1000000);
+        return cal.getTime();
+    }
+
+    /** Format the way InstantUtils used to: a calendar and String.format. */
+    private static String baselineFormat(Date date) {
+        GregorianCalendar c = new GregorianCalendar(GMT);
+        c.setTime(date);
+        String s = String.format("%1$tFT%1$tT.%1$tL%1$tz", c);
+        int n = s.length();
+        s = s.substring(0, n - 2) + ":" + s.substring(n - 2);
+        return "#inst\"" + s.substring(0, s.length() - 6) + "-00:00\"";
+    }
+}
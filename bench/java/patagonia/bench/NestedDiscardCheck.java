@@ -0,0 +1,156 @@
+package patagonia.bench;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import patagonia.edn.parser.EventReader;
+import patagonia.edn.parser.FormSplitter;
+import patagonia.edn.parser.ParallelParser;
+import patagonia.edn.parser.Parseable;
+import patagonia.edn.parser.Parser;
+import patagonia.edn.parser.Parsers;
+
+/**
+ * Checks that the paths which find the ends of values without parsing
+ * them, splitting forms, parsing lazily and in parallel, and skipping
+ * values read as events, agree with the parser on input with discarded
+ * values nested in collections, which used to make them run on past the
+ * end, and that a vector is unwrapped even after a comment. Throws an
+ * AssertionError on the first disagreement.
+ *
+ * <pre>lein with-profile +bench run -m patagonia.bench.NestedDiscardCheck</pre>
+ */
+public class NestedDiscardCheck {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    static final String[] INPUTS = {
+        "[#_1 #_2 3] 4",
+        "{:a #_1 #_2 :b 3 :c} 4 5",
+        "[[#_1 #_2 3] 4 5]",
+        "[{:a #_1 #_2 :b 3 :c} 4]",
+        "{:a [#_1 #_2 3] :b 4}",
+        "(#_ #_ [1] [2] x) #{#_ #_ 1 2 3} y",
+        "#_ [#_1 2] 3 [#_ #_ (a) (b) #_ c] \"#_\"",
+        "#tag [#_1 2] #_ #_ 3 4 [5 #_ 6]",
+        "; [not] #_ this\n[1 #_ ; 2\n 3 4] ; done",
+    };
+
+    private static final Parser PARSER = Parsers.newParser(Parsers.defaultConfiguration());
+
+    public static void main(String[] args) {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            run(executor);
+        } finally {
+            executor.shutdown();
+        }
+        System.out.println("ok");
+    }
+
+    private static void run(ExecutorService executor) {
+        for (String input : INPUTS) {
+            List<Object> expected = sequential(input);
+            check(input, "split", expected, split(input, false));
+            if (expected.size() == 1 && expected.get(0) instanceof List) {
+                check(input, "unwrapped split", expected.get(0), split(input, true));
+            }
+            for (int threshold = 1; threshold <= 8; threshold++) {
+                check(input, "lazy parse from " + threshold + " bytes", expected,
+                    lazy(input, threshold));
+                check(input, "parallel parse in chunks of " + threshold + " bytes", expected,
+                    new ParallelParser(PARSER, executor, threshold).parseAll(input.getBytes(UTF8)));
+            }
+            for (int at = 0; at < 16; at++) {
+                for (boolean collection : new boolean[] { false, true }) {
+                    String what = (collection ? "skipCollection" : "skipValue") + " at event " + at;
+                    check(input, what + " from chars", events(Parsers.newParseable(input), at, collection),
+                        events(Parsers.newParseable(input.getBytes(UTF8)), at, collection));
+                }
+            }
+        }
+    }
+
+    static void check(String input, String what, Object expected, Object actual) {
+        if (!expected.equals(actual)) {
+            throw new AssertionError(what + " of " + input + ": " + actual
+                + ", expected " + expected);
+        }
+    }
+
+    static List<Object> sequential(String input) {
+        Parseable pbr = Parsers.newParseable(input);
+        List<Object> values = new ArrayList<Object>();
+        for (Object v = PARSER.nextValue(pbr); v != Parser.END_OF_INPUT; v = PARSER.nextValue(pbr)) {
+            values.add(v);
+        }
+        return values;
+    }
+
+    /** Parse the input lazily, and compare the values it stands for. */
+    static List<Object> lazy(String input, int threshold) {
+        Parser lazy = Parsers.newLazyParser(Parsers.defaultConfiguration(), threshold);
+        Parseable pbr = Parsers.newParseable(input.getBytes(UTF8));
+        List<Object> values = new ArrayList<Object>();
+        for (Object v = lazy.nextValue(pbr); v != Parser.END_OF_INPUT; v = lazy.nextValue(pbr)) {
+            values.add(v);
+        }
+        return values;
+    }
+
+    /**
+     * The events read from {@code pbr}, skipping a value, or the rest of
+     * the collection just begun, in place of reading event {@code at}.
+     * From bytes, skipping scans for the end without parsing; from chars
+     * it reads tokens, so the two must agree.
+     */
+    static String events(Parseable pbr, int at, boolean collection) {
+        EventReader r = Parsers.newEventReader(Parsers.defaultConfiguration(), pbr);
+        StringBuilder b = new StringBuilder();
+        EventReader.Event e = null;
+        try {
+            for (int i = 0; e != EventReader.Event.END_OF_INPUT; i++) {
+                if (i == at && collection) {
+                    r.skipCollection();
+                    b.append("skipped ");
+                } else if (i == at) {
+                    r.skipValue();
+                    b.append("skipped ");
+                }
+                e = r.next();
+                b.append(e).append(' ').append(r.getValue()).append(' ');
+            }
+        } catch (RuntimeException x) {
+            // The two report the same error in their own words.
+            b.append(x.getClass().getSimpleName());
+        }
+        return b.toString();
+    }
+
+    /** Split the input into forms, and parse each on its own. */
+    static List<Object> split(String input, boolean unwrap) {
+        byte[] b = input.getBytes(UTF8);
+        FormSplitter splitter = new FormSplitter(unwrap);
+        List<Object> values = new ArrayList<Object>();
+        int i = 0;
+        for (;;) {
+            int end = splitter.next(b, i, b.length);
+            if (end < 0) {
+                end = splitter.finish(b.length);
+            }
+            if (end < 0) {
+                return values;
+            }
+            int start = splitter.getFormStart();
+            splitter.consumed();
+            Object v = PARSER.nextValue(Parsers.newParseable(b, start, end - start));
+            if (v != Parser.END_OF_INPUT) {
+                values.add(v);
+            }
+            i = end;
+        }
+    }
+}
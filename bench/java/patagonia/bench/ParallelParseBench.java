@@ -0,0 +1,77 @@
+package patagonia.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import patagonia.edn.parser.ParallelParser;
+import patagonia.edn.parser.Parseable;
+import patagonia.edn.parser.Parser;
+import patagonia.edn.parser.Parsers;
+
+/**
+ * Parse time of a multi-megabyte log of newline-separated messages,
+ * parsed one after another on one thread against {@link ParallelParser}
+ * with a pool of 1, 2, 4 and as many threads as there are cores.
+ *
+ * <pre>lein with-profile +bench run -m patagonia.bench.ParallelParseBench</pre>
+ */
+public class ParallelParseBench {
+
+    private static final int COPIES = 10;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) throws Exception {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        for (int c = 0; c < COPIES; c++) {
+            for (byte[] m : EdnParseBench.messages(new Random(c))) {
+                log.write(m);
+                log.write('\n');
+            }
+        }
+        byte[] input = log.toByteArray();
+        System.out.printf("%d bytes%n", input.length);
+
+        Parser parser = Parsers.newParser(Parsers.defaultConfiguration());
+        int expected = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long t0 = System.nanoTime();
+            expected = sequential(parser, input).size();
+            long t1 = System.nanoTime();
+            if (round >= ROUNDS / 2) {
+                System.out.printf("sequential   %7.1f MB/s%n", input.length / ((t1 - t0) / 1e3));
+            }
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads : new int[] { 1, 2, 4, cores }) {
+            // The calling thread parses too.
+            ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads - 1));
+            ParallelParser pp = new ParallelParser(parser, pool);
+            for (int round = 0; round < ROUNDS; round++) {
+                long t0 = System.nanoTime();
+                List<Object> values = pp.parseAll(input);
+                long t1 = System.nanoTime();
+                if (values.size() != expected) {
+                    throw new AssertionError();
+                }
+                if (round >= ROUNDS / 2) {
+                    System.out.printf("%2d threads   %7.1f MB/s%n", threads, input.length / ((t1 - t0) / 1e3));
+                }
+            }
+            pool.shutdown();
+        }
+    }
+
+    private static List<Object> sequential(Parser parser, byte[] input) {
+        Parseable pbr = Parsers.newParseable(input);
+        List<Object> values = new ArrayList<Object>();
+        for (Object v = parser.nextValue(pbr); v != Parser.END_OF_INPUT; v = parser.nextValue(pbr)) {
+            values.add(v);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,125 @@
+package patagonia.bench;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.UUID;
+
+import patagonia.edn.parser.IncrementalParser;
+import patagonia.edn.parser.Parser;
+import patagonia.edn.parser.Parsers;
+import patagonia.edn.printer.Printers;
+
+/**
+ * Time and bytes allocated per message, parsing each with a parser set
+ * up for it from a configuration built for it, with
+ * {@code newParser(defaultConfiguration())} and with the thread's
+ * parser. Messages are the attach response, a lone {@code #uuid}, and
+ * those of {@link EdnParseBench}.
+ *
+ * <p>Responses are read by {@link patagonia.EdnResponseConsumer}, which
+ * feeds an {@link IncrementalParser} from a 4 KB buffer; so the same is
+ * timed with a new parser and buffer per message, as the consumer used to
+ * set up, and with one parser reset for each message and one buffer, as
+ * it now keeps per I/O thread.
+ *
+ * <pre>lein with-profile +bench run -m patagonia.bench.ParserReuseBench</pre>
+ */
+public class ParserReuseBench {
+
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        byte[][] attach = new byte[100000][];
+        Random r = new Random(42);
+        for (int i = 0; i < attach.length; i++) {
+            attach[i] = Printers.printString(new UUID(r.nextLong(), r.nextLong())).getBytes();
+        }
+        run("attach", attach);
+        run("push", EdnParseBench.messages(new Random(42)));
+    }
+
+    private static void run(String name, byte[][] messages) {
+        System.out.printf("%s: %d messages%n", name, messages.length);
+        IncrementalParser reused = new IncrementalParser(Parsers.defaultConfiguration());
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        for (int round = 0; round < ROUNDS; round++) {
+            long sum = 0;
+            long a0 = allocated();
+            long t0 = System.nanoTime();
+            for (byte[] m : messages) {
+                Parser p = Parsers.newParser(Parsers.newParserConfigBuilder().build());
+                sum += p.nextValue(Parsers.newParseable(m)) != null ? 1 : 0;
+            }
+            long a1 = allocated();
+            long t1 = System.nanoTime();
+            for (byte[] m : messages) {
+                Parser p = Parsers.newParser(Parsers.defaultConfiguration());
+                sum += p.nextValue(Parsers.newParseable(m)) != null ? 1 : 0;
+            }
+            long a2 = allocated();
+            long t2 = System.nanoTime();
+            for (byte[] m : messages) {
+                Parser p = Parsers.threadLocalParser(Parsers.defaultConfiguration());
+                sum += p.nextValue(Parsers.newParseable(m)) != null ? 1 : 0;
+            }
+            long a3 = allocated();
+            long t3 = System.nanoTime();
+            for (byte[] m : messages) {
+                IncrementalParser p = new IncrementalParser(Parsers.defaultConfiguration());
+                sum += feed(p, ByteBuffer.allocate(4096), m);
+            }
+            long a4 = allocated();
+            long t4 = System.nanoTime();
+            for (byte[] m : messages) {
+                reused.reset();
+                sum += feed(reused, buf, m);
+            }
+            long a5 = allocated();
+            long t5 = System.nanoTime();
+            if (round >= ROUNDS / 2) {
+                int n = messages.length;
+                System.out.printf("  built config %6.0f ns %6d B   default %6.0f ns %6d B   "
+                        + "thread's %6.0f ns %6d B%n",
+                        (t1 - t0) / (double) n, (a1 - a0) / n,
+                        (t2 - t1) / (double) n, (a2 - a1) / n,
+                        (t3 - t2) / (double) n, (a3 - a2) / n);
+                System.out.printf("  incremental: new %6.0f ns %6d B   reset %6.0f ns %6d B   (%d)%n",
+                        (t4 - t3) / (double) n, (a4 - a3) / n,
+                        (t5 - t4) / (double) n, (a5 - a4) / n, sum & 1);
+            }
+        }
+    }
+
+    /**
+     * Feed {@code m} to {@code p} through {@code buf}, as the consumer
+     * does with what it reads, and count the values.
+     */
+    private static int feed(IncrementalParser p, ByteBuffer buf, byte[] m) {
+        int values = 0;
+        for (int i = 0; i < m.length; ) {
+            buf.clear();
+            int n = Math.min(buf.remaining(), m.length - i);
+            buf.put(m, i, n);
+            buf.flip();
+            p.feed(buf);
+            i += n;
+        }
+        p.finish();
+        while (p.hasNext()) {
+            p.next();
+            values++;
+        }
+        return values;
+    }
+
+    /** Bytes allocated by this thread so far, where the JVM tells. */
+    private static long allocated() {
+        Object mx = ManagementFactory.getThreadMXBean();
+        if (mx instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) mx)
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,97 @@
+package patagonia.bench;
+
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import patagonia.edn.parser.Parser;
+import patagonia.edn.parser.Parsers;
+
+/**
+ * Heap retained by, and parse throughput of, numeric-heavy messages (a
+ * tile grid and a batch of positions and velocities) with the default
+ * vector factory against {@link Parsers#primitiveVectorFactory()}.
+ *
+ * <pre>lein with-profile +bench run -m patagonia.bench.PrimitiveVectorBench</pre>
+ */
+public class PrimitiveVectorBench {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int MESSAGES = 500;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        byte[][] messages = messages(new Random(42));
+        long bytes = 0;
+        for (byte[] m : messages) {
+            bytes += m.length;
+        }
+        System.out.printf("%d messages, %d bytes on average%n", messages.length, bytes / messages.length);
+
+        Parser boxed = Parsers.newParser(Parsers.defaultConfiguration());
+        Parser primitive = Parsers.newParser(Parsers.newParserConfigBuilder()
+                .setVectorFactory(Parsers.primitiveVectorFactory())
+                .build());
+
+        System.out.printf("retained: boxed %d KB, primitive %d KB%n",
+                retained(boxed, messages) / 1024, retained(primitive, messages) / 1024);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long t0 = System.nanoTime();
+            parseAll(boxed, messages);
+            long t1 = System.nanoTime();
+            parseAll(primitive, messages);
+            long t2 = System.nanoTime();
+            if (round >= ROUNDS / 2) {
+                System.out.printf("boxed %7.1f MB/s   primitive %7.1f MB/s%n",
+                        bytes / ((t1 - t0) / 1e3), bytes / ((t2 - t1) / 1e3));
+            }
+        }
+    }
+
+    private static Object[] parseAll(Parser parser, byte[][] messages) {
+        Object[] values = new Object[messages.length];
+        for (int i = 0; i < messages.length; i++) {
+            values[i] = parser.nextValue(Parsers.newParseable(messages[i]));
+        }
+        return values;
+    }
+
+    private static long retained(Parser parser, byte[][] messages) {
+        long before = usedAfterGc();
+        Object[] values = parseAll(parser, messages);
+        long after = usedAfterGc();
+        if (values.length != messages.length) {
+            throw new AssertionError();
+        }
+        return after - before;
+    }
+
+    private static long usedAfterGc() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    static byte[][] messages(Random r) {
+        byte[][] out = new byte[MESSAGES][];
+        for (int i = 0; i < MESSAGES; i++) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("{:tag :push :game/tiles [");
+            for (int t = 0; t < 256; t++) {
+                sb.append(r.nextInt(4096)).append(' ');
+            }
+            sb.append("] :game/entities [");
+            for (int e = 0; e < 20; e++) {
+                sb.append("{:entity/id ").append(r.nextInt(100000))
+                    .append(" :pos [").append(r.nextInt(4096) - 2048).append(' ').append(r.nextInt(4096) - 2048)
+                    .append("] :vel [").append(r.nextDouble() * 4 - 2).append(' ').append(r.nextDouble() * 4 - 2)
+                    .append("]}");
+            }
+            sb.append("]}");
+            out[i] = sb.toString().getBytes(UTF8);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,151 @@
+package patagonia.bench;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import patagonia.edn.Keyword;
+import patagonia.edn.parser.Parser;
+import patagonia.edn.parser.Parsers;
+import patagonia.edn.printer.Printers;
+import patagonia.edn.printer.Utf8Output;
+import patagonia.edn.schema.Schema;
+
+/**
+ * Reading the messages of {@link EdnParseBench} into objects through a
+ * {@link Schema}, against parsing them into Maps and pulling the same
+ * fields out; and printing them back from either.
+ *
+ * <pre>lein with-profile +bench run -m patagonia.bench.SchemaBench</pre>
+ */
+public class SchemaBench {
+
+    private static final int ROUNDS = 10;
+
+    private static final Keyword TAG = Keyword.newKeyword("tag");
+    private static final Keyword TO = Keyword.newKeyword("to");
+    private static final Keyword TYPE = Keyword.newKeyword("type");
+    private static final Keyword ENTITIES = Keyword.newKeyword("game", "entities");
+    private static final Keyword ID = Keyword.newKeyword("entity", "id");
+    private static final Keyword HP = Keyword.newKeyword("hp");
+    private static final Keyword POS = Keyword.newKeyword("pos");
+
+    static final class Address {
+        Keyword type;
+        UUID object;
+    }
+
+    static final class Entity {
+        long id;
+        String name;
+        long[] pos;
+        double[] vel;
+        long hp;
+        long tick;
+        boolean alive;
+    }
+
+    static final class Push {
+        String version;
+        Keyword tag;
+        Address to;
+        UUID contextId;
+        UUID sessionId;
+        Entity[] entities;
+    }
+
+    static final Schema<Address> ADDRESS = Schema.builder(Address.class)
+        .field("type", "type")
+        .field("object", "object")
+        .build();
+
+    static final Schema<Entity> ENTITY = Schema.builder(Entity.class)
+        .field("entity/id", "id")
+        .field("entity/name", "name")
+        .field("pos", "pos")
+        .field("vel", "vel")
+        .field("hp", "hp")
+        .field("tick", "tick")
+        .field("alive?", "alive")
+        .build();
+
+    static final Schema<Push> PUSH = Schema.builder(Push.class)
+        .field("version", "version")
+        .field("tag", "tag")
+        .field("to", "to", ADDRESS)
+        .field("context-id", "contextId")
+        .field("session-id", "sessionId")
+        .field("game/entities", "entities", ENTITY)
+        .build();
+
+    public static void main(String[] args) {
+        byte[][] messages = EdnParseBench.messages(new Random(42));
+        Parser parser = Parsers.newParser(Parsers.defaultConfiguration());
+        long bytes = 0;
+        Object[] maps = new Object[messages.length];
+        Push[] pushes = new Push[messages.length];
+        for (int i = 0; i < messages.length; i++) {
+            bytes += messages[i].length;
+            maps[i] = parser.nextValue(Parsers.newParseable(messages[i]));
+            pushes[i] = PUSH.read(Parsers.newParseable(messages[i]));
+        }
+        System.out.printf("%d messages, %d bytes on average%n", messages.length, bytes / messages.length);
+
+        Utf8Output out = new Utf8Output(64 * 1024);
+        for (int round = 0; round < ROUNDS; round++) {
+            long sum = 0;
+            long t0 = System.nanoTime();
+            for (byte[] m : messages) {
+                sum += walk(parser.nextValue(Parsers.newParseable(m)));
+            }
+            long t1 = System.nanoTime();
+            for (byte[] m : messages) {
+                sum -= walk(PUSH.read(Parsers.newParseable(m)));
+            }
+            long t2 = System.nanoTime();
+            for (Object m : maps) {
+                out.reset();
+                Printers.newUtf8Printer(out).printValue(m);
+                sum += out.size();
+            }
+            long t3 = System.nanoTime();
+            for (Push p : pushes) {
+                out.reset();
+                PUSH.write(p, Printers.newUtf8Printer(out));
+                sum -= out.size();
+            }
+            long t4 = System.nanoTime();
+            if (round >= ROUNDS / 2) {
+                System.out.printf("read: maps %9.0f msg/s, schema %9.0f msg/s   "
+                        + "print: maps %9.0f msg/s, schema %9.0f msg/s%n",
+                        messages.length / ((t1 - t0) / 1e9), messages.length / ((t2 - t1) / 1e9),
+                        messages.length / ((t3 - t2) / 1e9), messages.length / ((t4 - t3) / 1e9));
+            }
+            if (sum != 0) {
+                throw new AssertionError();
+            }
+        }
+    }
+
+    /** What a consumer of pushes looks at, from the parsed Maps. */
+    private static long walk(Object packet) {
+        Map<?, ?> m = (Map<?, ?>) packet;
+        long sum = ((Keyword) m.get(TAG)).hashCode()
+            + ((Keyword) ((Map<?, ?>) m.get(TO)).get(TYPE)).hashCode();
+        for (Object o : (List<?>) m.get(ENTITIES)) {
+            Map<?, ?> e = (Map<?, ?>) o;
+            sum += (Long) e.get(ID) + (Long) e.get(HP) + (Long) ((List<?>) e.get(POS)).get(0);
+        }
+        return sum;
+    }
+
+    /** The same, from the objects read through the schema. */
+    private static long walk(Push p) {
+        long sum = p.tag.hashCode() + p.to.type.hashCode();
+        for (Entity e : p.entities) {
+            sum += e.id + e.hp + e.pos[0];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,100 @@
+package patagonia.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import patagonia.edn.parser.Parser;
+import patagonia.edn.parser.Parsers;
+import patagonia.edn.printer.Printers;
+import patagonia.edn.printer.Utf8Output;
+
+/**
+ * Parsing and printing vectors of string literals like chat lines and
+ * descriptor fields: mostly ASCII with the odd quote or newline, and
+ * mostly Cyrillic, CJK and emoji. Each is parsed from UTF-8 bytes and
+ * from a String, and printed by the UTF-8 printer and by a printer
+ * appending to a StringBuilder.
+ *
+ * <pre>lein with-profile +bench run -m patagonia.bench.StringBench</pre>
+ */
+public class StringBench {
+
+    private static final int STRINGS = 2000;
+    private static final int ROUNDS = 10;
+
+    private static final String WORDS = "the quick brown fox jumps over lazy dog "
+        + "player joined guild raid boss loot drop heals tank wipe again";
+    private static final String UNICODE = "привет мир игрок гильдия "
+        + "你好世界玩家公会 こんにちは 😀🎮❤ é ñ ü";
+
+    public static void main(String[] args) {
+        Random r = new Random(42);
+        run("ascii", strings(r, WORDS + WORDS + WORDS + "\"\n\\"));
+        run("unicode", strings(r, UNICODE + "\"\n"));
+    }
+
+    private static List<String> strings(Random r, String alphabet) {
+        int[] cps = new int[alphabet.codePointCount(0, alphabet.length())];
+        for (int i = 0, j = 0; i < cps.length; i++) {
+            cps[i] = alphabet.codePointAt(j);
+            j += Character.charCount(cps[i]);
+        }
+        List<String> l = new ArrayList<String>();
+        for (int i = 0; i < STRINGS; i++) {
+            StringBuilder b = new StringBuilder();
+            int n = 20 + r.nextInt(300);
+            while (b.length() < n) {
+                b.appendCodePoint(cps[r.nextInt(cps.length)]);
+            }
+            l.add(b.toString());
+        }
+        return l;
+    }
+
+    private static void run(String name, List<String> strings) {
+        Parser parser = Parsers.newParser(Parsers.defaultConfiguration());
+        String text = Printers.printString(strings);
+        Utf8Output out = new Utf8Output();
+        Printers.newUtf8Printer(out).printValue(strings);
+        byte[] bytes = out.toByteArray();
+        if (!strings.equals(parser.nextValue(Parsers.newParseable(bytes)))
+                || !strings.equals(parser.nextValue(Parsers.newParseable(text)))) {
+            throw new AssertionError();
+        }
+        System.out.printf("%s: %d strings, %d chars, %d bytes%n",
+                name, strings.size(), text.length(), bytes.length);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long sum = 0;
+            long t0 = System.nanoTime();
+            for (int i = 0; i < 10; i++) {
+                sum += ((List<?>) parser.nextValue(Parsers.newParseable(bytes))).size();
+            }
+            long t1 = System.nanoTime();
+            for (int i = 0; i < 10; i++) {
+                sum += ((List<?>) parser.nextValue(Parsers.newParseable(text))).size();
+            }
+            long t2 = System.nanoTime();
+            for (int i = 0; i < 10; i++) {
+                out.reset();
+                Printers.newUtf8Printer(out).printValue(strings);
+                sum += out.size();
+            }
+            long t3 = System.nanoTime();
+            for (int i = 0; i < 10; i++) {
+                StringBuilder b = new StringBuilder(text.length());
+                Printers.newPrinter(b).printValue(strings);
+                sum += b.length();
+            }
+            long t4 = System.nanoTime();
+            if (round >= ROUNDS / 2) {
+                double mb = 10e3 * bytes.length;
+                System.out.printf("  parse: bytes %7.1f MB/s, string %7.1f MB/s   "
+                        + "print: utf-8 %7.1f MB/s, appendable %7.1f MB/s   (%d)%n",
+                        mb / (t1 - t0), mb / (t2 - t1), mb / (t3 - t2), mb / (t4 - t3),
+                        sum & 1);
+            }
+        }
+    }
+}
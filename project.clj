@@ -6,6 +6,7 @@
                  [commons-logging/commons-logging "1.1.3"]]
   :java-source-paths ["src/java"]
   :javac-options ["-target" "1.6" "-source" "1.6" "-Xlint:-options"]
+  :profiles {:bench {:java-source-paths ["bench/java"]}}
   :omit-source true
   :jar-exclusions [#"(?:^|/).svn/"])
 
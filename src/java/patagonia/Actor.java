@@ -18,24 +18,129 @@ package patagonia;
 
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Actor { // Visibility is achieved by volatile-piggybacking of reads+writes to "on"
   public static interface Fun<T, R> { public R apply(T t); } // Simple Function interface for Java
   public static interface Effect extends Fun<Behavior, Behavior> { }; // An Effect returns a Behavior given a Behavior
   public static interface Behavior extends Fun<Object, Effect> { }; // A Behavior is a message (Object) which returns the behavior for the next message
   public static interface Address { Address tell(Object msg); }; // An Address is somewhere you can send messages
-  static abstract class AtomicRunnableAddress implements Runnable, Address { protected final AtomicInteger on = new AtomicInteger(); }; // Defining a composite of AtomcInteger, Runnable and Address
+  static abstract class AtomicRunnableAddress implements Runnable, Address { protected final AtomicInteger on = new AtomicInteger(); protected final Stats stats = new Stats(); }; // Defining a composite of AtomcInteger, Runnable and Address, plus the Stats it keeps
   public final static Effect Become(final Behavior behavior) { return new Effect() { public Behavior apply(Behavior old) { return behavior; } }; } // Become is an Effect that returns a captured Behavior no matter what the old Behavior is
   public final static Effect Stay = new Effect() { public Behavior apply(Behavior old) { return old; } }; // Stay is an Effect that returns the old Behavior when applied.
   public final static Effect Die  = Become(new Behavior() { public Effect apply(Object msg) { return Stay; } }); // Die is an Effect which replaces the old Behavior with a new one which does nothing, forever.
-  public static Address create(final Fun<Address, Behavior> initial, final Executor e) {
+
+  public static final int DEFAULT_THROUGHPUT = 5; // How many messages one scheduling of an actor may process before it yields its thread
+  public static enum Overflow { DROP, BLOCK, SIGNAL } // What tell does when a bounded mailbox is full: drop the message, block the sender until there is room, or throw MailboxFullException
+  public static class MailboxFullException extends RuntimeException { // Thrown by tell on a full mailbox with Overflow.SIGNAL
+    private static final long serialVersionUID = 1L;
+    public MailboxFullException(int capacity) { super("Mailbox full (capacity " + capacity + ")"); }
+  }
+
+  public static enum Directive { RESUME, RESTART, ESCALATE } // What to do after a Behavior throws: keep it, replace it with a fresh initial Behavior, or rethrow to the executor as before
+  public static interface Supervisor { Directive failed(Address self, Object msg, RuntimeException e); } // Decides, per failure, how an actor carries on
+  public final static Supervisor always(final Directive d) { return new Supervisor() { public Directive failed(Address self, Object msg, RuntimeException e) { return d; } }; }
+  public final static Supervisor Escalate = always(Directive.ESCALATE);
+  public final static Supervisor Restart = always(Directive.RESTART);
+
+  /**
+   * What an actor has been up to. The actor is the only writer, one message at a time; any thread may read.
+   * Behavior time is wall-clock time spent inside Behaviors, including failed ones.
+   */
+  public static final class Stats {
+    private final AtomicInteger mailbox = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long processed, failures, restarts, behaviorNanos, maxBehaviorNanos;
+    private volatile RuntimeException lastFailure;
+    public int getMailboxSize() { return mailbox.get(); }
+    public long getDropped() { return dropped.get(); }
+    public long getProcessed() { return processed; }
+    public long getFailures() { return failures; }
+    public long getRestarts() { return restarts; }
+    public double getBehaviorMillis() { return behaviorNanos / 1e6; }
+    public double getMaxBehaviorMillis() { return maxBehaviorNanos / 1e6; }
+    public RuntimeException getLastFailure() { return lastFailure; }
+    private void ran(long nanos) { processed++; behaviorNanos += nanos; if (nanos > maxBehaviorNanos) maxBehaviorNanos = nanos; }
+    @Override public String toString() {
+      return String.format("mailbox=%d processed=%d dropped=%d failures=%d restarts=%d behavior=%.1fms max=%.2fms last=%s",
+        getMailboxSize(), processed, getDropped(), failures, restarts, getBehaviorMillis(), getMaxBehaviorMillis(), lastFailure);
+    }
+  }
+  public static Stats stats(Address a) { return (a instanceof AtomicRunnableAddress) ? ((AtomicRunnableAddress) a).stats : null; } // The Stats of an actor created here, or null for any other Address
+
+  public static Address create(final Fun<Address, Behavior> initial, final Executor e) { return create(initial, e, 1, 0, Overflow.DROP); } // One message per scheduling, unbounded mailbox
+  public static Address create(final Fun<Address, Behavior> initial) { return create(initial, sharedExecutor(), DEFAULT_THROUGHPUT, 0, Overflow.DROP); } // On the shared pool, batching up to DEFAULT_THROUGHPUT messages
+  public static Address create(final Fun<Address, Behavior> initial, final Executor e, final int throughput, final int capacity, final Overflow overflow) { return create(initial, e, throughput, capacity, overflow, Escalate); }
+  /**
+   * Creates an actor running on {@code e} which processes up to {@code throughput} messages each time it is scheduled.
+   * A {@code capacity} above zero bounds its mailbox, and {@code overflow} decides what happens to a message sent while it is full.
+   * Beware that with Overflow.BLOCK an actor telling itself, or two actors telling each other, can block for good.
+   * When a Behavior throws, {@code supervisor} decides whether the actor resumes, restarts from {@code initial}, or escalates.
+   */
+  public static Address create(final Fun<Address, Behavior> initial, final Executor e, final int throughput, final int capacity, final Overflow overflow, final Supervisor supervisor) {
+    if (throughput < 1) throw new IllegalArgumentException("throughput must be at least 1");
     final Address a = new AtomicRunnableAddress() {
       private final ConcurrentLinkedQueue<Object> mb = new ConcurrentLinkedQueue<Object>();
+      private final Semaphore room = capacity > 0 ? new Semaphore(capacity) : null; // One permit per free slot in a bounded mailbox
       private Behavior behavior = new Behavior() { public Effect apply(Object msg) { return (msg instanceof Address) ? Become(initial.apply((Address)msg)) : Stay; } };
-      public final Address tell(Object msg) { if (mb.offer(msg)) async(); return this; }
-      public final void run() { if(on.get() == 1) { try { behavior = behavior.apply(mb.poll()).apply(behavior); } finally { on.set(0); async(); } } }
+      public final Address tell(Object msg) { if (admit() && mb.offer(msg)) { stats.mailbox.incrementAndGet(); async(); } return this; }
+      private final boolean admit() {
+        if (room == null || room.tryAcquire()) return true;
+        switch (overflow) {
+          case BLOCK: room.acquireUninterruptibly(); return true;
+          case SIGNAL: throw new MailboxFullException(capacity);
+          default: stats.dropped.incrementAndGet(); return false;
+        }
+      }
+      public final void run() {
+        if(on.get() == 1) {
+          try {
+            for (int n = throughput; n > 0; n--) { // Drain up to throughput messages, then yield to other actors on the executor
+              final Object msg = mb.poll();
+              if (msg == null) break;
+              stats.mailbox.decrementAndGet();
+              if (room != null) room.release();
+              process(msg);
+            }
+          } finally { on.set(0); async(); }
+        }
+      }
+      private final void process(Object msg) {
+        final long start = System.nanoTime();
+        try {
+          behavior = behavior.apply(msg).apply(behavior);
+          stats.ran(System.nanoTime() - start);
+        } catch (RuntimeException re) {
+          stats.ran(System.nanoTime() - start);
+          stats.failures++;
+          stats.lastFailure = re;
+          switch (supervisor.failed(this, msg, re)) {
+            case RESUME: break;
+            case RESTART: stats.restarts++; behavior = initial.apply(this); break;
+            default: throw re;
+          }
+        }
+      }
       private final void async() { if(!mb.isEmpty() && on.compareAndSet(0, 1)) try { e.execute(this); } catch(RuntimeException re) { on.set(0); throw re; } }
     };
     return a.tell(a); // Make self-aware
   }
+
+  private static Executor shared;
+  public static synchronized Executor sharedExecutor() { if (shared == null) shared = newSharedExecutor(); return shared; } // One pool for any number of actors, sized to the machine
+
+  private static Executor newSharedExecutor() {
+    final int n = Runtime.getRuntime().availableProcessors();
+    try { // A ForkJoinPool in async (FIFO) mode suits actors best, but it only exists from Java 7 on, and this client still targets 1.6
+      final Class<?> fjp = Class.forName("java.util.concurrent.ForkJoinPool");
+      final Class<?> factory = Class.forName("java.util.concurrent.ForkJoinPool$ForkJoinWorkerThreadFactory");
+      return (Executor) fjp.getConstructor(int.class, factory, Thread.UncaughtExceptionHandler.class, boolean.class)
+        .newInstance(n, fjp.getField("defaultForkJoinWorkerThreadFactory").get(null), null, true);
+    } catch (Exception notAvailable) {
+      return Executors.newFixedThreadPool(n, new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+        public Thread newThread(Runnable r) { final Thread t = new Thread(r, "patagonia actor " + count.incrementAndGet()); t.setDaemon(true); return t; }
+      });
+    }
+  }
 }
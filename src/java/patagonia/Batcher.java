@@ -0,0 +1,128 @@
+package patagonia;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import patagonia.callbacks.NoopCallback;
+
+/**
+ * Coalesces the packets a {@link Client} sends within a short window into
+ * a single POST whose body is an EDN vector of packets. A batch is flushed
+ * when the window elapses or when it reaches {@code maxMessages},
+ * whichever comes first.
+ */
+public class Batcher {
+
+    /**
+     * Notified after each flush with the number of packets it carried.
+     */
+    public static interface Listener {
+        void flushed(int messages);
+    }
+
+    private final Client client;
+    private final String endpoint;
+    private final long windowMillis;
+    private final int maxMessages;
+    private volatile Listener listener;
+
+    private List<Object> queued = new ArrayList<Object>();
+    private ScheduledFuture<?> pending;
+
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong messages = new AtomicLong();
+    private volatile int lastFlushSize;
+
+    private final Runnable flushTask = new Runnable() {
+        public void run() {
+            flush();
+        }
+    };
+
+    Batcher(Client client, String endpoint, long windowMillis, int maxMessages) {
+        if (windowMillis < 0) {
+            throw new IllegalArgumentException("The batch window must not be negative");
+        }
+        if (maxMessages < 1) {
+            throw new IllegalArgumentException("A batch must hold at least one message");
+        }
+        this.client = client;
+        this.endpoint = endpoint;
+        this.windowMillis = windowMillis;
+        this.maxMessages = maxMessages;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public void add(Object packet) {
+        List<Object> ready = null;
+        synchronized (this) {
+            queued.add(packet);
+            if (queued.size() >= maxMessages) {
+                ready = drain();
+            } else if (pending == null) {
+                pending = Util.timer().schedule(flushTask, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (ready != null) {
+            send(ready);
+        }
+    }
+
+    /**
+     * Sends whatever is queued right away.
+     */
+    public void flush() {
+        List<Object> ready;
+        synchronized (this) {
+            ready = drain();
+        }
+        if (ready != null) {
+            send(ready);
+        }
+    }
+
+    private List<Object> drain() {
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+        if (queued.isEmpty()) {
+            return null;
+        }
+        List<Object> ready = queued;
+        queued = new ArrayList<Object>(ready.size());
+        return ready;
+    }
+
+    private void send(List<Object> batch) {
+        int n = batch.size();
+        flushes.incrementAndGet();
+        messages.addAndGet(n);
+        lastFlushSize = n;
+
+        client.say(endpoint, "POST", batch, new NoopCallback());
+
+        Listener l = listener;
+        if (l != null) {
+            l.flushed(n);
+        }
+    }
+
+    public long getFlushCount() {
+        return flushes.get();
+    }
+
+    public long getMessageCount() {
+        return messages.get();
+    }
+
+    public int getLastFlushSize() {
+        return lastFlushSize;
+    }
+}
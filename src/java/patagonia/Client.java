@@ -4,68 +4,42 @@ package patagonia;
 import patagonia.callbacks.Callback;
 import patagonia.callbacks.NoopCallback;
 import patagonia.edn.Keyword;
-import patagonia.edn.printer.Printers;
 import patagonia.errors.PatagoniaException;
+import patagonia.http.HttpEntity;
 import patagonia.http.HttpHost;
-import patagonia.http.HttpRequestInterceptor;
+import patagonia.http.HttpRequest;
 import patagonia.http.HttpResponse;
-import patagonia.http.client.HttpClient;
-import patagonia.http.client.methods.HttpGet;
-import patagonia.http.client.methods.HttpPost;
+import patagonia.http.concurrent.BasicFuture;
 import patagonia.http.concurrent.FutureCallback;
-import patagonia.http.entity.InputStreamEntity;
-import patagonia.http.impl.DefaultConnectionReuseStrategy;
-import patagonia.http.impl.client.DefaultHttpClient;
-import patagonia.http.impl.nio.DefaultHttpClientIODispatch;
-import patagonia.http.impl.nio.pool.BasicNIOConnPool;
-import patagonia.http.impl.nio.reactor.DefaultConnectingIOReactor;
-import patagonia.http.impl.nio.reactor.IOReactorConfig;
 import patagonia.http.message.BasicHttpEntityEnclosingRequest;
+import patagonia.http.message.BasicHttpRequest;
 import patagonia.http.nio.protocol.BasicAsyncRequestProducer;
 import patagonia.http.nio.protocol.BasicAsyncResponseConsumer;
-import patagonia.http.nio.protocol.HttpAsyncRequestExecutor;
-import patagonia.http.nio.protocol.HttpAsyncRequester;
-import patagonia.http.nio.reactor.ConnectingIOReactor;
-import patagonia.http.nio.reactor.IOEventDispatch;
-import patagonia.http.nio.reactor.IOReactorException;
-import patagonia.http.params.CoreConnectionPNames;
-import patagonia.http.params.CoreProtocolPNames;
-import patagonia.http.params.HttpParams;
-import patagonia.http.params.SyncBasicHttpParams;
-import patagonia.http.protocol.BasicHttpContext;
-import patagonia.http.protocol.HttpProcessor;
-import patagonia.http.protocol.ImmutableHttpProcessor;
-import patagonia.http.protocol.RequestConnControl;
-import patagonia.http.protocol.RequestContent;
-import patagonia.http.protocol.RequestExpectContinue;
-import patagonia.http.protocol.RequestTargetHost;
-import patagonia.http.protocol.RequestUserAgent;
 import patagonia.processes.AttachmentProcess;
 import patagonia.processes.LoginProcess;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InterruptedIOException;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Logger;
 
 
 public class Client implements IClient {
 	private static Logger log = Logger.getLogger(Client.class.toString());
 	
+	public static final int DEFAULT_MAX_LEASES = 2;
+	
 	private String host;
 	private int port;
 	private String path;
-	private volatile Map<String,String> credentials = new HashMap<String,String>();
+	private final AtomicReference<Credentials> credentials = new AtomicReference<Credentials>(Credentials.EMPTY);
 	
 	public Map<String, String> getCredentials() {
-		return credentials;
+		return credentials.get().asMap();
 	}
 
 	private volatile UUID channel;
@@ -74,96 +48,68 @@ public class Client implements IClient {
 		return channel;
 	}
 
-	private ConnectingIOReactor ioReactor;
-    private HttpProcessor httpproc;
-    private HttpParams params;
-    private BasicNIOConnPool pool;
-    private LongPollClient longpoll;
+	private Transport transport;
+	private Transport.Lease lease;
+	private int maxLeases;
+    private volatile LongPollClient longpoll;
+    private volatile Batcher batcher;
+    private volatile boolean streaming;
+    private volatile PacketTemplate template;
 
 	private String context;
 	
     public Client(String host, int port, String path) {
+        this(host, port, path, null, DEFAULT_MAX_LEASES);
+    }
+    
+    /**
+     * Creates a client which sends through {@code transport}, keeping at
+     * most {@code maxLeases} requests in flight. A null transport means
+     * the process-wide {@link Transport#shared()} one.
+     */
+    public Client(String host, int port, String path, Transport transport, int maxLeases) {
         this.host = host;
         this.port = port;
         this.path = path;
+        this.transport = transport;
+        this.maxLeases = maxLeases;
     }
-    
-    private void initParams() {
-        this.params = new SyncBasicHttpParams();
-        this.params.setIntParameter(CoreConnectionPNames.SO_TIMEOUT, 30000)
-                .setIntParameter(CoreConnectionPNames.CONNECTION_TIMEOUT, 30000)
-                .setIntParameter(CoreConnectionPNames.SOCKET_BUFFER_SIZE, 8 * 1024)
-                .setBooleanParameter(CoreConnectionPNames.TCP_NODELAY, true)
-                .setParameter(CoreProtocolPNames.USER_AGENT, "DSR");
-    }
-    
-    private void initHTTPProcess() {
-    	this.httpproc = new ImmutableHttpProcessor(new HttpRequestInterceptor[]{
-            new RequestContent(),
-            new RequestTargetHost(),
-            new RequestConnControl(),
-            new RequestUserAgent(),
-            new RequestExpectContinue()
-        });
-    }
-    
-    private void initReactor() throws PatagoniaException {
-        IOReactorConfig config = new IOReactorConfig();
-        config.setIoThreadCount(1);
 
-        try {
-        	this.ioReactor = new DefaultConnectingIOReactor(config);
-        } catch (IOReactorException e) {
-            throw new PatagoniaException(e.getMessage());
-        }
+    public void init() throws PatagoniaException {
+    	if (this.transport == null) {
+    		this.transport = Transport.shared();
+    	}
+    	this.lease = this.transport.newLease(this.maxLeases);
     }
     
-    private void initPool() {
-        this.pool = new BasicNIOConnPool(this.ioReactor, this.params);
-        this.pool.setDefaultMaxPerRoute(2);    //
-        this.pool.setMaxTotal(2);              //
+    public LongPollClient getLongPoll() {
+    	return longpoll;
     }
-
-    private Thread buildChannelThread() {
-        final HttpAsyncRequestExecutor protocolHandler = new HttpAsyncRequestExecutor();
-        final IOEventDispatch ioEventDispatch = new DefaultHttpClientIODispatch(protocolHandler, this.params);
-        
-        return new Thread(new Runnable() {
-            public void run() {
-                try {
-                    ioReactor.execute(ioEventDispatch);
-                } catch (InterruptedIOException ex) {
-                    log.severe("Interrupted");
-                } catch (IOException e) {
-                    log.severe("I/O error: " + e.getMessage());
-                }
-            }
-        });
+    
+    /**
+     * Have pushes delivered value by value to
+     * {@link Callback#received(Object)}; see
+     * {@link LongPollClient#setStreaming(boolean)}. Takes effect on the
+     * next attach.
+     */
+    public void setStreaming(boolean streaming) {
+    	this.streaming = streaming;
     }
     
-    public void init() throws PatagoniaException {
-    	initParams();
-    	initHTTPProcess();
-        initReactor();
-        initPool();
-        buildChannelThread().start();
+    public Transport getTransport() {
+    	return transport;
     }
     
-    private void sendTo(String endpoint, String method, final InputStream inputStream, final Callback callBack) {
-    	DefaultConnectionReuseStrategy strategy = new DefaultConnectionReuseStrategy();   //
-    	HttpAsyncRequester requester = new HttpAsyncRequester(this.httpproc, strategy, this.params);
-    	
-        final HttpHost target = new HttpHost(host, port, "http");   //
+    private void sendTo(String endpoint, String method, final HttpEntity entity, final Callback callBack) {
+        final HttpHost target = target();
         
         BasicHttpEntityEnclosingRequest request = new BasicHttpEntityEnclosingRequest(method, this.path + endpoint);
-        request.setEntity(new InputStreamEntity(inputStream, -1));
-        Util.cookieDecoration(this.credentials, request);
+        request.setEntity(entity);
+        Util.cookieDecoration(this.credentials.get(), request);
         
-        requester.execute(
+        lease.execute(
                 new BasicAsyncRequestProducer(target, request),
                 new BasicAsyncResponseConsumer(),
-                pool,
-                new BasicHttpContext(),
                 new FutureCallback<HttpResponse>() {
                     public void completed(final HttpResponse response) {
                     	callBack.completed(response);
@@ -177,77 +123,153 @@ public class Client implements IClient {
                 });
     }
 
+    /**
+     * Releases this client. The transport is shared and is left running;
+     * call {@link Transport#shutdown()} to stop it.
+     */
     public void destroy() throws IOException {
-    	ioReactor.shutdown();
+    	if (this.longpoll != null) {
+    		this.longpoll.stop();
+    	}
+    	Batcher b = this.batcher;
+    	if (b != null) {
+    		b.flush();
+    	}
+    }
+    
+    private HttpHost target() {
+    	return new HttpHost(this.host, this.port, "http");
+    }
+    
+    /**
+     * Logs in without blocking. The session cookies are recorded before
+     * the returned future completes and before {@code callback}, which may
+     * be null, is told.
+     */
+    public Future<HttpResponse> loginAsync(String name, String email, Callback callback) {
+    	HttpRequest request = new BasicHttpEntityEnclosingRequest("POST", LoginProcess.path(name, email));
+    	return Util.exchange(this.lease, target(), request, new LoginProcess(name, email, this), callback);
     }
     
     public void login(String name, String email) {
         try {
-            String url = LoginProcess.url("http", this.host, this.port, name, email);
-            
-            HttpClient httpclient = new DefaultHttpClient();
-            HttpPost post = new HttpPost(url);
-            HttpResponse resp = httpclient.execute(post);
-            LoginProcess loginProc = new LoginProcess(name, email, this);
-            loginProc.completed(resp);
-            
+            loginAsync(name, email, null).get();
         } catch (Exception e) {
             log.severe("Error occurred");
             e.printStackTrace();
         }
     }
     
-    private void listen(String context, Callback callback) {
-        this.longpoll = new LongPollClient(this.host, this.port, "/", this.credentials);
-        longpoll.attach(context, callback);
+    private void listen(String context, Callback callback, final BasicFuture<UUID> attached) {
+        this.longpoll = new LongPollClient(this.host, this.port, "/", this.credentials, this.transport, LongPollClient.DEFAULT_OVERLAP);
+        longpoll.setStreaming(this.streaming);
+        longpoll.attachAsync(context, callback, new FutureCallback<UUID>() {
+            public void completed(final UUID result) {
+                attached.completed(channel);
+            }
+            public void failed(final Exception ex) {
+                attached.failed(ex);
+            }
+            public void cancelled() {
+                attached.cancel(true);
+            }
+        });
+    }
+    
+    /**
+     * Attaches to {@code context} without blocking: fetches this client's
+     * channel, then opens the long-poll channel whose pushes go to
+     * {@code callback}. The returned future yields this client's channel
+     * once both steps are done.
+     */
+    public Future<UUID> attachAsync(final String context, final Callback callback) {
+    	this.context = context;
+    	final BasicFuture<UUID> attached = new BasicFuture<UUID>(null);
+    	
+    	HttpRequest request = new BasicHttpRequest("GET", AttachmentProcess.path());
+    	Util.cookieDecoration(this.credentials.get(), request);
+    	AttachmentProcess process = new AttachmentProcess(this);
+    	Util.exchange(this.lease, target(), request, new EdnResponseConsumer(process, false), process, new Callback() {
+    		public void completed(HttpResponse response) {
+    			listen(context, callback, attached);
+    		}
+    		public void failed(Exception e) {
+    			attached.failed(e);
+    		}
+    		public void cancelled() {
+    			attached.cancel(true);
+    		}
+    	});
+    	return attached;
     }
     
     public void attach(String context, Callback callback) {
         try {
-        	this.context = context;
-            String url = AttachmentProcess.url("http", this.host, this.port);
-            
-            HttpClient httpclient = new DefaultHttpClient();
-            HttpGet get = new HttpGet(url);
-            Util.cookieDecoration(this.credentials, get);
-            HttpResponse resp = httpclient.execute(get);
-            AttachmentProcess attachProc = new AttachmentProcess(this);
-            attachProc.completed(resp);
-            
-            listen(this.context, callback);
-            
+            attachAsync(context, callback).get();
         } catch (Exception e) {
             log.severe("Error occurred");
             e.printStackTrace();
         }
     }
 
-    private void say(String endpoint, String method, String message, final Callback callBack) {
-    	sendTo(endpoint, method, new ByteArrayInputStream(message.getBytes()), callBack);
+    void say(String endpoint, String method, Object message, final Callback callBack) {
+    	sendTo(endpoint, method, new EdnEntity(message), callBack);
+    }
+    
+    /**
+     * The envelope for this client's packets, rebuilt only when the
+     * channel or session has changed since the last send.
+     */
+    private PacketTemplate template() {
+    	PacketTemplate t = this.template;
+    	UUID ch = this.channel;
+    	String session = this.credentials.get().getSessionId();
+    	if (t == null || !t.matches(ch, session)) {
+    		t = PacketTemplate.message(ch, session);
+    		this.template = t;
+    	}
+    	return t;
     }
     
     public void send(String top, Map<String,Object>... parameters) {
-    	Keyword topic = Keyword.newKeyword(top);
-    	Map<Keyword,Object> packet = Util.buildMessagePacket(this.channel, this.credentials);
-    	List<Map<String,Object>> messages = new ArrayList<Map<String,Object>>(Arrays.asList(parameters));
-    	
-    	packet.put(topic, messages);
-    	
-    	say("sink", "POST", Printers.printString(packet), new NoopCallback());
+    	send(top, null, parameters);
     }
 
     public void send(String top, UUID trace, Map<String,Object>... parameters) {
-    	Keyword topic = Keyword.newKeyword(top);
-    	Map<Keyword,Object> packet = Util.buildMessagePacket(this.channel, this.credentials);
-    	List<Map<String,Object>> messages = new ArrayList<Map<String,Object>>(Arrays.asList(parameters));
-    	
-    	packet.put(topic, messages);
+    	PacketTemplate.Packet packet = template().packet();
+    	packet.put(Keyword.newKeyword(top), Arrays.asList(parameters));
     	
     	if (trace != null) {
-    		packet.put(Util.kw("patagonia/trace"), trace);
+    		packet.put(PacketTemplate.TRACE, trace);
     	}
     	
-    	say("sink", "POST", Printers.printString(packet), new NoopCallback());
+    	post(packet);
+    }
+    
+    private void post(Map<Keyword,Object> packet) {
+    	Batcher b = this.batcher;
+    	if (b != null) {
+    		b.add(packet);
+    	} else {
+    		say("sink", "POST", packet, new NoopCallback());
+    	}
+    }
+    
+    /**
+     * Switches {@link #send} to batching mode: packets are queued and
+     * POSTed to the sink together, as one EDN vector, every
+     * {@code windowMillis} or as soon as {@code maxMessages} are queued.
+     *
+     * @return the Batcher, for flushing and flush statistics.
+     */
+    public Batcher enableBatching(long windowMillis, int maxMessages) {
+    	Batcher b = new Batcher(this, "sink", windowMillis, maxMessages);
+    	this.batcher = b;
+    	return b;
+    }
+    
+    public Batcher getBatcher() {
+    	return batcher;
     }
     
 	public static void main(String[] args) {
@@ -284,7 +306,11 @@ public class Client implements IClient {
 		this.channel = uuid;
 	}
 
-	public synchronized void addCredential(String k, String v) {
-		this.credentials.put(k, v);
+	public void addCredential(String k, String v) {
+		Credentials prev, next;
+		do {
+			prev = this.credentials.get();
+			next = prev.with(k, v);
+		} while (!this.credentials.compareAndSet(prev, next));
 	}
 }
@@ -0,0 +1,75 @@
+package patagonia;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import patagonia.http.Header;
+import patagonia.http.message.BasicHeader;
+
+/**
+ * An immutable snapshot of a client's credentials. Changing a credential
+ * makes a new snapshot, which the client swaps in atomically, so request
+ * threads read credentials without locking.
+ *
+ * <p>The Cookie header carrying the session is built once per snapshot
+ * and shared by every request made with it.
+ */
+public final class Credentials {
+
+	public static final String SESSION_ID = "session-id";
+	public static final String SESSION_KEY = "session-key";
+
+	public static final Credentials EMPTY = new Credentials(Collections.<String,String>emptyMap());
+
+	private final Map<String,String> values;
+	private final Header cookie;
+
+	private Credentials(Map<String,String> values) {
+		this.values = values;
+		this.cookie = values.get(SESSION_ID) != null
+			? new BasicHeader("Cookie", Util.pickleCookies(values))
+			: null;
+	}
+
+	public static Credentials of(Map<String,String> values) {
+		if (values == null || values.isEmpty()) {
+			return EMPTY;
+		}
+		return new Credentials(Collections.unmodifiableMap(new HashMap<String,String>(values)));
+	}
+
+	/**
+	 * A snapshot like this one, but with {@code key} set to {@code value}.
+	 */
+	public Credentials with(String key, String value) {
+		Map<String,String> m = new HashMap<String,String>(this.values);
+		m.put(key, value);
+		return new Credentials(Collections.unmodifiableMap(m));
+	}
+
+	public String get(String key) {
+		return values.get(key);
+	}
+
+	public String getSessionId() {
+		return values.get(SESSION_ID);
+	}
+
+	/**
+	 * The Cookie header for requests in this session, or null before
+	 * there is a session.
+	 */
+	public Header getCookieHeader() {
+		return cookie;
+	}
+
+	public Map<String,String> asMap() {
+		return values;
+	}
+
+	@Override
+	public String toString() {
+		return values.toString();
+	}
+}
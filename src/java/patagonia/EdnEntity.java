@@ -0,0 +1,126 @@
+package patagonia;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import patagonia.edn.printer.Printers;
+import patagonia.edn.printer.Utf8Output;
+import patagonia.http.entity.AbstractHttpEntity;
+import patagonia.http.nio.ContentEncoder;
+import patagonia.http.nio.IOControl;
+import patagonia.http.nio.entity.HttpAsyncContentProducer;
+
+/**
+ * A request entity holding an EDN value. The value is printed straight
+ * into a pooled UTF-8 buffer the first time the entity's length or
+ * content is needed, so the request carries an exact Content-Length and
+ * the payload is copied once, from the buffer into the
+ * {@link ContentEncoder}. The buffer goes back to the pool when the
+ * producer is closed.
+ */
+public class EdnEntity extends AbstractHttpEntity implements HttpAsyncContentProducer {
+
+    private static final int POOL_SIZE = 256;
+    private static final int MAX_POOLED_CAPACITY = 64 * 1024;
+    private static final ConcurrentLinkedQueue<Utf8Output> POOL = new ConcurrentLinkedQueue<Utf8Output>();
+
+    private final Object value;
+    private Utf8Output out;
+    private ByteBuffer buf;
+
+    public EdnEntity(Object value) {
+        this.value = value;
+    }
+
+    private static Utf8Output acquire() {
+        Utf8Output o = POOL.poll();
+        return o != null ? o : new Utf8Output(1024);
+    }
+
+    private static void release(Utf8Output o) {
+        if (o.capacity() <= MAX_POOLED_CAPACITY && POOL.size() < POOL_SIZE) {
+            o.reset();
+            POOL.offer(o);
+        }
+    }
+
+    private synchronized ByteBuffer content() {
+        if (this.buf == null) {
+            this.out = acquire();
+            print(this.out, this.value);
+            this.buf = this.out.asByteBuffer();
+        }
+        return this.buf;
+    }
+
+    /**
+     * Packets, and batches of them, are printed from their templates'
+     * cached envelopes. Anything else goes through a Printer.
+     */
+    private static void print(Utf8Output out, Object value) {
+        if (value instanceof PacketTemplate.Packet) {
+            ((PacketTemplate.Packet) value).writeTo(out);
+        } else if (value instanceof List && value instanceof RandomAccess
+                && !((List<?>) value).isEmpty() && ((List<?>) value).get(0) instanceof PacketTemplate.Packet) {
+            out.append('[');
+            for (Object o : (List<?>) value) {
+                print(out, o);
+                out.append(' ');
+            }
+            out.append(']');
+        } else {
+            Printers.newUtf8Printer(out).printValue(value);
+        }
+    }
+
+    public synchronized void produceContent(final ContentEncoder encoder, final IOControl ioctrl)
+            throws IOException {
+        ByteBuffer b = content();
+        encoder.write(b);
+        if (!b.hasRemaining()) {
+            encoder.complete();
+        }
+    }
+
+    public synchronized void close() {
+        if (this.out != null) {
+            Utf8Output o = this.out;
+            this.out = null;
+            this.buf = null;
+            release(o);
+        }
+    }
+
+    public long getContentLength() {
+        return content().limit();
+    }
+
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    public boolean isStreaming() {
+        return false;
+    }
+
+    public synchronized InputStream getContent() {
+        content();
+        return new ByteArrayInputStream(this.out.toByteArray());
+    }
+
+    public synchronized void writeTo(final OutputStream outstream) throws IOException {
+        if (outstream == null) {
+            throw new IllegalArgumentException("Output stream may not be null");
+        }
+        ByteBuffer b = content();
+        outstream.write(b.array(), 0, b.limit());
+        outstream.flush();
+    }
+
+}
@@ -0,0 +1,216 @@
+package patagonia;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import patagonia.callbacks.Callback;
+import patagonia.edn.parser.IncrementalParser;
+import patagonia.edn.parser.Parsers;
+import patagonia.http.ContentTooLongException;
+import patagonia.http.HttpEntity;
+import patagonia.http.HttpResponse;
+import patagonia.http.entity.ContentType;
+import patagonia.http.nio.ContentDecoder;
+import patagonia.http.nio.IOControl;
+import patagonia.http.nio.entity.ContentBufferEntity;
+import patagonia.http.nio.protocol.AbstractAsyncResponseConsumer;
+import patagonia.http.nio.util.HeapByteBufferAllocator;
+import patagonia.http.nio.util.SimpleInputBuffer;
+import patagonia.http.protocol.HttpContext;
+
+/**
+ * Decodes an EDN response body as it arrives. The body is parsed by an
+ * {@link IncrementalParser} on the I/O thread as each buffer is read, and
+ * each top-level value is handed to {@link Callback#received(Object)} as
+ * soon as its last byte has been parsed, so a long poll carrying many
+ * pushes doesn't have to be read in full before the first is handled.
+ * No more than {@code maxValueBytes} may be read without completing a
+ * value.
+ *
+ * <p>With {@code unwrap} set, a body consisting of one vector or list
+ * has its elements delivered one by one instead.
+ *
+ * <p>The parser and the buffer read into are kept by the I/O thread once
+ * the response is done with, and taken up by the next response it reads,
+ * so a thread reading one response after another allocates them once.
+ *
+ * <p>The result is the response itself. Its entity has already been
+ * consumed, so it is removed, except on a non-2xx response, whose body
+ * is buffered as usual and not parsed.
+ */
+public class EdnResponseConsumer extends AbstractAsyncResponseConsumer<HttpResponse> {
+
+    public static final int DEFAULT_MAX_VALUE_BYTES = 4 * 1024 * 1024;
+
+    private final Callback target;
+    private final boolean unwrap;
+    private final int maxValueBytes;
+
+    private volatile HttpResponse response;
+    private volatile SimpleInputBuffer errorBody;
+    private Reading reading;
+    private IncrementalParser parser;
+    private ByteBuffer buf;
+    private int unread;
+    private long values;
+
+    public EdnResponseConsumer(Callback target, boolean unwrap, int maxValueBytes) {
+        this.target = target;
+        this.unwrap = unwrap;
+        this.maxValueBytes = maxValueBytes;
+    }
+
+    public EdnResponseConsumer(Callback target, boolean unwrap) {
+        this(target, unwrap, DEFAULT_MAX_VALUE_BYTES);
+    }
+
+    @Override
+    protected void onResponseReceived(final HttpResponse response) throws IOException {
+        this.response = response;
+    }
+
+    @Override
+    protected void onEntityEnclosed(
+            final HttpEntity entity, final ContentType contentType) throws IOException {
+        int status = this.response.getStatusLine().getStatusCode();
+        if (status < 200 || status >= 300) {
+            long n = entity.getContentLength();
+            this.errorBody = new SimpleInputBuffer(n < 0 || n > maxValueBytes ? 4096 : (int) n,
+                    new HeapByteBufferAllocator());
+            this.response.setEntity(new ContentBufferEntity(entity, this.errorBody));
+            return;
+        }
+        this.response.setEntity(null);
+        this.reading = Reading.take(this.unwrap);
+        this.parser = this.reading.parser;
+        this.buf = this.reading.buf;
+    }
+
+    @Override
+    protected void onContentReceived(
+            final ContentDecoder decoder, final IOControl ioctrl) throws IOException {
+        if (this.errorBody != null) {
+            this.errorBody.consumeContent(decoder);
+            return;
+        }
+        if (this.buf == null) {
+            throw new IllegalStateException("Content buffer is null");
+        }
+        int n;
+        do {
+            this.buf.clear();
+            n = decoder.read(this.buf);
+            if (n > 0) {
+                this.buf.flip();
+                try {
+                    this.parser.feed(this.buf);
+                } catch (RuntimeException e) {
+                    throw new IOException("Malformed EDN in response", e);
+                }
+                this.unread += n;
+                deliverComplete();
+            }
+        } while (n > 0);
+
+        if (decoder.isCompleted()) {
+            try {
+                this.parser.finish();
+            } catch (RuntimeException e) {
+                throw new IOException("Malformed EDN in response", e);
+            }
+            deliverComplete();
+        }
+    }
+
+    /**
+     * Hand over the values completed so far. The bytes read since the
+     * last one count against {@code maxValueBytes}.
+     */
+    private void deliverComplete() throws IOException {
+        if (!this.parser.hasNext()) {
+            if (this.unread > this.maxValueBytes) {
+                throw new ContentTooLongException("EDN value exceeds " + this.maxValueBytes + " bytes");
+            }
+            return;
+        }
+        this.unread = 0;
+        while (this.parser.hasNext()) {
+            Object value = this.parser.next();
+            this.values++;
+            try {
+                this.target.received(value);
+            } catch (RuntimeException e) {
+                throw new IOException("Callback failed on a received value", e);
+            }
+        }
+    }
+
+    /**
+     * The number of values delivered so far.
+     */
+    public long getValueCount() {
+        return this.values;
+    }
+
+    @Override
+    protected void releaseResources() {
+        this.response = null;
+        this.errorBody = null;
+        this.parser = null;
+        this.buf = null;
+        if (this.reading != null) {
+            this.reading.putBack();
+            this.reading = null;
+        }
+    }
+
+    @Override
+    protected HttpResponse buildResult(final HttpContext context) {
+        return this.response;
+    }
+
+    /**
+     * A parser and the buffer it's fed from. Each thread keeps one of
+     * each kind which no response is using. Another response read by the
+     * same thread meanwhile gets one of its own.
+     */
+    private static final class Reading {
+
+        private static final ThreadLocal<Reading[]> IDLE = new ThreadLocal<Reading[]>() {
+            @Override
+            protected Reading[] initialValue() {
+                return new Reading[2];
+            }
+        };
+
+        final boolean unwrap;
+        final IncrementalParser parser;
+        final ByteBuffer buf = ByteBuffer.allocate(4096);
+
+        private Reading(boolean unwrap) {
+            this.unwrap = unwrap;
+            this.parser = new IncrementalParser(Parsers.defaultConfiguration(), unwrap);
+        }
+
+        static Reading take(boolean unwrap) {
+            Reading[] idle = IDLE.get();
+            int i = unwrap ? 1 : 0;
+            Reading r = idle[i];
+            if (r == null) {
+                return new Reading(unwrap);
+            }
+            idle[i] = null;
+            return r;
+        }
+
+        void putBack() {
+            this.parser.reset();
+            Reading[] idle = IDLE.get();
+            int i = this.unwrap ? 1 : 0;
+            if (idle[i] == null) {
+                idle[i] = this;
+            }
+        }
+    }
+
+}
@@ -1,53 +1,32 @@
 package patagonia;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InterruptedIOException;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Logger;
 
 
 import patagonia.callbacks.Callback;
-import patagonia.edn.Keyword;
-import patagonia.edn.printer.Printers;
 import patagonia.errors.PatagoniaException;
 import patagonia.http.HttpHost;
-import patagonia.http.HttpRequestInterceptor;
 import patagonia.http.HttpResponse;
-import patagonia.http.client.HttpClient;
-import patagonia.http.client.methods.HttpPost;
+import patagonia.http.StatusLine;
+import patagonia.http.client.HttpResponseException;
+import patagonia.http.concurrent.BasicFuture;
 import patagonia.http.concurrent.FutureCallback;
-import patagonia.http.entity.InputStreamEntity;
-import patagonia.http.entity.StringEntity;
-import patagonia.http.impl.DefaultConnectionReuseStrategy;
-import patagonia.http.impl.client.DefaultHttpClient;
-import patagonia.http.impl.nio.DefaultHttpClientIODispatch;
-import patagonia.http.impl.nio.pool.BasicNIOConnPool;
-import patagonia.http.impl.nio.reactor.DefaultConnectingIOReactor;
-import patagonia.http.impl.nio.reactor.IOReactorConfig;
 import patagonia.http.message.BasicHttpEntityEnclosingRequest;
 import patagonia.http.nio.protocol.BasicAsyncRequestProducer;
 import patagonia.http.nio.protocol.BasicAsyncResponseConsumer;
-import patagonia.http.nio.protocol.HttpAsyncRequestExecutor;
-import patagonia.http.nio.protocol.HttpAsyncRequester;
-import patagonia.http.nio.reactor.ConnectingIOReactor;
-import patagonia.http.nio.reactor.IOEventDispatch;
-import patagonia.http.nio.reactor.IOReactorException;
+import patagonia.http.nio.protocol.HttpAsyncResponseConsumer;
 import patagonia.http.params.CoreConnectionPNames;
-import patagonia.http.params.CoreProtocolPNames;
-import patagonia.http.params.HttpParams;
-import patagonia.http.params.SyncBasicHttpParams;
-import patagonia.http.protocol.BasicHttpContext;
-import patagonia.http.protocol.HttpProcessor;
-import patagonia.http.protocol.ImmutableHttpProcessor;
-import patagonia.http.protocol.RequestConnControl;
-import patagonia.http.protocol.RequestContent;
-import patagonia.http.protocol.RequestExpectContinue;
-import patagonia.http.protocol.RequestTargetHost;
-import patagonia.http.protocol.RequestUserAgent;
 import patagonia.processes.AttachmentProcess;
 
 public class LongPollClient implements IClient {
@@ -56,19 +35,70 @@ public class LongPollClient implements IClient {
 	private String host;
 	private int port;
 	private String path;
-	private volatile Map<String,String> credentials = new HashMap<String,String>();
+	private final AtomicReference<Credentials> credentials;
 	private volatile UUID channel;
 	
-	private ConnectingIOReactor ioReactor;
-    private HttpProcessor httpproc;
-    private HttpParams params;
-    private BasicNIOConnPool pool;
+	private Transport transport;
+	private Transport.Lease lease;
+	
+	public static final int DEFAULT_OVERLAP = 2;
+	
+	/**
+	 * Long polls are held open by the server, so they get a longer socket
+	 * timeout than the transport default. A poll that times out is
+	 * reissued like any other failed poll.
+	 */
+	public static final int DEFAULT_POLL_SO_TIMEOUT = 90000;
+	
+	private static final long MIN_BACKOFF_MS = 250;
+	private static final long MAX_BACKOFF_MS = 30000;
+	private static final Random JITTER = new Random();
+	
+	private final int overlap;
+	private volatile int pollTimeout = DEFAULT_POLL_SO_TIMEOUT;
+	private volatile Callback callback;
+	private volatile boolean stopped;
+	private volatile boolean streaming;
+	private volatile PacketTemplate template;
+	private final AtomicInteger outstanding = new AtomicInteger();
+	private final AtomicInteger dispatching = new AtomicInteger();
+	private final AtomicInteger failures = new AtomicInteger();
+	private final PollStats stats = new PollStats();
+	
+	private final Runnable armTask = new Runnable() {
+		public void run() {
+			arm();
+		}
+	};
 	
     public LongPollClient(String host, int port, String path, Map<String, String> credentials) {
+        this(host, port, path, Credentials.of(credentials), null, DEFAULT_OVERLAP);
+    }
+    
+    /**
+     * @param overlap how many polls to keep outstanding on the channel.
+     */
+    public LongPollClient(String host, int port, String path, Credentials credentials,
+                          Transport transport, int overlap) {
+        this(host, port, path, new AtomicReference<Credentials>(credentials), transport, overlap);
+    }
+    
+    /**
+     * Polls read {@code credentials} as they are issued, so a
+     * {@link Client} sharing its own sees them carry whatever it has set
+     * by then.
+     */
+    LongPollClient(String host, int port, String path, AtomicReference<Credentials> credentials,
+                   Transport transport, int overlap) {
+        if (overlap < 1) {
+            throw new IllegalArgumentException("At least one poll must be outstanding");
+        }
         this.host = host;
         this.port = port;
         this.path = path;
         this.credentials = credentials;
+        this.transport = transport;
+        this.overlap = overlap;
         try {
 			this.init();
 		} catch (PatagoniaException e) {
@@ -76,119 +106,250 @@ public class LongPollClient implements IClient {
 		}
     }
     
-    private void initParams() {
-        this.params = new SyncBasicHttpParams();
-        this.params.setIntParameter(CoreConnectionPNames.SO_TIMEOUT, 3000000)
-                .setIntParameter(CoreConnectionPNames.CONNECTION_TIMEOUT, 30000)
-                .setIntParameter(CoreConnectionPNames.SOCKET_BUFFER_SIZE, 8 * 1024)
-                .setBooleanParameter(CoreConnectionPNames.TCP_NODELAY, true)
-                .setParameter(CoreProtocolPNames.USER_AGENT, "DSR");
+    public void init() throws PatagoniaException {
+    	if (this.transport == null) {
+    		this.transport = Transport.shared();
+    	}
+    	this.lease = this.transport.newLease(this.overlap);
     }
     
-    private void initHTTPProcess() {
-    	this.httpproc = new ImmutableHttpProcessor(new HttpRequestInterceptor[]{
-            new RequestContent(),
-            new RequestTargetHost(),
-            new RequestConnControl(),
-            new RequestUserAgent(),
-            new RequestExpectContinue()
-        });
+    /**
+     * Swaps in new credentials; polls issued from now on carry them.
+     * A {@link Client}'s long poll shares its credentials, so this swaps
+     * them for the Client as well.
+     */
+    public void setCredentials(Credentials credentials) {
+    	this.credentials.set(credentials);
     }
     
-    private void initReactor() throws PatagoniaException {
-        IOReactorConfig config = new IOReactorConfig();
-        config.setIoThreadCount(1);
-
-        try {
-        	this.ioReactor = new DefaultConnectingIOReactor(config);
-        } catch (IOReactorException e) {
-            throw new PatagoniaException(e.getMessage());
-        }
+    public void setPollTimeout(int millis) {
+    	this.pollTimeout = millis;
     }
     
-    private void initPool() {
-        this.pool = new BasicNIOConnPool(this.ioReactor, this.params);
-        this.pool.setDefaultMaxPerRoute(2);    //
-        this.pool.setMaxTotal(2);              //
+    /**
+     * In streaming mode each value pushed on the channel goes to
+     * {@link Callback#received(Object)} as soon as it has been read, and
+     * a response which bundles several values in a vector is unbundled.
+     * Otherwise each whole response goes to
+     * {@link Callback#completed(HttpResponse)}.
+     */
+    public void setStreaming(boolean streaming) {
+    	this.streaming = streaming;
     }
-
-    private Thread buildChannelThread() {
-        final HttpAsyncRequestExecutor protocolHandler = new HttpAsyncRequestExecutor();
-        final IOEventDispatch ioEventDispatch = new DefaultHttpClientIODispatch(protocolHandler, this.params);
-        
-        return new Thread(new Runnable() {
-            public void run() {
-                try {
-                    ioReactor.execute(ioEventDispatch);
-                } catch (InterruptedIOException ex) {
-                    log.severe("Interrupted");
-                } catch (IOException e) {
-                    log.severe("I/O error: " + e.getMessage());
-                }
-            }
-        });
+    
+    public PollStats getStats() {
+    	return stats;
     }
     
-    public void init() throws PatagoniaException {
-    	initParams();
-    	initHTTPProcess();
-        initReactor();
-        initPool();
-        buildChannelThread().start();
+    /**
+     * Stops re-arming. Polls already outstanding run to completion and are
+     * still dispatched.
+     */
+    public void stop() {
+    	this.stopped = true;
     }
     
-    private void listen(String endpoint, String method, final InputStream inputStream, final Callback callBack) {
-    	DefaultConnectionReuseStrategy strategy = new DefaultConnectionReuseStrategy();   //
-    	HttpAsyncRequester requester = new HttpAsyncRequester(this.httpproc, strategy, this.params);
-    	
+    /**
+     * Tops the channel up to {@code overlap} outstanding polls. Responses
+     * being dispatched count against the overlap, so a slow callback
+     * leaves pushes queued on the server rather than piling up here.
+     */
+    private void arm() {
+    	while (!stopped) {
+    		int n = outstanding.get();
+    		if (n + dispatching.get() >= overlap) {
+    			return;
+    		}
+    		if (outstanding.compareAndSet(n, n + 1)) {
+    			stats.armed(n);
+    			poll();
+    		}
+    	}
+    }
+    
+    private void settle() {
+    	stats.settled(outstanding.decrementAndGet());
+    }
+    
+    private void backoff() {
+    	int attempt = failures.incrementAndGet();
+    	long ceiling = Math.min(MAX_BACKOFF_MS, MIN_BACKOFF_MS << Math.min(attempt - 1, 16));
+    	long delay = ceiling / 2 + (long) (JITTER.nextDouble() * (ceiling / 2));
+    	Util.timer().schedule(armTask, delay, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Gives up on a poll, the first time this is called for it, and arms
+     * the next one after a backoff which grows with each failure in a
+     * row.
+     */
+    private void retry(AtomicBoolean once) {
+    	stats.failed();
+    	if (once.compareAndSet(false, true)) {
+    		settle();
+    	}
+    	if (!stopped) {
+    		backoff();
+    	}
+    }
+    
+    private static boolean succeeded(HttpResponse response) {
+    	int status = response.getStatusLine().getStatusCode();
+    	return status >= 200 && status < 300;
+    }
+    
+    /**
+     * Marks a poll as answered, the first time this is called for it, and
+     * arms the next one.
+     */
+    private void answered(AtomicBoolean once, long issued) {
+    	if (once.compareAndSet(false, true)) {
+    		stats.polled(System.nanoTime() - issued);
+    		failures.set(0);
+    		settle();
+    		arm();
+    	}
+    }
+    
+    /**
+     * Hands a push to the callback, from a response which arrived at
+     * {@code arrived}.
+     */
+    private void dispatch(Object value, long arrived) {
+    	dispatching.incrementAndGet();
+    	long start = System.nanoTime();
+    	try {
+    		callback.received(value);
+    	} finally {
+    		stats.dispatched(start - arrived, System.nanoTime() - start);
+    		dispatching.decrementAndGet();
+    	}
+    }
+    
+    private void poll() {
         final HttpHost target = new HttpHost(host, port, "http");   //
+        final long issued = System.nanoTime();
+        final AtomicBoolean once = new AtomicBoolean();
+        final AtomicLong arrived = new AtomicLong();
         
-        BasicHttpEntityEnclosingRequest request = new BasicHttpEntityEnclosingRequest(method, this.path + endpoint);
-        request.setEntity(new InputStreamEntity(inputStream, -1));
-        Util.cookieDecoration(this.credentials, request);
+        PacketTemplate t = this.template;
+        String session = this.credentials.get().getSessionId();
+        if (t == null || !t.matches(this.channel, session)) {
+        	t = PacketTemplate.context(this.channel, session);
+        	this.template = t;
+        }
+        BasicHttpEntityEnclosingRequest request = new BasicHttpEntityEnclosingRequest("POST", this.path + "source");
+        request.setEntity(new EdnEntity(t.packet()));
+        request.getParams().setIntParameter(CoreConnectionPNames.SO_TIMEOUT, this.pollTimeout);
+        Util.cookieDecoration(this.credentials.get(), request);
         
-        requester.execute(
+        HttpAsyncResponseConsumer<HttpResponse> consumer;
+        if (streaming) {
+        	consumer = new EdnResponseConsumer(new Callback() {
+        		public void received(Object value) {
+        			dispatch(value, arrived.get());
+        		}
+        	}, true) {
+        		@Override
+        		protected void onResponseReceived(HttpResponse response) throws IOException {
+        			arrived.set(System.nanoTime());
+        			super.onResponseReceived(response);
+        			if (succeeded(response)) {
+        				answered(once, issued);
+        			}
+        		}
+        	};
+        } else {
+        	consumer = new BasicAsyncResponseConsumer() {
+        		@Override
+        		protected void onResponseReceived(HttpResponse response) throws IOException {
+        			arrived.set(System.nanoTime());
+        			super.onResponseReceived(response);
+        		}
+        	};
+        }
+        
+        lease.execute(
                 new BasicAsyncRequestProducer(target, request),
-                new BasicAsyncResponseConsumer(),
-                pool,
-                new BasicHttpContext(),
+                consumer,
                 new FutureCallback<HttpResponse>() {
                     public void completed(final HttpResponse response) {
-                    	listen(callBack);
+                    	// An error status, such as a 401 once the session
+                    	// has expired, is retried like a failed poll, not
+                    	// at once.
+                    	if (!succeeded(response)) {
+                    		retry(once);
+                    		if (streaming) {
+                    			StatusLine line = response.getStatusLine();
+                    			callback.failed(new HttpResponseException(
+                    					line.getStatusCode(), line.getReasonPhrase()));
+                    		} else {
+                    			callback.completed(response);
+                    		}
+                    		return;
+                    	}
+                    	answered(once, issued);
+                    	if (streaming) {
+                    		arm();
+                    		return;
+                    	}
                     	
-                    	callBack.completed(response);
+                    	dispatching.incrementAndGet();
+                    	long start = System.nanoTime();
+                    	try {
+                    		callback.completed(response);
+                    	} finally {
+                    		stats.dispatched(start - arrived.get(), System.nanoTime() - start);
+                    		dispatching.decrementAndGet();
+                    		arm();
+                    	}
                     }
                     public void failed(final Exception ex) {
-                        callBack.failed(ex);
+                    	retry(once);
+                        callback.failed(ex);
                     }
                     public void cancelled() {
-                        callBack.cancelled();
+                    	if (once.compareAndSet(false, true)) {
+                    		settle();
+                    	}
+                        callback.cancelled();
                     }
                 });
     }
     
-    
-    private void listen(Callback callback) {
-    	Map<Keyword,Object> packet = Util.buildContextPacket(this.channel, this.credentials);
-    	String message = Printers.printString(packet);
-    	
-    	listen("source", "POST", new ByteArrayInputStream(message.getBytes()), callback);
-    }
+	/**
+	 * Opens a long-poll channel on {@code context} without blocking and
+	 * starts polling it, handing every push to {@code callback}. The
+	 * returned future, and {@code done} if not null, complete with the
+	 * channel once it is open.
+	 */
+	public Future<UUID> attachAsync(String context, Callback callback, FutureCallback<UUID> done) {
+		final BasicFuture<UUID> attached = new BasicFuture<UUID>(done);
+		this.callback = callback;
+		
+		BasicHttpEntityEnclosingRequest request = new BasicHttpEntityEnclosingRequest("POST", "/context/new/" + context);
+		Util.cookieDecoration(this.credentials.get(), request);
+		request.setEntity(new EdnEntity(Collections.emptyMap()));
+		AttachmentProcess process = new AttachmentProcess(this);
+		Util.exchange(this.lease, new HttpHost(host, port, "http"), request,
+				new EdnResponseConsumer(process, false), process, new Callback() {
+			public void completed(HttpResponse response) {
+				arm();
+				attached.completed(channel);
+			}
+			public void failed(Exception e) {
+				attached.failed(e);
+			}
+			public void cancelled() {
+				attached.cancel(true);
+			}
+		});
+		return attached;
+	}
 
 	public void attach(String context, Callback callback) {
 		try {
-	        String url = "http://" + this.host + ":" + this.port + "/context/new/" + context;
-	        
-	        HttpClient httpclient = new DefaultHttpClient();
-	        HttpPost post = new HttpPost(url);
-	        Util.cookieDecoration(this.credentials, post);
-	        post.setEntity(new StringEntity("{}"));
-	        HttpResponse resp = httpclient.execute(post);
-	        AttachmentProcess attachProc = new AttachmentProcess(this);
-	        attachProc.completed(resp);
-	        
-	        listen(callback);
-	        
+	        attachAsync(context, callback, null).get();
 	    } catch (Exception e) {
 	        log.severe("Error occurred");
 	        e.printStackTrace();
@@ -0,0 +1,205 @@
+package patagonia;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import patagonia.edn.Keyword;
+import patagonia.edn.Symbol;
+import patagonia.edn.printer.Printer;
+import patagonia.edn.printer.Printers;
+import patagonia.edn.printer.Utf8Output;
+
+/**
+ * The envelope shared by every packet a client sends on one channel
+ * within one session. The envelope is built and printed once; each
+ * {@link Packet} made from it only holds the fields added per send, and
+ * {@link EdnEntity} prints it by copying the envelope's bytes and then
+ * printing just those fields.
+ *
+ * <p>A template is immutable. Clients keep one per channel and session,
+ * and build a new one when either changes.
+ */
+public final class PacketTemplate {
+
+	public static final Keyword VERSION = Keyword.newKeyword("version");
+	public static final Keyword TAG = Keyword.newKeyword("tag");
+	public static final Keyword TO = Keyword.newKeyword("to");
+	public static final Keyword TYPE = Keyword.newKeyword("type");
+	public static final Keyword OBJECT = Keyword.newKeyword("object");
+	public static final Keyword CONTEXT_ID = Keyword.newKeyword("context-id");
+	public static final Keyword SESSION_ID = Keyword.newKeyword("session-id");
+	public static final Keyword TRACE = Keyword.newKeyword("patagonia/trace");
+
+	private static final String PROTOCOL_VERSION = "0.1";
+	private static final Keyword PUSH = Keyword.newKeyword("push");
+	private static final Keyword LONG_POLL = Keyword.newKeyword("long-poll");
+	private static final Symbol GLOBAL_MESSAGING = Symbol.newSymbol("patagonia.sys.global-messaging");
+	private static final Symbol CONTEXT = Symbol.newSymbol("patagonia.sys.context");
+
+	private final UUID channel;
+	private final String session;
+	private final Map<Keyword,Object> envelope;
+	private final byte[] prefix;
+
+	private PacketTemplate(Keyword tag, Symbol type, UUID channel, String session) {
+		this.channel = channel;
+		this.session = session;
+
+		Map<Keyword,Object> address = new LinkedHashMap<Keyword,Object>(4);
+		address.put(TYPE, type);
+		address.put(OBJECT, channel);
+
+		Map<Keyword,Object> e = new LinkedHashMap<Keyword,Object>(8);
+		e.put(VERSION, PROTOCOL_VERSION);
+		e.put(TAG, tag);
+		e.put(TO, Collections.unmodifiableMap(address));
+		e.put(CONTEXT_ID, channel);
+		e.put(SESSION_ID, session != null ? UUID.fromString(session) : null);
+		this.envelope = Collections.unmodifiableMap(e);
+
+		// Everything up to, but not including, the closing brace. The
+		// trailing space keeps a nil session from running into what follows.
+		Utf8Output out = new Utf8Output();
+		Printer p = Printers.newUtf8Printer(out).append('{');
+		for (Map.Entry<Keyword,Object> entry : this.envelope.entrySet()) {
+			p.printValue(entry.getKey()).printValue(entry.getValue());
+		}
+		out.append(' ');
+		this.prefix = out.toByteArray();
+	}
+
+	/**
+	 * The envelope of messages pushed to the global messaging sink.
+	 */
+	public static PacketTemplate message(UUID channel, String session) {
+		return new PacketTemplate(PUSH, GLOBAL_MESSAGING, channel, session);
+	}
+
+	/**
+	 * The envelope of long polls on a context channel.
+	 */
+	public static PacketTemplate context(UUID channel, String session) {
+		return new PacketTemplate(LONG_POLL, CONTEXT, channel, session);
+	}
+
+	/**
+	 * True if this template was built for {@code channel} and
+	 * {@code session}, so it can be reused as is.
+	 */
+	public boolean matches(UUID channel, String session) {
+		return (this.channel == null ? channel == null : this.channel.equals(channel))
+			&& (this.session == null ? session == null : this.session.equals(session));
+	}
+
+	public Map<Keyword,Object> getEnvelope() {
+		return envelope;
+	}
+
+	public Packet packet() {
+		return new Packet(this);
+	}
+
+	/**
+	 * A packet made from a template: the shared envelope plus a few fields
+	 * of its own. It is a regular Map, and can be read and printed like
+	 * one. Putting a field holds it in the packet, shadowing the envelope's
+	 * field of the same name, if any. Removing fields is not supported.
+	 *
+	 * <p>Like any HashMap, a Packet should only be modified by one thread.
+	 */
+	public static final class Packet extends AbstractMap<Keyword,Object> {
+		private final PacketTemplate template;
+		private Keyword[] keys = new Keyword[2];
+		private Object[] values = new Object[2];
+		private int count;
+		private boolean shadowed;
+
+		Packet(PacketTemplate template) {
+			this.template = template;
+		}
+
+		private int indexOf(Object key) {
+			for (int i = 0; i < count; i++) {
+				if (keys[i].equals(key)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		public Object put(Keyword key, Object value) {
+			if (key == null) {
+				throw new NullPointerException("Packet fields need a key");
+			}
+			int i = indexOf(key);
+			if (i >= 0) {
+				Object old = values[i];
+				values[i] = value;
+				return old;
+			}
+			if (count == keys.length) {
+				Keyword[] k = new Keyword[count * 2];
+				Object[] v = new Object[count * 2];
+				System.arraycopy(keys, 0, k, 0, count);
+				System.arraycopy(values, 0, v, 0, count);
+				keys = k;
+				values = v;
+			}
+			keys[count] = key;
+			values[count] = value;
+			count++;
+			if (template.envelope.containsKey(key)) {
+				shadowed = true;
+				return template.envelope.get(key);
+			}
+			return null;
+		}
+
+		@Override
+		public Object get(Object key) {
+			int i = indexOf(key);
+			return i >= 0 ? values[i] : template.envelope.get(key);
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return indexOf(key) >= 0 || template.envelope.containsKey(key);
+		}
+
+		@Override
+		public int size() {
+			return shadowed ? entrySet().size() : template.envelope.size() + count;
+		}
+
+		@Override
+		public Set<Map.Entry<Keyword,Object>> entrySet() {
+			Map<Keyword,Object> all = new LinkedHashMap<Keyword,Object>(template.envelope);
+			for (int i = 0; i < count; i++) {
+				all.put(keys[i], values[i]);
+			}
+			return Collections.unmodifiableMap(all).entrySet();
+		}
+
+		/**
+		 * Print this packet as EDN: the envelope's bytes, then this
+		 * packet's own fields.
+		 */
+		public void writeTo(Utf8Output out) {
+			if (shadowed) {
+				Printers.newUtf8Printer(out).printValue(this);
+				return;
+			}
+			out.write(template.prefix, 0, template.prefix.length);
+			Printer p = Printers.newUtf8Printer(out);
+			for (int i = 0; i < count; i++) {
+				p.printValue(keys[i]).printValue(values[i]);
+			}
+			p.append('}');
+		}
+	}
+}
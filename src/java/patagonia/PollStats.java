@@ -0,0 +1,128 @@
+package patagonia;
+
+/**
+ * Counters kept by a {@link LongPollClient} for tuning how many polls it
+ * keeps outstanding.
+ *
+ * <ul>
+ * <li>The <em>hold time</em> of a poll runs from issuing the request to
+ * receiving the response. It bounds how long a push can wait on the
+ * server before it is delivered.</li>
+ * <li>The <em>delivery time</em> of a push runs from the arrival of the
+ * response carrying it to the callback being handed it. In streaming
+ * mode it's the time spent reading and dispatching the pushes before it
+ * in the same response; otherwise it includes reading the whole
+ * response.</li>
+ * <li>The <em>dispatch time</em> is the time the callback spends on a
+ * push, or on a whole response when not streaming. Pushes queue up on
+ * the server while it runs, unless another poll is outstanding.</li>
+ * <li>The <em>uncovered time</em> is the total time during which no poll
+ * was outstanding at all. A push arriving then waits at least until the
+ * next poll is issued. More overlap should drive it towards zero.</li>
+ * </ul>
+ *
+ * <p>Pushes carry no timestamp from the server, so the time from a push
+ * being sent to its delivery can't be measured here. It is made up of
+ * the wait for a poll to be outstanding, which only happens in uncovered
+ * time; the rest of that poll's hold time at most; and the delivery
+ * time. Tuning the overlap trades the first against the load of polls
+ * held open.
+ */
+public class PollStats {
+    private long polls;
+    private long failures;
+    private long holdNanos;
+    private long maxHoldNanos;
+    private long dispatches;
+    private long deliveryNanos;
+    private long maxDeliveryNanos;
+    private long dispatchNanos;
+    private long maxDispatchNanos;
+    private long uncoveredNanos;
+    private long uncoveredSince;
+
+    synchronized void armed(int outstandingBefore) {
+        if (outstandingBefore == 0 && uncoveredSince != 0) {
+            uncoveredNanos += System.nanoTime() - uncoveredSince;
+            uncoveredSince = 0;
+        }
+    }
+
+    synchronized void settled(int outstandingAfter) {
+        if (outstandingAfter == 0 && uncoveredSince == 0) {
+            uncoveredSince = System.nanoTime();
+        }
+    }
+
+    synchronized void polled(long holdNanos) {
+        polls++;
+        this.holdNanos += holdNanos;
+        maxHoldNanos = Math.max(maxHoldNanos, holdNanos);
+    }
+
+    synchronized void dispatched(long deliveryNanos, long nanos) {
+        dispatches++;
+        this.deliveryNanos += deliveryNanos;
+        maxDeliveryNanos = Math.max(maxDeliveryNanos, deliveryNanos);
+        dispatchNanos += nanos;
+        maxDispatchNanos = Math.max(maxDispatchNanos, nanos);
+    }
+
+    synchronized void failed() {
+        failures++;
+    }
+
+    public synchronized long getPolls() {
+        return polls;
+    }
+
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    public synchronized double getMeanHoldMillis() {
+        return polls == 0 ? 0 : holdNanos / 1e6 / polls;
+    }
+
+    public synchronized double getMaxHoldMillis() {
+        return maxHoldNanos / 1e6;
+    }
+
+    /**
+     * The number of pushes handed to the callback, or of responses when
+     * not streaming.
+     */
+    public synchronized long getDispatches() {
+        return dispatches;
+    }
+
+    public synchronized double getMeanDeliveryMillis() {
+        return dispatches == 0 ? 0 : deliveryNanos / 1e6 / dispatches;
+    }
+
+    public synchronized double getMaxDeliveryMillis() {
+        return maxDeliveryNanos / 1e6;
+    }
+
+    public synchronized double getMeanDispatchMillis() {
+        return dispatches == 0 ? 0 : dispatchNanos / 1e6 / dispatches;
+    }
+
+    public synchronized double getMaxDispatchMillis() {
+        return maxDispatchNanos / 1e6;
+    }
+
+    public synchronized double getUncoveredMillis() {
+        long open = uncoveredSince != 0 ? System.nanoTime() - uncoveredSince : 0;
+        return (uncoveredNanos + open) / 1e6;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("polls=%d failures=%d hold=%.1f/%.1fms dispatches=%d "
+                + "delivery=%.2f/%.2fms dispatch=%.2f/%.2fms uncovered=%.1fms",
+                polls, failures, getMeanHoldMillis(), getMaxHoldMillis(), dispatches,
+                getMeanDeliveryMillis(), getMaxDeliveryMillis(),
+                getMeanDispatchMillis(), getMaxDispatchMillis(), getUncoveredMillis());
+    }
+}
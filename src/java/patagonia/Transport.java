@@ -0,0 +1,298 @@
+package patagonia;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import patagonia.errors.PatagoniaException;
+import patagonia.http.HttpRequestInterceptor;
+import patagonia.http.concurrent.BasicFuture;
+import patagonia.http.concurrent.FutureCallback;
+import patagonia.http.impl.DefaultConnectionReuseStrategy;
+import patagonia.http.impl.nio.DefaultHttpClientIODispatch;
+import patagonia.http.impl.nio.pool.BasicNIOConnPool;
+import patagonia.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import patagonia.http.impl.nio.reactor.IOReactorConfig;
+import patagonia.http.nio.protocol.HttpAsyncRequestExecutor;
+import patagonia.http.nio.protocol.HttpAsyncRequestProducer;
+import patagonia.http.nio.protocol.HttpAsyncRequester;
+import patagonia.http.nio.protocol.HttpAsyncResponseConsumer;
+import patagonia.http.nio.reactor.IOEventDispatch;
+import patagonia.http.nio.reactor.IOReactorException;
+import patagonia.http.params.CoreConnectionPNames;
+import patagonia.http.params.CoreProtocolPNames;
+import patagonia.http.params.HttpParams;
+import patagonia.http.params.SyncBasicHttpParams;
+import patagonia.http.protocol.BasicHttpContext;
+import patagonia.http.protocol.HttpProcessor;
+import patagonia.http.protocol.ImmutableHttpProcessor;
+import patagonia.http.protocol.RequestConnControl;
+import patagonia.http.protocol.RequestContent;
+import patagonia.http.protocol.RequestExpectContinue;
+import patagonia.http.protocol.RequestTargetHost;
+import patagonia.http.protocol.RequestUserAgent;
+
+/**
+ * A Transport owns one multi-worker I/O reactor, one route-aware
+ * connection pool and one requester. Any number of {@link Client}s and
+ * {@link LongPollClient}s can share a Transport; each of them takes a
+ * {@link Lease} that caps how many requests it may have in flight.
+ */
+public class Transport {
+    private static Logger log = Logger.getLogger(Transport.class.toString());
+
+    public static final int DEFAULT_MAX_TOTAL = 4096;
+    public static final int DEFAULT_MAX_PER_ROUTE = 4096;
+
+    private static Transport shared;
+
+    private final int workers;
+    private final int maxTotal;
+    private final int maxPerRoute;
+
+    private HttpParams params;
+    private HttpProcessor httpproc;
+    private DefaultConnectingIOReactor ioReactor;
+    private BasicNIOConnPool pool;
+    private HttpAsyncRequester requester;
+    private Thread channelThread;
+
+    public Transport(int workers, int maxTotal, int maxPerRoute) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("A transport needs at least one worker");
+        }
+        this.workers = workers;
+        this.maxTotal = maxTotal;
+        this.maxPerRoute = maxPerRoute;
+    }
+
+    public Transport() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_TOTAL, DEFAULT_MAX_PER_ROUTE);
+    }
+
+    /**
+     * Returns the process-wide Transport, creating and starting it on
+     * first use.
+     */
+    public static synchronized Transport shared() throws PatagoniaException {
+        if (shared == null) {
+            Transport t = new Transport();
+            t.init();
+            shared = t;
+        }
+        return shared;
+    }
+
+    private void initParams() {
+        this.params = new SyncBasicHttpParams();
+        this.params.setIntParameter(CoreConnectionPNames.SO_TIMEOUT, 30000)
+                .setIntParameter(CoreConnectionPNames.CONNECTION_TIMEOUT, 30000)
+                .setIntParameter(CoreConnectionPNames.SOCKET_BUFFER_SIZE, 8 * 1024)
+                .setBooleanParameter(CoreConnectionPNames.TCP_NODELAY, true)
+                .setParameter(CoreProtocolPNames.USER_AGENT, "DSR");
+    }
+
+    private void initHTTPProcess() {
+        this.httpproc = new ImmutableHttpProcessor(new HttpRequestInterceptor[]{
+            new RequestContent(),
+            new RequestTargetHost(),
+            new RequestConnControl(),
+            new RequestUserAgent(),
+            new RequestExpectContinue()
+        });
+    }
+
+    private void initReactor() throws PatagoniaException {
+        IOReactorConfig config = new IOReactorConfig();
+        config.setIoThreadCount(this.workers);
+
+        try {
+            this.ioReactor = new DefaultConnectingIOReactor(config, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "patagonia I/O worker " + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        } catch (IOReactorException e) {
+            throw new PatagoniaException(e.getMessage());
+        }
+    }
+
+    private void initPool() {
+        this.pool = new BasicNIOConnPool(this.ioReactor, this.params);
+        this.pool.setDefaultMaxPerRoute(this.maxPerRoute);
+        this.pool.setMaxTotal(this.maxTotal);
+    }
+
+    private void initRequester() {
+        this.requester = new HttpAsyncRequester(this.httpproc, new DefaultConnectionReuseStrategy(), this.params);
+    }
+
+    private Thread buildChannelThread() {
+        final HttpAsyncRequestExecutor protocolHandler = new HttpAsyncRequestExecutor();
+        final IOEventDispatch ioEventDispatch = new DefaultHttpClientIODispatch(protocolHandler, this.params);
+
+        Thread t = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    ioReactor.execute(ioEventDispatch);
+                } catch (InterruptedIOException ex) {
+                    log.severe("Interrupted");
+                } catch (IOException e) {
+                    log.severe("I/O error: " + e.getMessage());
+                }
+            }
+        }, "patagonia I/O reactor");
+        t.setDaemon(true);
+        return t;
+    }
+
+    public synchronized void init() throws PatagoniaException {
+        if (this.channelThread != null) {
+            return;
+        }
+        initParams();
+        initHTTPProcess();
+        initReactor();
+        initPool();
+        initRequester();
+        this.channelThread = buildChannelThread();
+        this.channelThread.start();
+    }
+
+    public HttpParams getParams() {
+        return params;
+    }
+
+    public BasicNIOConnPool getPool() {
+        return pool;
+    }
+
+    public HttpAsyncRequester getRequester() {
+        return requester;
+    }
+
+    /**
+     * Returns the number of I/O sessions each worker thread is currently
+     * multiplexing, keyed by thread name.
+     */
+    public Map<String, Integer> sessionsPerWorker() {
+        return ioReactor.getSessionCounts();
+    }
+
+    /**
+     * Returns a new Lease allowing at most {@code limit} concurrent
+     * requests through this Transport.
+     */
+    public Lease newLease(int limit) {
+        return new Lease(limit);
+    }
+
+    public void shutdown() throws IOException {
+        synchronized (Transport.class) {
+            if (shared == this) {
+                shared = null;
+            }
+        }
+        ioReactor.shutdown();
+    }
+
+    /**
+     * A per-client cap on the number of requests in flight. Requests
+     * submitted past the cap are queued and started, in order, as earlier
+     * ones complete. Submitting never blocks the caller.
+     */
+    public class Lease {
+        private final int limit;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final ConcurrentLinkedQueue<Runnable> pending = new ConcurrentLinkedQueue<Runnable>();
+
+        Lease(int limit) {
+            if (limit < 1) {
+                throw new IllegalArgumentException("A lease must allow at least one request");
+            }
+            this.limit = limit;
+        }
+
+        public int getLimit() {
+            return limit;
+        }
+
+        public int getInFlight() {
+            return inFlight.get();
+        }
+
+        public int getPending() {
+            return pending.size();
+        }
+
+        public <T> Future<T> execute(final HttpAsyncRequestProducer producer,
+                                     final HttpAsyncResponseConsumer<T> consumer,
+                                     final FutureCallback<T> callback) {
+            final BasicFuture<T> future = new BasicFuture<T>(callback);
+            pending.offer(new Runnable() {
+                public void run() {
+                    // The slot is given up once, whether the requester
+                    // calls back or throws.
+                    final AtomicBoolean slot = new AtomicBoolean(true);
+                    try {
+                        requester.execute(producer, consumer, pool, new BasicHttpContext(),
+                                new FutureCallback<T>() {
+                                    public void completed(final T result) {
+                                        release(slot);
+                                        future.completed(result);
+                                    }
+                                    public void failed(final Exception ex) {
+                                        release(slot);
+                                        future.failed(ex);
+                                    }
+                                    public void cancelled() {
+                                        release(slot);
+                                        future.cancel(true);
+                                    }
+                                });
+                    } catch (RuntimeException ex) {
+                        release(slot);
+                        future.failed(ex);
+                    }
+                }
+            });
+            drain();
+            return future;
+        }
+
+        private void release(AtomicBoolean slot) {
+            if (slot.compareAndSet(true, false)) {
+                inFlight.decrementAndGet();
+                drain();
+            }
+        }
+
+        private void drain() {
+            while (!pending.isEmpty()) {
+                int n = inFlight.get();
+                if (n >= limit) {
+                    return;
+                }
+                if (!inFlight.compareAndSet(n, n + 1)) {
+                    continue;
+                }
+                Runnable next = pending.poll();
+                if (next == null) {
+                    inFlight.decrementAndGet();
+                    continue;
+                }
+                next.run();
+            }
+        }
+    }
+}
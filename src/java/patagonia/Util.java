@@ -7,14 +7,43 @@ import java.io.InputStreamReader;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 
 
+import patagonia.callbacks.Callback;
 import patagonia.edn.Keyword;
 import patagonia.edn.Symbol;
 import patagonia.http.Header;
+import patagonia.http.HttpHost;
 import patagonia.http.HttpRequest;
+import patagonia.http.HttpResponse;
+import patagonia.http.concurrent.BasicFuture;
+import patagonia.http.concurrent.FutureCallback;
+import patagonia.http.nio.protocol.BasicAsyncRequestProducer;
+import patagonia.http.nio.protocol.BasicAsyncResponseConsumer;
+import patagonia.http.nio.protocol.HttpAsyncResponseConsumer;
 
 public class Util {
+	private static final ScheduledExecutorService TIMER =
+		Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "patagonia timer");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+
+	/**
+	 * A shared daemon scheduler for the client's short timers (batch
+	 * windows, reconnect backoff). Tasks run on it must not block.
+	 */
+	public static ScheduledExecutorService timer() {
+		return TIMER;
+	}
+
 	public static String slurp(InputStream in) throws IOException {
     	InputStreamReader is = new InputStreamReader(in);
     	StringBuilder sb = new StringBuilder();
@@ -46,6 +75,67 @@ public class Util {
         }
 	}
 
+	/**
+	 * Sets the snapshot's prebuilt Cookie header, if it has a session.
+	 */
+	public static void cookieDecoration(Credentials credentials, HttpRequest request) {
+		Header cookie = credentials.getCookieHeader();
+		if (cookie != null) {
+			request.setHeader(cookie);
+		}
+	}
+
+	/**
+	 * Runs one step of a handshake through {@code lease} without blocking.
+	 * The response goes first to {@code process}, which records whatever
+	 * state it carries, and then to {@code callback}, which may be null.
+	 * A process that throws fails the returned future.
+	 */
+	public static Future<HttpResponse> exchange(Transport.Lease lease, HttpHost target, HttpRequest request,
+	                                            final Callback process, final Callback callback) {
+		return exchange(lease, target, request, new BasicAsyncResponseConsumer(), process, callback);
+	}
+
+	/**
+	 * As above, but the response body goes to {@code consumer}, such as an
+	 * {@link EdnResponseConsumer} feeding {@code process} value by value.
+	 */
+	public static Future<HttpResponse> exchange(Transport.Lease lease, HttpHost target, HttpRequest request,
+	                                            HttpAsyncResponseConsumer<HttpResponse> consumer,
+	                                            final Callback process, final Callback callback) {
+		final BasicFuture<HttpResponse> done = new BasicFuture<HttpResponse>(null);
+		lease.execute(
+				new BasicAsyncRequestProducer(target, request),
+				consumer,
+				new FutureCallback<HttpResponse>() {
+					public void completed(final HttpResponse response) {
+						try {
+							process.completed(response);
+						} catch (RuntimeException e) {
+							failed(e);
+							return;
+						}
+						done.completed(response);
+						if (callback != null) {
+							callback.completed(response);
+						}
+					}
+					public void failed(final Exception ex) {
+						done.failed(ex);
+						if (callback != null) {
+							callback.failed(ex);
+						}
+					}
+					public void cancelled() {
+						done.cancel(true);
+						if (callback != null) {
+							callback.cancelled();
+						}
+					}
+				});
+		return done;
+	}
+
 	public static Keyword kw(String str) {
 		return Keyword.newKeyword(str);
 	}
@@ -54,35 +144,20 @@ public class Util {
 		return Symbol.newSymbol(str);
 	}
 	
-	@SuppressWarnings("serial")
+	/**
+	 * @deprecated Build packets from a {@link PacketTemplate} kept for the
+	 *             channel and session, which avoids rebuilding the envelope.
+	 */
+	@Deprecated
 	public static HashMap<Keyword, Object> buildMessagePacket(final UUID channel, final Map<String, String> credentials) {
-		final HashMap<Keyword,Object> address = new HashMap<Keyword,Object>() {{
-			put(kw("type"), sym("patagonia.sys.global-messaging"));
-			put(kw("object"), channel);
-		}};
-		
-		return new HashMap<Keyword,Object>() {{
-			put(kw("version"), "0.1");
-			put(kw("tag"), kw("push"));
-			put(kw("to"), address);
-			put(kw("context-id"), channel);
-			put(kw("session-id"), UUID.fromString(credentials.get("session-id")));
-		}};
+		return new HashMap<Keyword,Object>(PacketTemplate.message(channel, credentials.get("session-id")).getEnvelope());
 	}
 
-	@SuppressWarnings("serial")
+	/**
+	 * @deprecated See {@link #buildMessagePacket(UUID, Map)}.
+	 */
+	@Deprecated
 	public static Map<Keyword, Object> buildContextPacket(final UUID channel, final Map<String, String> credentials) {
-		final HashMap<Keyword,Object> address = new HashMap<Keyword,Object>() {{
-			put(kw("type"), sym("patagonia.sys.context"));
-			put(kw("object"), channel);
-		}};
-		
-		return new HashMap<Keyword,Object>() {{
-			put(kw("version"), "0.1");
-			put(kw("to"), address);
-			put(kw("context-id"), channel);
-			put(kw("session-id"), UUID.fromString(credentials.get("session-id")));
-			put(kw("tag"), kw("long-poll"));
-		}};
-	} 
+		return new HashMap<Keyword,Object>(PacketTemplate.context(channel, credentials.get("session-id")).getEnvelope());
+	}
 }
@@ -13,6 +13,14 @@ public abstract class Callback {
     	throw new UnsupportedOperationException();
     }
     
+    /**
+     * Receives each value of a response decoded by an
+     * {@link patagonia.EdnResponseConsumer}, as soon as it is complete.
+     */
+    public void received(Object value) {
+    	throw new UnsupportedOperationException();
+    }
+    
     public void failed(Exception e) {
     	throw new UnsupportedOperationException();
     }
@@ -3,50 +3,262 @@ package patagonia.edn;
 import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
-class Interner<K,V> {
+/**
+ * A weak table of interned {@link Named} values, looked up by prefix and
+ * name. Lookups don't lock and allocate nothing: they can be made with
+ * the prefix and name as Strings, or with the text of the value as it
+ * appears in edn ("prefix/name", or just "name"), straight from the
+ * characters or bytes being parsed. Only adding a value takes a lock.
+ *
+ * <p>Entries whose values have been collected are removed a few at a
+ * time whenever a value is added, each by its own bucket.
+ */
+class Interner<V extends Named> {
 
- private final ConcurrentHashMap<K, Reference<V>> table =
-         new ConcurrentHashMap<K, Reference<V>>();
- private final ReferenceQueue<V> refQueue = new ReferenceQueue<V>();
+ private static final int MAX_EXPUNGE = 32;
 
- public V intern(K key, V value) {
-     while (true) {
-         clearDeadEntries();
-         WeakReference<V> newRef = new WeakReference<V>(value, refQueue);
-         Reference<V> existingRef = table.putIfAbsent(key, newRef);
-         if (existingRef == null) {
-             // newRef has been entered into the cache
-             return value;
+ private static final class Entry<V> extends WeakReference<V> {
+     final int hash;
+     // True if the value's text splits into its prefix and name the way
+     // a parser splits it, so a lookup by text may find it.
+     final boolean plain;
+     final Entry<V> next;
+
+     Entry(V value, ReferenceQueue<? super V> queue, int hash, boolean plain, Entry<V> next) {
+         super(value, queue);
+         this.hash = hash;
+         this.plain = plain;
+         this.next = next;
+     }
+ }
+
+ private final ReferenceQueue<V> queue = new ReferenceQueue<V>();
+ private volatile AtomicReferenceArray<Entry<V>> table =
+         new AtomicReferenceArray<Entry<V>>(256);
+ private int size; // guarded by this
+
+ /**
+  * Return the value interned under {@code prefix} and {@code name}, or
+  * null.
+  */
+ V get(String prefix, String name) {
+     if (prefix == null || name == null) {
+         return null;
+     }
+     int h = hash(prefix, name);
+     AtomicReferenceArray<Entry<V>> t = table;
+     for (Entry<V> e = t.get(h & (t.length() - 1)); e != null; e = e.next) {
+         if (e.hash == h) {
+             V v = e.get();
+             if (v != null && v.getName().equals(name) && v.getPrefix().equals(prefix)) {
+                 return v;
+             }
+         }
+     }
+     return null;
+ }
+
+ /**
+  * Return the value whose edn text is {@code text}, or null.
+  */
+ V get(CharSequence text) {
+     int h = 0;
+     final int n = text.length();
+     for (int i = 0; i < n; i++) {
+         h = 31 * h + text.charAt(i);
+     }
+     h = spread(h);
+     AtomicReferenceArray<Entry<V>> t = table;
+     for (Entry<V> e = t.get(h & (t.length() - 1)); e != null; e = e.next) {
+         if (e.hash == h && e.plain) {
+             V v = e.get();
+             if (v != null && matches(v, text)) {
+                 return v;
+             }
+         }
+     }
+     return null;
+ }
+
+ /**
+  * Return the value whose edn text is the ASCII in
+  * {@code b[off..off+len)}, or null, also if it isn't all ASCII.
+  */
+ V get(byte[] b, int off, int len) {
+     int h = 0;
+     final int end = off + len;
+     for (int i = off; i < end; i++) {
+         int c = b[i];
+         if (c < 0) {
+             return null;
+         }
+         h = 31 * h + c;
+     }
+     h = spread(h);
+     AtomicReferenceArray<Entry<V>> t = table;
+     for (Entry<V> e = t.get(h & (t.length() - 1)); e != null; e = e.next) {
+         if (e.hash == h && e.plain) {
+             V v = e.get();
+             if (v != null && matches(v, b, off, len)) {
+                 return v;
+             }
+         }
+     }
+     return null;
+ }
+
+ /**
+  * Intern {@code value}, unless an equal one already is. Return the one
+  * which is interned.
+  */
+ synchronized V intern(V value) {
+     expunge();
+     String prefix = value.getPrefix();
+     String name = value.getName();
+     V existing = get(prefix, name);
+     if (existing != null) {
+         return existing;
+     }
+     AtomicReferenceArray<Entry<V>> t = table;
+     if (size >= t.length() - (t.length() >> 2)) {
+         t = resize(t);
+     }
+     int h = hash(prefix, name);
+     int i = h & (t.length() - 1);
+     boolean plain = prefix.length() == 0
+         ? name.indexOf('/') < 0 || name.equals("/")
+         : prefix.indexOf('/') < 0 && name.indexOf('/') < 0;
+     t.set(i, new Entry<V>(value, queue, h, plain, t.get(i)));
+     size++;
+     return value;
+ }
+
+ private AtomicReferenceArray<Entry<V>> resize(AtomicReferenceArray<Entry<V>> t) {
+     AtomicReferenceArray<Entry<V>> bigger =
+             new AtomicReferenceArray<Entry<V>>(t.length() * 2);
+     int mask = bigger.length() - 1;
+     int live = 0;
+     for (int i = 0; i < t.length(); i++) {
+         for (Entry<V> e = t.get(i); e != null; e = e.next) {
+             V v = e.get();
+             if (v != null) {
+                 int j = e.hash & mask;
+                 bigger.set(j, new Entry<V>(v, queue, e.hash, e.plain, bigger.get(j)));
+                 live++;
+             }
          }
+     }
+     size = live;
+     table = bigger;
+     return bigger;
+ }
 
-         // existingRef was found in the cache; newRef is garbage
-         V existingValue = existingRef.get();
-         if (existingValue != null) {
-             return existingValue;
+ /**
+  * Remove some of the entries whose values have been collected.
+  */
+ private void expunge() {
+     for (int n = 0; n < MAX_EXPUNGE; n++) {
+         Reference<? extends V> r = queue.poll();
+         if (r == null) {
+             return;
+         }
+         @SuppressWarnings("unchecked")
+         Entry<V> dead = (Entry<V>) r;
+         AtomicReferenceArray<Entry<V>> t = table;
+         int i = dead.hash & (t.length() - 1);
+         Entry<V> head = t.get(i);
+         for (Entry<V> e = head; e != null; e = e.next) {
+             if (e == dead) {
+                 // Entries are immutable: copy the ones before it.
+                 Entry<V> rest = dead.next;
+                 for (Entry<V> p = head; p != dead; p = p.next) {
+                     V v = p.get();
+                     if (v != null) {
+                         rest = new Entry<V>(v, queue, p.hash, p.plain, rest);
+                     } else {
+                         size--;
+                     }
+                 }
+                 t.set(i, rest);
+                 size--;
+                 break;
+             }
          }
+     }
+ }
+
+ private static int hash(String prefix, String name) {
+     int h = 0;
+     final int np = prefix.length();
+     if (np > 0) {
+         for (int i = 0; i < np; i++) {
+             h = 31 * h + prefix.charAt(i);
+         }
+         h = 31 * h + '/';
+     }
+     final int nn = name.length();
+     for (int i = 0; i < nn; i++) {
+         h = 31 * h + name.charAt(i);
+     }
+     return spread(h);
+ }
+
+ private static int spread(int h) {
+     return h ^ (h >>> 16);
+ }
 
-         // existingRef's referent has been collected out from under us
-         table.remove(key, existingRef);
+ private static boolean matches(Named v, CharSequence text) {
+     String prefix = v.getPrefix();
+     String name = v.getName();
+     int np = prefix.length();
+     int start = np > 0 ? np + 1 : 0;
+     if (text.length() != start + name.length()) {
+         return false;
      }
+     if (np > 0) {
+         for (int i = 0; i < np; i++) {
+             if (text.charAt(i) != prefix.charAt(i)) {
+                 return false;
+             }
+         }
+         if (text.charAt(np) != '/') {
+             return false;
+         }
+     }
+     for (int i = 0, n = name.length(); i < n; i++) {
+         if (text.charAt(start + i) != name.charAt(i)) {
+             return false;
+         }
+     }
+     return true;
  }
 
- private void clearDeadEntries() {
-     if (refQueue.poll() == null) {
-         // empty queue indicates that there's nothing to clear
-         return;
+ private static boolean matches(Named v, byte[] b, int off, int len) {
+     String prefix = v.getPrefix();
+     String name = v.getName();
+     int np = prefix.length();
+     int start = off + (np > 0 ? np + 1 : 0);
+     if (len != start - off + name.length()) {
+         return false;
      }
-     while (refQueue.poll() != null) {
-         // wait until there's nothing more in flight in the queue
+     if (np > 0) {
+         for (int i = 0; i < np; i++) {
+             if (b[off + i] != prefix.charAt(i)) {
+                 return false;
+             }
+         }
+         if (b[off + np] != '/') {
+             return false;
+         }
      }
-     for (Map.Entry<K, Reference<V>> me: table.entrySet()) {
-         Reference<V> ref = me.getValue();
-         if (ref != null && ref.get() == null) {
-             table.remove(me.getKey(), ref);
+     for (int i = 0, n = name.length(); i < n; i++) {
+         if (b[start + i] != name.charAt(i)) {
+             return false;
          }
      }
+     return true;
  }
 
-}
\ No newline at end of file
+}
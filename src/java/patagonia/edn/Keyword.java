@@ -2,6 +2,8 @@ package patagonia.edn;
 
 import static patagonia.edn.Symbol.newSymbol;
 
+import java.nio.charset.Charset;
+
 /**
 * A Keyword is {@linkplain Named}. Additionally it obeys the syntactic
 * restrictions defined for <a
@@ -19,7 +21,10 @@ import static patagonia.edn.Symbol.newSymbol;
 * </pre>
 */
 public final class Keyword implements Named, Comparable<Keyword> {
+ private static final Charset UTF8 = Charset.forName("UTF-8");
+
  private final Symbol sym;
+ private volatile byte[] utf8;
 
  /** {@inheritDoc} */
  public final String getPrefix() {
@@ -32,7 +37,8 @@ public final class Keyword implements Named, Comparable<Keyword> {
  }
 
  public static Keyword newKeyword(Symbol sym) {
-     return INTERNER.intern(sym, new Keyword(sym));
+     Keyword k = INTERNER.get(sym.getPrefix(), sym.getName());
+     return k != null ? k : INTERNER.intern(new Keyword(sym));
  }
 
  /**
@@ -50,7 +56,8 @@ public final class Keyword implements Named, Comparable<Keyword> {
   * @return a Keyword, never null.
   */
  public static Keyword newKeyword(String prefix, String name) {
-     return newKeyword(newSymbol(prefix, name));
+     Keyword k = INTERNER.get(prefix, name);
+     return k != null ? k : newKeyword(newSymbol(prefix, name));
  }
 
  /**
@@ -63,7 +70,30 @@ public final class Keyword implements Named, Comparable<Keyword> {
   * @see #newKeyword(String, String)
   */
  public static Keyword newKeyword(String name) {
-     return newKeyword(newSymbol(EMPTY, name));
+     return newKeyword(EMPTY, name);
+ }
+
+ /**
+  * Return the keyword whose text, without the leading colon, is
+  * {@code text}, provided it has already been interned. This allocates
+  * nothing, so a parser can reuse the keywords it has seen before
+  * without building their names.
+  *
+  * @param text the text of a keyword, as in "prefix/name" or "name".
+  * @return a Keyword, or null if there is none by that text.
+  */
+ public static Keyword findInterned(CharSequence text) {
+     return INTERNER.get(text);
+ }
+
+ /**
+  * Like {@link #findInterned(CharSequence)}, for text given as ASCII
+  * bytes. Non-ASCII text is never found.
+  *
+  * @return a Keyword, or null if there is none by that text.
+  */
+ public static Keyword findInterned(byte[] b, int offset, int length) {
+     return INTERNER.get(b, offset, length);
  }
 
  /**
@@ -82,6 +112,22 @@ public final class Keyword implements Named, Comparable<Keyword> {
      return ":" + sym.toString();
  }
 
+ /**
+  * The UTF-8 encoding of {@link #toString()}, computed on first use and
+  * kept, so printers producing bytes can copy it instead of encoding the
+  * keyword each time. The array is shared and must not be modified.
+  *
+  * @return the bytes of this keyword in edn syntax, never null.
+  */
+ public byte[] toUtf8() {
+     byte[] b = utf8;
+     if (b == null) {
+         b = toString().getBytes(UTF8);
+         utf8 = b;
+     }
+     return b;
+ }
+
  public int compareTo(Keyword o) {
      if (this == o) {
          return 0;
@@ -89,6 +135,6 @@ public final class Keyword implements Named, Comparable<Keyword> {
      return sym.compareTo(o.sym);
  }
 
- private static final Interner<Symbol, Keyword> INTERNER = new Interner<Symbol, Keyword>();
+ private static final Interner<Keyword> INTERNER = new Interner<Keyword>();
 
 }
\ No newline at end of file
@@ -2,17 +2,25 @@ package patagonia.edn;
 
 import static patagonia.edn.util.CharClassify.isDigit;
 import static patagonia.edn.util.CharClassify.symbolStart;
+
+import java.nio.charset.Charset;
+
 import patagonia.edn.util.CharClassify;
 
 /**
 * A Symbol is {@linkplain Named}. Additionally it obeys the syntactic
 * restrictions defined for
 * <a href="https://github.com/edn-format/edn#symbols">edn Symbols</a>.
+* <p>
+* Symbols are interned weakly, to spare parsers from allocating a new one
+* each time they read one. Compare them with {@code equals} all the same.
 */
 public final class Symbol implements Named, Comparable<Symbol> {
+ private static final Charset UTF8 = Charset.forName("UTF-8");
 
  private final String prefix;
  private final String name;
+ private volatile byte[] utf8;
 
  /**
   * {@inheritDoc}
@@ -45,8 +53,12 @@ public final class Symbol implements Named, Comparable<Symbol> {
   * @return a Symbol, never null.
   */
  public static Symbol newSymbol(String prefix, String name) {
+     Symbol sym = INTERNER.get(prefix, name);
+     if (sym != null) {
+         return sym;
+     }
      checkArguments(prefix, name);
-     return new Symbol(prefix, name);
+     return INTERNER.intern(new Symbol(prefix, name));
  }
 
  /**
@@ -61,6 +73,28 @@ public final class Symbol implements Named, Comparable<Symbol> {
      return newSymbol(EMPTY, name);
  }
 
+ /**
+  * Return the symbol whose text is {@code text}, provided one has
+  * already been made. This allocates nothing, so a parser can reuse the
+  * symbols it has seen before without building their names.
+  *
+  * @param text the text of a symbol, as in "prefix/name" or "name".
+  * @return a Symbol, or null if there is none by that text.
+  */
+ public static Symbol findInterned(CharSequence text) {
+     return INTERNER.get(text);
+ }
+
+ /**
+  * Like {@link #findInterned(CharSequence)}, for text given as ASCII
+  * bytes. Non-ASCII text is never found.
+  *
+  * @return a Symbol, or null if there is none by that text.
+  */
+ public static Symbol findInterned(byte[] b, int offset, int length) {
+     return INTERNER.get(b, offset, length);
+ }
+
  @Override
  public final int hashCode() {
      final int prime = 31;
@@ -104,6 +138,22 @@ public final class Symbol implements Named, Comparable<Symbol> {
      return prefix + "/" + name;
  }
 
+ /**
+  * The UTF-8 encoding of {@link #toString()}, computed on first use and
+  * kept, so printers producing bytes can copy it instead of encoding the
+  * symbol each time. The array is shared and must not be modified.
+  *
+  * @return the bytes of this symbol in edn syntax, never null.
+  */
+ public byte[] toUtf8() {
+     byte[] b = utf8;
+     if (b == null) {
+         b = toString().getBytes(UTF8);
+         utf8 = b;
+     }
+     return b;
+ }
+
  private static void checkArguments(String prefix, String name) {
      if (prefix == null) {
          throw new EdnException("prefix must not be null.");
@@ -152,4 +202,6 @@ public final class Symbol implements Named, Comparable<Symbol> {
      return cmp != 0 ? cmp : name.compareTo(right.name);
  }
 
+ private static final Interner<Symbol> INTERNER = new Interner<Symbol>();
+
 }
\ No newline at end of file
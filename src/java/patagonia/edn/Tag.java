@@ -2,6 +2,8 @@ package patagonia.edn;
 
 import static patagonia.edn.Symbol.newSymbol;
 
+import java.nio.charset.Charset;
+
 /**
 * A Tag is {@linkplain Named}. Additionally it obeys the syntactic restrictions
 * defined for <a href="https://github.com/edn-format/edn#symbols">edn
@@ -18,7 +20,10 @@ import static patagonia.edn.Symbol.newSymbol;
 * </pre>
 */
 public final class Tag implements Named, Comparable<Tag> {
+ private static final Charset UTF8 = Charset.forName("UTF-8");
+
  private final Symbol sym;
+ private volatile byte[] utf8;
 
  /** {@inheritDoc} */
  public final String getPrefix() {
@@ -83,6 +88,22 @@ public final class Tag implements Named, Comparable<Tag> {
      return "#" + sym.toString();
  }
 
+ /**
+  * The UTF-8 encoding of {@link #toString()}, computed on first use and
+  * kept, so printers producing bytes can copy it instead of encoding the
+  * tag each time. The array is shared and must not be modified.
+  *
+  * @return the bytes of this tag in edn syntax, never null.
+  */
+ public byte[] toUtf8() {
+     byte[] b = utf8;
+     if (b == null) {
+         b = toString().getBytes(UTF8);
+         utf8 = b;
+     }
+     return b;
+ }
+
  @Override
  public int hashCode() {
      final int prime = 31;
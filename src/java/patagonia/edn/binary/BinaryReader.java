@@ -0,0 +1,385 @@
+package patagonia.edn.binary;
+
+import static patagonia.edn.TaggedValue.newTaggedValue;
+import static patagonia.edn.parser.Parser.Config.BIG_DECIMAL_TAG;
+import static patagonia.edn.parser.Parser.Config.BIG_INTEGER_TAG;
+import static patagonia.edn.parser.Parser.Config.DOUBLE_TAG;
+import static patagonia.edn.parser.Parser.Config.EDN_INSTANT;
+import static patagonia.edn.parser.Parser.Config.EDN_UUID;
+import static patagonia.edn.parser.Parser.Config.LONG_TAG;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import patagonia.edn.EdnSyntaxException;
+import patagonia.edn.Keyword;
+import patagonia.edn.Named;
+import patagonia.edn.Symbol;
+import patagonia.edn.Tag;
+import patagonia.edn.parser.CollectionBuilder;
+import patagonia.edn.parser.InstantUtils;
+import patagonia.edn.parser.Parser;
+import patagonia.edn.parser.Parsers;
+import patagonia.edn.parser.TagHandler;
+
+/**
+ * Decodes the messages of a {@link BinaryWriter} into the values a
+ * {@link Parser} configured the same way would have parsed from their
+ * text: collections are built by the configuration's factories, and
+ * numbers, UUIDs, instants and tagged values go through its tag
+ * handlers.
+ *
+ * <p>A BinaryReader remembers the names defined by the messages it has
+ * read, so it belongs to one connection, and must be given every message
+ * written by that connection's writer, in order. After a malformed
+ * message, it can't be relied on. It should only be used from a single
+ * thread.
+ */
+public final class BinaryReader {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final Parser.Config cfg;
+    private final TagHandler longHandler;
+    private final TagHandler doubleHandler;
+    private final TagHandler uuidHandler;
+    private final TagHandler instantHandler;
+    private final boolean defaultUuid;
+    private final boolean defaultInstant;
+    private Parser parser;
+
+    private Named[] names = new Named[64];
+    private int nameCount;
+
+    private byte[] buf;
+    private int pos;
+    private int limit;
+
+    public BinaryReader(Parser.Config cfg) {
+        Parser.Config defaults = Parsers.defaultConfiguration();
+        this.cfg = cfg;
+        this.longHandler = cfg.getTagHandler(LONG_TAG);
+        this.doubleHandler = cfg.getTagHandler(DOUBLE_TAG);
+        this.uuidHandler = cfg.getTagHandler(EDN_UUID);
+        this.instantHandler = cfg.getTagHandler(EDN_INSTANT);
+        this.defaultUuid = uuidHandler == defaults.getTagHandler(EDN_UUID);
+        this.defaultInstant = instantHandler == defaults.getTagHandler(EDN_INSTANT);
+    }
+
+    /**
+     * @param preset the names agreed on with the writer; see
+     *        {@link BinaryWriter#BinaryWriter(Collection)}.
+     * @throws IllegalArgumentException if a name is given twice.
+     */
+    public BinaryReader(Parser.Config cfg, Collection<? extends Named> preset) {
+        this(cfg);
+        Set<Named> seen = new HashSet<Named>();
+        for (Named n : preset) {
+            if (!seen.add(n)) {
+                throw new IllegalArgumentException("Name preset twice: " + n);
+            }
+            define(n);
+        }
+    }
+
+    public Object decode(byte[] message) {
+        return decode(message, 0, message.length);
+    }
+
+    /**
+     * Decode the message in {@code b[offset..offset+length)}.
+     *
+     * @throws EdnSyntaxException if the message is malformed, or is
+     *         followed by more bytes.
+     */
+    public Object decode(byte[] b, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        buf = b;
+        pos = offset;
+        limit = offset + length;
+        try {
+            Object v = value();
+            if (pos != limit) {
+                throw new EdnSyntaxException("Unexpected bytes after the end of a message");
+            }
+            return v;
+        } finally {
+            buf = null;
+        }
+    }
+
+    /**
+     * Decode the message in the remaining bytes of {@code message}, which
+     * are all consumed.
+     */
+    public Object decode(ByteBuffer message) {
+        Object v;
+        if (message.hasArray()) {
+            v = decode(message.array(), message.arrayOffset() + message.position(),
+                       message.remaining());
+        } else {
+            byte[] copy = new byte[message.remaining()];
+            message.duplicate().get(copy);
+            v = decode(copy);
+        }
+        message.position(message.limit());
+        return v;
+    }
+
+    private Object value() {
+        int lead = u8();
+        if (lead >= Wire.SMALL_INT) {
+            return longHandler.transform(LONG_TAG, (long) (lead - Wire.SMALL_INT + Wire.SMALL_INT_MIN));
+        }
+        if (lead >= Wire.SHORT_NAME) {
+            return name(lead - Wire.SHORT_NAME);
+        }
+        switch (lead) {
+        case Wire.NIL:
+            return null;
+        case Wire.FALSE:
+            return Boolean.FALSE;
+        case Wire.TRUE:
+            return Boolean.TRUE;
+        case Wire.INT:
+            return longHandler.transform(LONG_TAG, unzigzag(varint()));
+        case Wire.BIG_INT:
+            return cfg.getTagHandler(BIG_INTEGER_TAG).transform(
+                BIG_INTEGER_TAG, new BigInteger(bytes()));
+        case Wire.DOUBLE:
+            return doubleHandler.transform(DOUBLE_TAG, Double.longBitsToDouble(fixed64()));
+        case Wire.BIG_DECIMAL: {
+            int scale = (int) unzigzag(varint());
+            return cfg.getTagHandler(BIG_DECIMAL_TAG).transform(
+                BIG_DECIMAL_TAG, new BigDecimal(new BigInteger(bytes()), scale));
+        }
+        case Wire.STRING:
+            return string();
+        case Wire.CHAR:
+            return (char) varint();
+        case Wire.KEYWORD:
+        case Wire.SYMBOL:
+        case Wire.TAG:
+            return define(lead);
+        case Wire.NAME:
+            return name(varint());
+        case Wire.UUID: {
+            UUID u = new UUID(fixed64(), fixed64());
+            return defaultUuid ? u : tagged(EDN_UUID, u.toString());
+        }
+        case Wire.INST: {
+            Date d = new Date(unzigzag(varint()));
+            return defaultInstant ? d : tagged(EDN_INSTANT, InstantUtils.dateToString(d));
+        }
+        case Wire.INST_NANOS: {
+            long seconds = unzigzag(varint());
+            int nanos = (int) varint();
+            if (nanos < 0 || nanos > 999999999) {
+                throw new EdnSyntaxException("Bad nanoseconds in an instant: " + nanos);
+            }
+            Timestamp ts = new Timestamp(seconds * 1000);
+            ts.setNanos(nanos);
+            if (defaultInstant) {
+                return new Date(ts.getTime());
+            }
+            return tagged(EDN_INSTANT, InstantUtils.timestampToString(ts));
+        }
+        case Wire.VECTOR:
+            return collection(cfg.getVectorFactory(), length());
+        case Wire.LIST:
+            return collection(cfg.getListFactory(), length());
+        case Wire.SET:
+            return collection(cfg.getSetFactory(), length());
+        case Wire.MAP: {
+            int n = length();
+            if ((n & 1) != 0) {
+                throw new EdnSyntaxException(
+                    "Every map must have an equal number of keys and values.");
+            }
+            return collection(cfg.getMapFactory(), n);
+        }
+        case Wire.TAGGED: {
+            Object t = value();
+            if (!(t instanceof Tag)) {
+                throw new EdnSyntaxException("Expected a tag, but found " + t);
+            }
+            return tagged((Tag) t, value());
+        }
+        case Wire.LONGS:
+            return longs(length());
+        case Wire.DOUBLES:
+            return doubles(length());
+        case Wire.TEXT:
+            return text(length());
+        default:
+            throw new EdnSyntaxException(String.format("Unknown lead byte 0x%02x", lead));
+        }
+    }
+
+    private Object tagged(Tag t, Object v) {
+        TagHandler x = cfg.getTagHandler(t);
+        return x != null ? x.transform(t, v) : newTaggedValue(t, v);
+    }
+
+    private Object collection(CollectionBuilder.Factory f, int n) {
+        CollectionBuilder b = f.builder();
+        for (int i = 0; i < n; i++) {
+            b.add(value());
+        }
+        return b.build();
+    }
+
+    private Object longs(int n) {
+        CollectionBuilder b = cfg.getVectorFactory().builder();
+        CollectionBuilder.Primitive p = b instanceof CollectionBuilder.Primitive
+            && longHandler == Parsers.defaultConfiguration().getTagHandler(LONG_TAG)
+            ? (CollectionBuilder.Primitive) b : null;
+        for (int i = 0; i < n; i++) {
+            long v = unzigzag(varint());
+            if (p != null) {
+                p.addLong(v);
+            } else {
+                b.add(longHandler.transform(LONG_TAG, v));
+            }
+        }
+        return b.build();
+    }
+
+    private Object doubles(int n) {
+        CollectionBuilder b = cfg.getVectorFactory().builder();
+        CollectionBuilder.Primitive p = b instanceof CollectionBuilder.Primitive
+            && doubleHandler == Parsers.defaultConfiguration().getTagHandler(DOUBLE_TAG)
+            ? (CollectionBuilder.Primitive) b : null;
+        for (int i = 0; i < n; i++) {
+            double v = Double.longBitsToDouble(fixed64());
+            if (p != null) {
+                p.addDouble(v);
+            } else {
+                b.add(doubleHandler.transform(DOUBLE_TAG, v));
+            }
+        }
+        return b.build();
+    }
+
+    private Object text(int n) {
+        need(n);
+        if (parser == null) {
+            parser = Parsers.newParser(cfg);
+        }
+        Object v = parser.nextValue(Parsers.newParseable(buf, pos, n));
+        pos += n;
+        if (v == Parser.END_OF_INPUT) {
+            throw new EdnSyntaxException("Embedded edn text holds no value");
+        }
+        return v;
+    }
+
+    private Named name(long index) {
+        if (index >= nameCount) {
+            throw new EdnSyntaxException("Undefined name #" + index);
+        }
+        return names[(int) index];
+    }
+
+    private Named define(int kind) {
+        String prefix = string();
+        String name = string();
+        Named n;
+        if (kind == Wire.KEYWORD) {
+            n = Keyword.newKeyword(prefix, name);
+        } else if (kind == Wire.SYMBOL) {
+            n = Symbol.newSymbol(prefix, name);
+        } else {
+            n = Tag.newTag(prefix, name);
+        }
+        define(n);
+        return n;
+    }
+
+    private void define(Named n) {
+        if (nameCount < Wire.MAX_NAMES) {
+            if (nameCount == names.length) {
+                names = Arrays.copyOf(names, nameCount * 2);
+            }
+            names[nameCount++] = n;
+        }
+    }
+
+    private String string() {
+        int n = length();
+        need(n);
+        String s = new String(buf, pos, n, UTF8);
+        pos += n;
+        return s;
+    }
+
+    private byte[] bytes() {
+        int n = length();
+        if (n == 0) {
+            throw new EdnSyntaxException("Empty integer");
+        }
+        need(n);
+        byte[] b = Arrays.copyOfRange(buf, pos, pos + n);
+        pos += n;
+        return b;
+    }
+
+    private int u8() {
+        need(1);
+        return buf[pos++] & 0xff;
+    }
+
+    private long fixed64() {
+        need(8);
+        long v = 0;
+        for (int i = 0; i < 8; i++) {
+            v = (v << 8) | (buf[pos++] & 0xff);
+        }
+        return v;
+    }
+
+    private long varint() {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = u8();
+            v |= (long) (b & 0x7f) << shift;
+            if (b < 0x80) {
+                return v;
+            }
+        }
+        throw new EdnSyntaxException("Malformed varint");
+    }
+
+    /**
+     * A count or length, which can't be more than the bytes left, since
+     * everything takes at least one.
+     */
+    private int length() {
+        long n = varint();
+        if (n > limit - pos) {
+            throw new EdnSyntaxException("Unexpected end of input");
+        }
+        return (int) n;
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private void need(int n) {
+        if (limit - pos < n) {
+            throw new EdnSyntaxException("Unexpected end of input");
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package patagonia.edn.binary;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.UUID;
+
+import patagonia.edn.Keyword;
+import patagonia.edn.Named;
+import patagonia.edn.Symbol;
+import patagonia.edn.TaggedValue;
+import patagonia.edn.parser.DoubleVector;
+import patagonia.edn.parser.LazyValue;
+import patagonia.edn.parser.LongVector;
+import patagonia.edn.printer.Printers;
+
+/**
+ * Encodes edn values in a compact binary form, one message per value,
+ * for a {@link BinaryReader} at the other end of a connection. Numbers
+ * are varints, UUIDs and instants are raw, and each keyword, symbol and
+ * tag is spelled out only the first time it's written: after that, it
+ * takes a byte or three.
+ *
+ * <p>Values are encoded as the default printer would print them, and a
+ * BinaryReader decodes them as a {@link patagonia.edn.parser.Parser}
+ * would parse that text. Anything the binary form has no encoding for,
+ * such as a Calendar, is embedded as edn text.
+ *
+ * <p>A BinaryWriter remembers the names it has written, so it belongs to
+ * one connection, and every message it encodes must reach that
+ * connection's reader, in order. It should only be used from a single
+ * thread.
+ */
+public final class BinaryWriter {
+
+    private final Map<Named, Integer> names = new HashMap<Named, Integer>();
+    // The names defined so far, in order, so a failed message can take
+    // its definitions back.
+    private final List<Named> defined = new ArrayList<Named>();
+    private byte[] buf = new byte[256];
+    private int count;
+
+    public BinaryWriter() {
+    }
+
+    /**
+     * @param preset names both ends of the connection have agreed on,
+     *        in the same order, so that not even their first use spells
+     *        them out. Typically the keywords of a protocol's envelope.
+     * @throws IllegalArgumentException if a name is given twice.
+     */
+    public BinaryWriter(Collection<? extends Named> preset) {
+        for (Named n : preset) {
+            if (names.containsKey(n)) {
+                throw new IllegalArgumentException("Name preset twice: " + n);
+            }
+            define(n);
+        }
+    }
+
+    /**
+     * Encode {@code value} as the next message.
+     *
+     * @throws patagonia.edn.EdnException if the value can't be printed as
+     *         edn. Nothing is then remembered of it.
+     */
+    public byte[] encode(Object value) {
+        encodeToBuffer(value);
+        return Arrays.copyOf(buf, count);
+    }
+
+    /**
+     * Encode {@code value} as the next message and write it to
+     * {@code out}.
+     */
+    public void write(Object value, OutputStream out) throws IOException {
+        encodeToBuffer(value);
+        out.write(buf, 0, count);
+    }
+
+    /**
+     * Encode {@code value} as the next message. The buffer returned is
+     * only valid until the next call.
+     */
+    public ByteBuffer encodeToBuffer(Object value) {
+        count = 0;
+        int mark = defined.size();
+        boolean done = false;
+        try {
+            value(value);
+            done = true;
+        } finally {
+            while (!done && defined.size() > mark) {
+                names.remove(defined.remove(defined.size() - 1));
+            }
+        }
+        return ByteBuffer.wrap(buf, 0, count);
+    }
+
+    private void value(Object o) {
+        if (o == null) {
+            put(Wire.NIL);
+            return;
+        }
+        Class<?> c = o.getClass();
+        if (c == Keyword.class) {
+            name((Keyword) o, Wire.KEYWORD);
+        } else if (c == String.class) {
+            put(Wire.STRING);
+            string((String) o);
+        } else if (c == Long.class || c == Integer.class
+                || c == Short.class || c == Byte.class) {
+            integer(((Number) o).longValue());
+        } else if (c == Boolean.class) {
+            put((Boolean) o ? Wire.TRUE : Wire.FALSE);
+        } else if (c == Double.class || c == Float.class) {
+            put(Wire.DOUBLE);
+            fixed64(Double.doubleToRawLongBits(((Number) o).doubleValue()));
+        } else if (c == Symbol.class) {
+            name((Symbol) o, Wire.SYMBOL);
+        } else if (c == UUID.class) {
+            put(Wire.UUID);
+            fixed64(((UUID) o).getMostSignificantBits());
+            fixed64(((UUID) o).getLeastSignificantBits());
+        } else if (c == Date.class) {
+            put(Wire.INST);
+            varint(zigzag(((Date) o).getTime()));
+        } else if (c == Timestamp.class) {
+            long t = ((Timestamp) o).getTime();
+            put(Wire.INST_NANOS);
+            varint(zigzag(t >= 0 ? t / 1000 : -((999 - t) / 1000)));
+            varint(((Timestamp) o).getNanos());
+        } else if (c == LongVector.class) {
+            LongVector v = (LongVector) o;
+            put(Wire.LONGS);
+            varint(v.size());
+            for (int i = 0, n = v.size(); i < n; i++) {
+                varint(zigzag(v.getLong(i)));
+            }
+        } else if (c == DoubleVector.class) {
+            DoubleVector v = (DoubleVector) o;
+            put(Wire.DOUBLES);
+            varint(v.size());
+            for (int i = 0, n = v.size(); i < n; i++) {
+                fixed64(Double.doubleToRawLongBits(v.getDouble(i)));
+            }
+        } else if (c == TaggedValue.class) {
+            put(Wire.TAGGED);
+            name(((TaggedValue) o).getTag(), Wire.TAG);
+            value(((TaggedValue) o).getValue());
+        } else if (c == BigInteger.class) {
+            put(Wire.BIG_INT);
+            bytes(((BigInteger) o).toByteArray());
+        } else if (c == BigDecimal.class) {
+            put(Wire.BIG_DECIMAL);
+            varint(zigzag(((BigDecimal) o).scale()));
+            bytes(((BigDecimal) o).unscaledValue().toByteArray());
+        } else if (c == Character.class) {
+            put(Wire.CHAR);
+            varint((Character) o);
+        } else if (o instanceof LazyValue && !((LazyValue) o).isRealized()) {
+            ByteBuffer b = ((LazyValue) o).getSource();
+            put(Wire.TEXT);
+            bytes(b.array(), b.arrayOffset() + b.position(), b.remaining());
+        } else if (o instanceof CharSequence) {
+            put(Wire.STRING);
+            string(o.toString());
+        } else if (o instanceof List) {
+            List<?> l = (List<?>) o;
+            put(l instanceof RandomAccess ? Wire.VECTOR : Wire.LIST);
+            varint(l.size());
+            for (Object e : l) {
+                value(e);
+            }
+        } else if (o instanceof Map) {
+            Map<?, ?> m = (Map<?, ?>) o;
+            put(Wire.MAP);
+            varint(m.size() * 2);
+            for (Map.Entry<?, ?> e : m.entrySet()) {
+                value(e.getKey());
+                value(e.getValue());
+            }
+        } else if (o instanceof Set) {
+            Set<?> s = (Set<?>) o;
+            put(Wire.SET);
+            varint(s.size());
+            for (Object e : s) {
+                value(e);
+            }
+        } else {
+            put(Wire.TEXT);
+            string(Printers.printString(o));
+        }
+    }
+
+    private void name(Named n, int kind) {
+        Integer i = names.get(n);
+        if (i != null) {
+            int index = i;
+            if (index < Wire.SHORT_NAMES) {
+                put(Wire.SHORT_NAME + index);
+            } else {
+                put(Wire.NAME);
+                varint(index);
+            }
+            return;
+        }
+        put(kind);
+        string(n.getPrefix());
+        string(n.getName());
+        define(n);
+    }
+
+    private void define(Named n) {
+        if (defined.size() < Wire.MAX_NAMES && !names.containsKey(n)) {
+            names.put(n, defined.size());
+            defined.add(n);
+        }
+    }
+
+    private void integer(long v) {
+        if (v >= Wire.SMALL_INT_MIN && v <= Wire.SMALL_INT_MAX) {
+            put(Wire.SMALL_INT + (int) (v - Wire.SMALL_INT_MIN));
+        } else {
+            put(Wire.INT);
+            varint(zigzag(v));
+        }
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private void put(int b) {
+        if (count == buf.length) {
+            grow(1);
+        }
+        buf[count++] = (byte) b;
+    }
+
+    private void varint(long v) {
+        if (count + 10 > buf.length) {
+            grow(10);
+        }
+        while ((v & ~0x7fL) != 0) {
+            buf[count++] = (byte) ((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        buf[count++] = (byte) v;
+    }
+
+    private void fixed64(long v) {
+        if (count + 8 > buf.length) {
+            grow(8);
+        }
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buf[count++] = (byte) (v >>> shift);
+        }
+    }
+
+    private void bytes(byte[] b) {
+        bytes(b, 0, b.length);
+    }
+
+    private void bytes(byte[] b, int off, int len) {
+        varint(len);
+        if (count + len > buf.length) {
+            grow(len);
+        }
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+
+    /**
+     * Write the length of {@code s} in UTF-8, then its UTF-8. Unpaired
+     * surrogates become '?', as {@link String#getBytes(String)} makes them.
+     */
+    private void string(String s) {
+        final int n = s.length();
+        int len = n;
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    len += 1;
+                } else if (Character.isHighSurrogate(c) && i + 1 < n
+                        && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    len += 2;
+                    i++;
+                } else if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+                    len += 2;
+                }
+            }
+        }
+        varint(len);
+        if (count + len > buf.length) {
+            grow(len);
+        }
+        final byte[] b = buf;
+        int k = count;
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                b[k++] = (byte) c;
+            } else if (c < 0x800) {
+                b[k++] = (byte) (0xc0 | (c >> 6));
+                b[k++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                b[k++] = (byte) (0xf0 | (cp >> 18));
+                b[k++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                b[k++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                b[k++] = (byte) (0x80 | (cp & 0x3f));
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                b[k++] = '?';
+            } else {
+                b[k++] = (byte) (0xe0 | (c >> 12));
+                b[k++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                b[k++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        count = k;
+    }
+
+    private void grow(int extra) {
+        buf = Arrays.copyOf(buf, Math.max(count + extra, buf.length * 2));
+    }
+}
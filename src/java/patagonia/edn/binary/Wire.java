@@ -0,0 +1,77 @@
+package patagonia.edn.binary;
+
+/**
+ * The binary encoding written by {@link BinaryWriter} and read by
+ * {@link BinaryReader}. Each message is one value, which begins with a
+ * lead byte:
+ *
+ * <pre>
+ * 0x00         nil
+ * 0x01 0x02    false, true
+ * 0x03         integer: zigzag varint
+ * 0x04         big integer: varint length, two's complement bytes
+ * 0x05         double: 8 bytes, big-endian IEEE 754
+ * 0x06         big decimal: zigzag varint scale, then as 0x04
+ * 0x07         string: varint length, UTF-8
+ * 0x08         character: varint UTF-16 code unit
+ * 0x09 - 0x0b  define a keyword, symbol or tag: its prefix and name, each
+ *              as a string without the lead byte. It's also a use of it.
+ * 0x0c         use a defined name: varint index
+ * 0x0d         uuid: 16 bytes, big-endian
+ * 0x0e         inst to the millisecond: zigzag varint millis since the epoch
+ * 0x0f - 0x12  vector, list, set, map: varint count, then the elements;
+ *              keys and values alternate in a map, which counts both
+ * 0x13         tagged value: a tag (0x0b or 0x0c), then the value
+ * 0x14         vector of integers: varint count, zigzag varints
+ * 0x15         vector of doubles: varint count, 8 bytes each
+ * 0x16         edn text: varint length, UTF-8, parsed as a single value
+ * 0x17         inst to the nanosecond: zigzag varint seconds since the
+ *              epoch, varint nanos
+ * 0x20 - 0x7f  use one of the first 96 defined names
+ * 0x80 - 0xff  an integer from -16 to 111
+ * </pre>
+ *
+ * <p>Names are numbered in the order they're defined, starting after any
+ * the two ends have agreed on beforehand, and stay defined for the rest
+ * of the connection; up to {@link #MAX_NAMES} of them. Definitions past
+ * that limit are uses only.
+ */
+final class Wire {
+
+    static final int NIL = 0x00;
+    static final int FALSE = 0x01;
+    static final int TRUE = 0x02;
+    static final int INT = 0x03;
+    static final int BIG_INT = 0x04;
+    static final int DOUBLE = 0x05;
+    static final int BIG_DECIMAL = 0x06;
+    static final int STRING = 0x07;
+    static final int CHAR = 0x08;
+    static final int KEYWORD = 0x09;
+    static final int SYMBOL = 0x0a;
+    static final int TAG = 0x0b;
+    static final int NAME = 0x0c;
+    static final int UUID = 0x0d;
+    static final int INST = 0x0e;
+    static final int VECTOR = 0x0f;
+    static final int LIST = 0x10;
+    static final int SET = 0x11;
+    static final int MAP = 0x12;
+    static final int TAGGED = 0x13;
+    static final int LONGS = 0x14;
+    static final int DOUBLES = 0x15;
+    static final int TEXT = 0x16;
+    static final int INST_NANOS = 0x17;
+
+    static final int SHORT_NAME = 0x20;
+    static final int SHORT_NAMES = 0x60;
+
+    static final int SMALL_INT = 0x80;
+    static final int SMALL_INT_MIN = -16;
+    static final int SMALL_INT_MAX = SMALL_INT_MIN + 0x7f;
+
+    static final int MAX_NAMES = 1 << 16;
+
+    private Wire() {
+    }
+}
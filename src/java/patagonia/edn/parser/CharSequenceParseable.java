@@ -0,0 +1,31 @@
+package patagonia.edn.parser;
+
+import java.io.IOException;
+
+/**
+ * A {@link Parseable} over a {@link CharSequence}, which
+ * {@link ScannerImpl} reaches into to take string literals in bulk.
+ */
+final class CharSequenceParseable implements Parseable {
+
+    final CharSequence cs;
+    int i;
+
+    CharSequenceParseable(CharSequence cs) {
+        this.cs = cs;
+    }
+
+    public void close() throws IOException {
+    }
+
+    public int read() throws IOException {
+        // Step past the end too, so that unreading END_OF_INPUT
+        // leaves the cursor at the end.
+        int j = i++;
+        return j < cs.length() ? cs.charAt(j) : Parseable.END_OF_INPUT;
+    }
+
+    public void unread(int ch) throws IOException {
+        i--;
+    }
+}
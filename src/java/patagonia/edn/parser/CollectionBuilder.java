@@ -40,4 +40,20 @@ public interface CollectionBuilder {
          */
         CollectionBuilder builder();
     }
+
+    /**
+     * A CollectionBuilder which can take numbers without boxing them.
+     * When parsing from bytes with the default tag handlers for longs
+     * and doubles, the parser passes the elements which would have been
+     * a {@link Long} or a {@link Double} to {@link #addLong(long)} or
+     * {@link #addDouble(double)}, and everything else to
+     * {@link #add(Object)}. Otherwise only {@code add} is called, so
+     * {@code add} must accept Longs and Doubles as well.
+     */
+    public interface Primitive extends CollectionBuilder {
+
+        public void addLong(long n);
+
+        public void addDouble(double d);
+    }
 }
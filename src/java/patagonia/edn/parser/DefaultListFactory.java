@@ -10,27 +10,8 @@ final class DefaultListFactory implements CollectionBuilder.Factory {
                 list.add(o);
             }
             public Object build() {
-                return new DelegatingList(list);
+                return new DelegatingList<Object>(list);
             }
         };
     }
 }
-
-final class DelegatingList<E> extends AbstractList<E> {
-    final List<E> delegate;
-
-    DelegatingList(List<E> delegate) {
-        this.delegate = delegate;
-    }
-
-    @Override
-    public int size() {
-        return delegate.size();
-    }
-
-    @Override
-    public E get(int index) {
-        return delegate.get(index);
-    }
-
-}
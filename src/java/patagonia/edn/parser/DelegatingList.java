@@ -0,0 +1,26 @@
+package patagonia.edn.parser;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * A read-only view of a List built for an edn list, which prints as a
+ * list rather than as a vector.
+ */
+final class DelegatingList<E> extends AbstractList<E> {
+    final List<? extends E> delegate;
+
+    DelegatingList(List<? extends E> delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public E get(int index) {
+        return delegate.get(index);
+    }
+}
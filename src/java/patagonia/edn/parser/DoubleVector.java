@@ -0,0 +1,63 @@
+package patagonia.edn.parser;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * An unmodifiable vector of doubles, held in a {@code double[]} rather
+ * than as boxed {@link Double}s. The factory returned by
+ * {@link Parsers#primitiveVectorFactory()} builds one for a vector
+ * whose elements are all floating point literals. It's equal to any
+ * other List of the same Doubles.
+ */
+public final class DoubleVector extends AbstractList<Double> implements RandomAccess {
+
+    private final double[] values;
+
+    DoubleVector(double[] values) {
+        this.values = values;
+    }
+
+    /**
+     * Return a vector of a copy of {@code values}.
+     */
+    public static DoubleVector of(double... values) {
+        return new DoubleVector(values.clone());
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public Double get(int index) {
+        return getDouble(index);
+    }
+
+    public double getDouble(int index) {
+        return values[index];
+    }
+
+    /**
+     * Return a copy of the elements.
+     */
+    public double[] toDoubleArray() {
+        return values.clone();
+    }
+
+    @Override
+    public int hashCode() {
+        // The same as List's hashCode of the boxed elements.
+        return Arrays.hashCode(values);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof DoubleVector) {
+            return Arrays.equals(values, ((DoubleVector) o).values);
+        }
+        return super.equals(o);
+    }
+}
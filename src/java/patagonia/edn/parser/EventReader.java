@@ -0,0 +1,115 @@
+package patagonia.edn.parser;
+
+import patagonia.edn.EdnIOException;
+import patagonia.edn.EdnSyntaxException;
+
+/**
+ * An EventReader reads edn from a {@link Parseable} as a sequence of
+ * {@link Event}s, one {@link #next()} at a time, instead of building
+ * whole values. Collections are reported by their beginning and end;
+ * only the atomic values in between are built, and those the caller
+ * isn't interested in can be skipped with {@link #skipValue()} and
+ * {@link #skipCollection()}.
+ *
+ * <p>This lets a caller look at a few entries of a map, say the
+ * {@code :tag} and {@code :to} of a packet, and skip or
+ * {@linkplain #readValue() read} the rest as it sees fit. On a Parseable
+ * made from bytes by {@link Parsers#newParseable(byte[])}, skipping
+ * scans the bytes and allocates nothing.
+ *
+ * <p>Tagged values are reported as a single {@link Event#VALUE}, whose
+ * value is the result of the tag's handler, as {@link Parser} would
+ * return it. Discarded values are skipped silently.
+ *
+ * <p>Use {@link Parsers#newEventReader(Parser.Config, Parseable)} to
+ * get an instance. An EventReader is stateful and should only be used
+ * from a single thread.
+ */
+public interface EventReader {
+
+    public enum Event {
+
+        /** A '(' began a list. */
+        BEGIN_LIST,
+
+        /** A '[' began a vector. */
+        BEGIN_VECTOR,
+
+        /** A '#{' began a set. */
+        BEGIN_SET,
+
+        /** A '{' began a map. */
+        BEGIN_MAP,
+
+        /** The innermost collection ended. */
+        END_COLLECTION,
+
+        /**
+         * An atomic value, or a tagged value, in key position of a map.
+         * Its value is {@link EventReader#getValue()}.
+         */
+        KEY,
+
+        /**
+         * Any other atomic value, or tagged value. Its value is
+         * {@link EventReader#getValue()}.
+         */
+        VALUE,
+
+        /** The input has been fully consumed. */
+        END_OF_INPUT;
+    }
+
+    /**
+     * Read the next event.
+     *
+     * @return the next event, never null.
+     *
+     * @throws EdnIOException if the underlying Parseable throws an
+     *         IOException.
+     * @throws EdnSyntaxException if the input violates the syntax of
+     *         edn, or its collections don't balance.
+     */
+    Event next();
+
+    /**
+     * The value of the last {@link Event#KEY} or {@link Event#VALUE}
+     * event, which may be null for 'nil'. After any other event, null.
+     */
+    Object getValue();
+
+    /**
+     * The number of collections which the reader is inside of. After a
+     * BEGIN event, this counts the collection begun.
+     */
+    int getDepth();
+
+    /**
+     * Skip the rest of the collection most recently begun, and all it
+     * contains. No {@link Event#END_COLLECTION} is reported for it.
+     *
+     * @throws IllegalStateException at the top level.
+     */
+    void skipCollection();
+
+    /**
+     * Skip the next value, including any collections it consists of.
+     * In a map, this is typically used right after a {@link Event#KEY}.
+     *
+     * @throws EdnSyntaxException if there is no next value in the
+     *         current collection, or at the top level.
+     */
+    void skipValue();
+
+    /**
+     * Parse the next value in full, as {@link Parser#nextValue(Parseable)}
+     * would, and return it. No events are reported for it.
+     *
+     * @return the value, or {@link Parser#END_OF_INPUT} at the end of
+     *         input at the top level.
+     *
+     * @throws EdnSyntaxException if there is no next value in the
+     *         current collection.
+     */
+    Object readValue();
+}
@@ -0,0 +1,256 @@
+package patagonia.edn.parser;
+
+import static patagonia.edn.TaggedValue.newTaggedValue;
+import patagonia.edn.EdnSyntaxException;
+import patagonia.edn.Tag;
+
+class EventReaderImpl implements EventReader {
+
+    private static final byte LIST = 0;
+    private static final byte VECTOR = 1;
+    private static final byte SET = 2;
+    private static final byte MAP = 3;
+
+    private static final Token[] END_TOKENS = {
+        Token.END_LIST, Token.END_VECTOR, Token.END_MAP_OR_SET, Token.END_MAP_OR_SET
+    };
+
+    private final Parser.Config cfg;
+    private final Scanner scanner;
+    private final Parser parser;
+    private final Parseable pbr;
+    private final Utf8Parseable bytes;
+    private FormSplitter splitter;
+
+    // The kind of each collection we're inside of, and the number of
+    // elements seen in it so far.
+    private byte[] kinds = new byte[16];
+    private int[] counts = new int[16];
+    private int depth;
+    private Object value;
+
+    EventReaderImpl(Parser.Config cfg, Parseable pbr) {
+        this.cfg = cfg;
+        this.scanner = Parsers.scanner(cfg);
+        this.parser = new ParserImpl(cfg, scanner);
+        this.pbr = pbr;
+        this.bytes = pbr instanceof Utf8Parseable ? (Utf8Parseable) pbr : null;
+    }
+
+    public Event next() {
+        value = null;
+        for (;;) {
+            Object curr = scanner.nextToken(pbr);
+            if (curr instanceof Token) {
+                switch ((Token) curr) {
+                case BEGIN_LIST:
+                    return begin(LIST, Event.BEGIN_LIST);
+                case BEGIN_VECTOR:
+                    return begin(VECTOR, Event.BEGIN_VECTOR);
+                case BEGIN_SET:
+                    return begin(SET, Event.BEGIN_SET);
+                case BEGIN_MAP:
+                    return begin(MAP, Event.BEGIN_MAP);
+                case END_LIST:
+                case END_VECTOR:
+                case END_MAP_OR_SET:
+                    return end((Token) curr);
+                case DISCARD:
+                    skip(0);
+                    continue;
+                case NIL:
+                    return atom(null);
+                case END_OF_INPUT:
+                    if (depth > 0) {
+                        throw new EdnSyntaxException(
+                            "Expected " + END_TOKENS[kinds[depth - 1]] +
+                            ", but found " + curr);
+                    }
+                    return Event.END_OF_INPUT;
+                default:
+                    throw new EdnSyntaxException("Unrecognized Token: " + curr);
+                }
+            } else if (curr instanceof Tag) {
+                return atom(tagged((Tag) curr));
+            } else {
+                return atom(curr);
+            }
+        }
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public void skipCollection() {
+        if (depth == 0) {
+            throw new IllegalStateException("Not inside a collection");
+        }
+        value = null;
+        skip(1);
+        depth--;
+    }
+
+    public void skipValue() {
+        value = null;
+        skip(0);
+        counted();
+    }
+
+    public Object readValue() {
+        value = null;
+        Object v = parser.nextValue(pbr);
+        if (v == Parser.END_OF_INPUT) {
+            if (depth > 0) {
+                throw new EdnSyntaxException(
+                    "Expected " + END_TOKENS[kinds[depth - 1]] +
+                    ", but found " + v);
+            }
+            return v;
+        }
+        counted();
+        return v;
+    }
+
+    private Object tagged(Tag t) {
+        Object v = parser.nextValue(pbr);
+        if (v == Parser.END_OF_INPUT) {
+            throw new EdnSyntaxException(
+                "Unexpected end of input following " + t);
+        }
+        TagHandler x = cfg.getTagHandler(t);
+        return x != null ? x.transform(t, v) : newTaggedValue(t, v);
+    }
+
+    private Event atom(Object v) {
+        value = v;
+        boolean key = depth > 0 && kinds[depth - 1] == MAP
+            && (counts[depth - 1] & 1) == 0;
+        counted();
+        return key ? Event.KEY : Event.VALUE;
+    }
+
+    private void counted() {
+        if (depth > 0) {
+            counts[depth - 1]++;
+        }
+    }
+
+    private Event begin(byte kind, Event e) {
+        counted();
+        if (depth == kinds.length) {
+            byte[] k = new byte[depth * 2];
+            int[] c = new int[depth * 2];
+            System.arraycopy(kinds, 0, k, 0, depth);
+            System.arraycopy(counts, 0, c, 0, depth);
+            kinds = k;
+            counts = c;
+        }
+        kinds[depth] = kind;
+        counts[depth] = 0;
+        depth++;
+        return e;
+    }
+
+    private Event end(Token t) {
+        if (depth == 0) {
+            throw new EdnSyntaxException("Unexpected " + t);
+        }
+        byte kind = kinds[depth - 1];
+        if (END_TOKENS[kind] != t) {
+            throw new EdnSyntaxException(
+                "Expected " + END_TOKENS[kind] + ", but found " + t);
+        }
+        if (kind == MAP && (counts[depth - 1] & 1) != 0) {
+            throw new EdnSyntaxException(
+                "Every map must have an equal number of keys and values.");
+        }
+        depth--;
+        return Event.END_COLLECTION;
+    }
+
+    /**
+     * Skip input without building anything: with {@code open} 0, the
+     * next value; with {@code open} 1, the rest of the collection we're
+     * in, up to and including its closing bracket.
+     */
+    private void skip(int open) {
+        if (bytes != null) {
+            skipBytes(open);
+        } else {
+            skipTokens(open);
+        }
+    }
+
+    private void skipBytes(int open) {
+        FormSplitter s = splitter != null ? splitter : new FormSplitter();
+        // Only put back once it's known to be in a clean state.
+        splitter = null;
+        int end;
+        if (open > 0) {
+            end = s.skip(bytes.buf, bytes.pos, bytes.limit, open);
+        } else {
+            // Discarded values aren't the value to skip.
+            int from = bytes.pos;
+            do {
+                end = s.next(bytes.buf, from, bytes.limit);
+                if (end < 0) {
+                    end = s.finish(bytes.limit);
+                }
+                s.consumed();
+                from = end;
+            } while (end >= 0 && s.wasDiscarded());
+        }
+        if (end < 0) {
+            throw new EdnSyntaxException("Unexpected end of input");
+        }
+        s.consumed();
+        splitter = s;
+        bytes.pos = end;
+    }
+
+    private void skipTokens(int open) {
+        // The number of values still to skip at the level we started at.
+        int values = 1;
+        for (;;) {
+            Object curr = scanner.nextToken(pbr);
+            if (curr instanceof Token) {
+                switch ((Token) curr) {
+                case BEGIN_LIST:
+                case BEGIN_VECTOR:
+                case BEGIN_SET:
+                case BEGIN_MAP:
+                    open++;
+                    continue;
+                case END_LIST:
+                case END_VECTOR:
+                case END_MAP_OR_SET:
+                    if (open == 0) {
+                        throw new EdnSyntaxException("Unexpected " + curr);
+                    }
+                    open--;
+                    break;
+                case DISCARD:
+                    if (open == 0) {
+                        values++;
+                    }
+                    continue;
+                case END_OF_INPUT:
+                    throw new EdnSyntaxException("Unexpected end of input");
+                default:
+                    break;
+                }
+            } else if (curr instanceof Tag) {
+                // A tag and the value following it count as one value.
+                continue;
+            }
+            if (open == 0 && --values == 0) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package patagonia.edn.parser;
+
+import static patagonia.edn.util.CharClassify.isWhitespace;
+import static patagonia.edn.util.CharClassify.separatesTokens;
+import patagonia.edn.EdnSyntaxException;
+
+/**
+ * Finds where top-level edn forms end in UTF-8 input that arrives in
+ * pieces. A FormSplitter only tracks bracket depth, strings, comments,
+ * character literals and tag prefixes; it doesn't build values. This
+ * lets a caller hand each complete form to a {@link Parser} as soon as
+ * its last byte has arrived, holding on to no more than the form in
+ * progress.
+ *
+ * <p>The bytes of multi-byte UTF-8 sequences are all {@code >= 0x80},
+ * so they can never be mistaken for delimiters and need no decoding
+ * here.
+ *
+ * <p>A tagged value, such as {@code #inst "..."}, and a discarded form,
+ * such as {@code #_ x}, are split as one form with their prefixes. A form
+ * consisting only of discarded values parses to
+ * {@link Parser#END_OF_INPUT}.
+ *
+ * <p>A FormSplitter is stateful and should only be used from a single
+ * thread.
+ */
+public final class FormSplitter {
+
+    private static final byte TAG = 1;
+    private static final byte DISCARD = 2;
+
+    private final boolean unwrap;
+    private boolean sawFirst;
+    private boolean enclosed;
+    private boolean closed;
+
+    private int depth;
+    private boolean inString;
+    private boolean escape;
+    private boolean inComment;
+    private boolean inAtom;
+    private boolean atomIsTag;
+    private boolean skipNext;
+    private boolean hash;
+    private byte[] prefixes = new byte[8];
+    private int prefixCount;
+    private int formStart = -1;
+    private boolean discarded;
+
+    /**
+     * @param unwrap if true, and the input is a single vector or list,
+     *        split the elements of that collection rather than the
+     *        collection itself. This suits responses which bundle
+     *        several values into one vector.
+     */
+    public FormSplitter(boolean unwrap) {
+        this.unwrap = unwrap;
+    }
+
+    public FormSplitter() {
+        this(false);
+    }
+
+    /**
+     * Scan {@code b[from..to)}, continuing from where the previous call
+     * left off. Return the index just past the end of the first form
+     * which is completed within this range, or -1 if none is. The form
+     * begins at {@link #getFormStart()}. Scanning should resume at the
+     * returned index.
+     *
+     * @throws EdnSyntaxException if the brackets don't balance.
+     */
+    public int next(byte[] b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int c = b[i] & 0xff;
+
+            if (inComment) {
+                if (c == '\n' || c == '\r') {
+                    inComment = false;
+                }
+                continue;
+            }
+            if (inString) {
+                if (escape) {
+                    escape = false;
+                } else if (c == '\\') {
+                    escape = true;
+                } else if (c == '"') {
+                    inString = false;
+                    if (depth == 0 && valueDone()) {
+                        return i + 1;
+                    }
+                }
+                continue;
+            }
+            if (inAtom) {
+                if (skipNext) {
+                    skipNext = false;
+                    continue;
+                }
+                if (c >= 0x80 || !separatesTokens((char) c)) {
+                    continue;
+                }
+                inAtom = false;
+                if (depth == 0 && atomDone()) {
+                    // c belongs to whatever follows; scan it next time
+                    return i;
+                }
+            }
+            if (hash) {
+                hash = false;
+                if (c == '{') {
+                    depth++;
+                } else if (c == '_') {
+                    // A discard inside a collection is the parser's
+                    // business; only one at the top level joins forms.
+                    if (depth == 0) {
+                        pushPrefix(DISCARD);
+                    }
+                } else {
+                    inAtom = true;
+                    atomIsTag = true;
+                }
+                continue;
+            }
+            if (c < 0x80 && isWhitespace((char) c)) {
+                continue;
+            }
+            if (closed) {
+                if (c != ';') {
+                    throw new EdnSyntaxException(
+                        "Unexpected input after the enclosing collection");
+                }
+            } else if (!sawFirst && c != ';') {
+                // A comment comes before the first form, not in it.
+                sawFirst = true;
+                if (unwrap && (c == '[' || c == '(')) {
+                    enclosed = true;
+                    continue;
+                }
+            }
+            if (depth == 0 && prefixCount == 0 && formStart < 0) {
+                formStart = i;
+            }
+            switch (c) {
+            case ';':
+                inComment = true;
+                if (formStart == i) {
+                    formStart = -1;
+                }
+                break;
+            case '"':
+                inString = true;
+                break;
+            case '(':
+            case '[':
+            case '{':
+                depth++;
+                break;
+            case ')':
+            case ']':
+            case '}':
+                if (depth == 0) {
+                    if (enclosed && prefixCount == 0) {
+                        enclosed = false;
+                        closed = true;
+                        formStart = -1;
+                        break;
+                    }
+                    throw new EdnSyntaxException("Unbalanced '" + (char) c + "'");
+                }
+                depth--;
+                if (depth == 0 && valueDone()) {
+                    return i + 1;
+                }
+                break;
+            case '#':
+                hash = true;
+                break;
+            case '\\':
+                inAtom = true;
+                atomIsTag = false;
+                skipNext = true;
+                break;
+            default:
+                inAtom = true;
+                atomIsTag = false;
+                break;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Scan {@code b[from..to)}, which starts {@code depth} collections
+     * deep, and return the index just past the bracket which closes the
+     * outermost of them, or -1 if the range ends first. The splitter
+     * must not be in a form. This lets a reader skip the rest of a
+     * collection without parsing it.
+     */
+    int skip(byte[] b, int from, int to, int depth) {
+        this.depth = depth;
+        return next(b, from, to);
+    }
+
+    /**
+     * Signal the end of input at index {@code to}. Return {@code to} if a
+     * symbol, number or other token was still open at the top level and
+     * is thereby completed, or -1 if there is no trailing form.
+     *
+     * @throws EdnSyntaxException if the input ends inside a form.
+     */
+    public int finish(int to) {
+        if (inAtom && depth == 0 && !atomIsTag) {
+            inAtom = false;
+            skipNext = false;
+            if (atomDone()) {
+                return to;
+            }
+        }
+        if (depth != 0 || inString || inAtom || hash || prefixCount != 0 || enclosed) {
+            throw new EdnSyntaxException("Unexpected end of input inside a form");
+        }
+        return -1;
+    }
+
+    /**
+     * The index where the form most recently returned by
+     * {@link #next(byte[], int, int)} begins, or -1 if no form has begun.
+     */
+    public int getFormStart() {
+        return formStart;
+    }
+
+    /**
+     * Mark the form returned last as consumed, so the next one can begin.
+     */
+    public void consumed() {
+        formStart = -1;
+    }
+
+    /**
+     * Adjust for the caller moving its unconsumed bytes {@code shift}
+     * positions towards the start of its buffer.
+     */
+    public void shift(int shift) {
+        if (formStart >= 0) {
+            formStart -= shift;
+        }
+    }
+
+    /**
+     * True while a form has begun but not yet ended.
+     */
+    public boolean inForm() {
+        return formStart >= 0;
+    }
+
+    /**
+     * True if the form returned last consists only of discarded values.
+     */
+    boolean wasDiscarded() {
+        return discarded;
+    }
+
+    private boolean atomDone() {
+        if (atomIsTag) {
+            pushPrefix(TAG);
+            return false;
+        }
+        return valueDone();
+    }
+
+    /**
+     * A value has just ended at the top level. Apply it to pending
+     * prefixes: each tag turns it into a tagged value, a discard swallows
+     * it. Return true if that completes a form.
+     */
+    private boolean valueDone() {
+        while (prefixCount > 0) {
+            if (prefixes[--prefixCount] == DISCARD) {
+                discarded = prefixCount == 0;
+                return discarded;
+            }
+        }
+        discarded = false;
+        return true;
+    }
+
+    private void pushPrefix(byte kind) {
+        if (prefixCount == prefixes.length) {
+            byte[] bigger = new byte[prefixes.length * 2];
+            System.arraycopy(prefixes, 0, bigger, 0, prefixCount);
+            prefixes = bigger;
+        }
+        prefixes[prefixCount++] = kind;
+    }
+}
@@ -0,0 +1,464 @@
+package patagonia.edn.parser;
+
+import static patagonia.edn.TaggedValue.newTaggedValue;
+import static patagonia.edn.util.CharClassify.isWhitespace;
+import static patagonia.edn.util.CharClassify.separatesTokens;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import patagonia.edn.EdnSyntaxException;
+import patagonia.edn.Tag;
+
+/**
+ * Parses UTF-8 edn which is pushed to it in chunks of any size, such as
+ * the buffers an NIO reactor reads from a socket, and hands back each
+ * top-level value as soon as it's complete. Nothing blocks: each call
+ * to {@link #feed(ByteBuffer)} parses as far as the bytes given allow,
+ * and the collections still open, with their elements so far, are kept
+ * for the next call. Only a token cut off by the end of a chunk, such
+ * as half a string, is copied to be finished later.
+ *
+ * <pre>
+ * {@code IncrementalParser p = new IncrementalParser(cfg);
+ * while (channel.read(buf) > 0) {
+ *     buf.flip();
+ *     p.feed(buf);
+ *     buf.clear();
+ *     while (p.hasNext()) {
+ *         handle(p.next());
+ *     }
+ * }
+ * p.finish();}
+ * </pre>
+ *
+ * <p>The values are those a {@link Parser} configured the same way would
+ * return for the whole input. A number or symbol at the very end of the
+ * input is only known to be complete once {@link #finish()} is called.
+ *
+ * <p>After it has thrown an exception, an IncrementalParser can't be
+ * relied on until it is {@link #reset()}. It is stateful and should only
+ * be used from a single thread at a time.
+ */
+public final class IncrementalParser {
+
+    private static final byte COLLECTION = 0;
+    private static final byte TAG = 1;
+    private static final byte DISCARD = 2;
+    // A collection whose builder takes unboxed numbers.
+    private static final byte NUMBERS = 3;
+
+    private final Parser.Config cfg;
+    private final ScannerImpl scanner;
+    private final boolean unwrap;
+
+    // What we're inside of, innermost last: collections, with their
+    // builders (null while discarding) and closing tokens, and the tags
+    // and discards waiting for their values.
+    private byte[] kinds = new byte[16];
+    private Object[] items = new Object[16];
+    private Token[] ends = new Token[16];
+    private int depth;
+    private int discards;
+
+    private boolean sawFirst;
+    private boolean enclosed;
+    private boolean closed;
+    private boolean finished;
+
+    // The scanner's scratch space, kept from one chunk to the next.
+    private char[] chars = Utf8Parseable.NO_CHARS;
+
+    // The start of a token which the last chunk cut off.
+    private byte[] pending = new byte[64];
+    private int pendingLength;
+
+    // Completed values not yet taken; nil is one, so this is no Deque.
+    private Object[] values = new Object[8];
+    private int head;
+    private int tail;
+
+    /**
+     * @param unwrap if true, and the input is a single vector or list,
+     *        hand back the elements of that collection rather than the
+     *        collection itself, as {@link FormSplitter#FormSplitter(boolean)}
+     *        does.
+     */
+    public IncrementalParser(Parser.Config cfg, boolean unwrap) {
+        this.cfg = cfg;
+        this.scanner = Parsers.scanner(cfg);
+        this.unwrap = unwrap;
+    }
+
+    public IncrementalParser(Parser.Config cfg) {
+        this(cfg, false);
+    }
+
+    /**
+     * Parse the remaining bytes of {@code chunk}, all of which are
+     * consumed.
+     *
+     * @throws EdnSyntaxException if the input so far isn't valid edn.
+     * @throws IllegalStateException after {@link #finish()}.
+     */
+    public void feed(ByteBuffer chunk) {
+        if (finished) {
+            throw new IllegalStateException("Input has already finished");
+        }
+        while (chunk.hasRemaining()) {
+            if (pendingLength == 0 && chunk.hasArray()) {
+                byte[] b = chunk.array();
+                int from = chunk.arrayOffset() + chunk.position();
+                int to = from + chunk.remaining();
+                int end = scan(b, from, to, false);
+                keep(b, end, to - end);
+                chunk.position(chunk.limit());
+            } else {
+                // Finish the token cut off last time. Copy no more of the
+                // chunk than it's likely to need, and scan the rest in
+                // place.
+                int n = chunk.hasArray()
+                    ? Math.min(chunk.remaining(), Math.max(64, pendingLength))
+                    : chunk.remaining();
+                int was = pendingLength;
+                int start = chunk.position();
+                ensurePending(n);
+                chunk.get(pending, pendingLength, n);
+                pendingLength += n;
+                int end = scan(pending, 0, pendingLength, false);
+                if (end >= was && chunk.hasArray()) {
+                    pendingLength = 0;
+                    chunk.position(start + end - was);
+                } else {
+                    System.arraycopy(pending, end, pending, 0, pendingLength - end);
+                    pendingLength -= end;
+                }
+            }
+        }
+    }
+
+    /**
+     * Parse {@code b[offset..offset+length)}.
+     */
+    public void feed(byte[] b, int offset, int length) {
+        feed(ByteBuffer.wrap(b, offset, length));
+    }
+
+    /**
+     * Signal the end of the input, completing a number or symbol it may
+     * have ended with.
+     *
+     * @throws EdnSyntaxException if the input ends inside a value.
+     */
+    public void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        scan(pending, 0, pendingLength, true);
+        pendingLength = 0;
+        if (depth > 0) {
+            throw new EdnSyntaxException("Unexpected end of input inside "
+                + (ends[depth - 1] != null ? "a collection" : "a tagged or discarded value"));
+        }
+    }
+
+    /**
+     * Forget the input so far, and any values not yet taken, to parse
+     * another document from the start. The space grown for the last one
+     * is kept, so a parser reset for each response allocates nothing of
+     * its own once it has seen the largest. This also makes the parser
+     * usable again after it has thrown an exception.
+     */
+    public void reset() {
+        Arrays.fill(items, null);
+        Arrays.fill(ends, null);
+        depth = 0;
+        discards = 0;
+        sawFirst = false;
+        enclosed = false;
+        closed = false;
+        finished = false;
+        pendingLength = 0;
+        Arrays.fill(values, 0, tail, null);
+        head = tail = 0;
+    }
+
+    /**
+     * True if a completed value is waiting to be taken by {@link #next()}.
+     */
+    public boolean hasNext() {
+        return head < tail;
+    }
+
+    /**
+     * Take the next completed value, which may be null for nil.
+     *
+     * @throws NoSuchElementException if there is none yet.
+     */
+    public Object next() {
+        if (head == tail) {
+            throw new NoSuchElementException();
+        }
+        Object v = values[head];
+        values[head++] = null;
+        if (head == tail) {
+            head = tail = 0;
+        }
+        return v;
+    }
+
+    /**
+     * The number of collections the input is inside of, so far.
+     */
+    public int getDepth() {
+        int n = 0;
+        for (int i = 0; i < depth; i++) {
+            if (ends[i] != null) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Parse the tokens in {@code b[from..to)}. Unless this is the
+     * {@code last} of the input, stop before a token which reaches
+     * {@code to}, as it may go on in the next chunk, and return where it
+     * starts. Otherwise return {@code to}.
+     */
+    private int scan(byte[] b, int from, int to, boolean last) {
+        Utf8Parseable p = new Utf8Parseable(b, from, to - from);
+        p.chars = chars;
+        for (;;) {
+            int start = p.pos;
+            int top = depth - 1;
+            boolean numbers = top >= 0 && kinds[top] == NUMBERS;
+            Object t;
+            try {
+                t = numbers ? scanner.nextTokenUnboxed(p) : scanner.nextToken(p);
+            } catch (RuntimeException e) {
+                if (!last && reachesEnd(b, start, to)) {
+                    return start;
+                }
+                throw e;
+            }
+            chars = p.chars;
+            if (t == Token.END_OF_INPUT) {
+                return !last && reachesEnd(b, start, to) ? start : to;
+            }
+            if (!last && p.pos >= to && !(t instanceof Token && t != Token.NIL)) {
+                return start;
+            }
+            if (t == Utf8ScannerImpl.LONG) {
+                ((CollectionBuilder.Primitive) items[top]).addLong(p.longValue);
+            } else if (t == Utf8ScannerImpl.DOUBLE) {
+                ((CollectionBuilder.Primitive) items[top]).addDouble(p.doubleValue);
+            } else {
+                token(t);
+            }
+        }
+    }
+
+    private void token(Object t) {
+        if (closed) {
+            throw new EdnSyntaxException("Unexpected input after the enclosing collection");
+        }
+        boolean first = !sawFirst;
+        sawFirst = true;
+        if (t instanceof Token) {
+            switch ((Token) t) {
+            case BEGIN_LIST:
+                begin(cfg.getListFactory(), Token.END_LIST, first);
+                break;
+            case BEGIN_VECTOR:
+                begin(cfg.getVectorFactory(), Token.END_VECTOR, first);
+                break;
+            case BEGIN_SET:
+                begin(cfg.getSetFactory(), Token.END_MAP_OR_SET, false);
+                break;
+            case BEGIN_MAP:
+                begin(cfg.getMapFactory(), Token.END_MAP_OR_SET, false);
+                break;
+            case END_LIST:
+            case END_VECTOR:
+            case END_MAP_OR_SET:
+                end((Token) t);
+                break;
+            case DISCARD:
+                push(DISCARD, null, null);
+                discards++;
+                break;
+            case NIL:
+                value(null);
+                break;
+            default:
+                throw new EdnSyntaxException("Unrecognized Token: " + t);
+            }
+        } else if (t instanceof Tag) {
+            push(TAG, t, null);
+        } else {
+            value(t);
+        }
+    }
+
+    private void begin(CollectionBuilder.Factory f, Token end, boolean first) {
+        if (first && unwrap) {
+            enclosed = true;
+            push(COLLECTION, null, end);
+        } else {
+            CollectionBuilder b = discards == 0 ? f.builder() : null;
+            push(b instanceof CollectionBuilder.Primitive ? NUMBERS : COLLECTION, b, end);
+        }
+    }
+
+    private void end(Token t) {
+        int top = depth - 1;
+        if (top < 0) {
+            throw new EdnSyntaxException("Unexpected " + t);
+        }
+        if (ends[top] != t) {
+            throw new EdnSyntaxException("Expected "
+                + (ends[top] != null ? ends[top] : "a value") + ", but found " + t);
+        }
+        CollectionBuilder b = (CollectionBuilder) items[top];
+        pop();
+        if (top == 0 && enclosed) {
+            enclosed = false;
+            closed = true;
+            return;
+        }
+        value(b != null ? b.build() : null);
+    }
+
+    /**
+     * A value is complete: apply the tags waiting for it, and add it to
+     * the collection it's in, if any.
+     */
+    private void value(Object v) {
+        for (;;) {
+            int top = depth - 1;
+            if (top < 0) {
+                emit(v);
+                return;
+            }
+            switch (kinds[top]) {
+            case TAG:
+                Tag t = (Tag) items[top];
+                pop();
+                if (discards == 0) {
+                    TagHandler x = cfg.getTagHandler(t);
+                    v = x != null ? x.transform(t, v) : newTaggedValue(t, v);
+                }
+                break;
+            case DISCARD:
+                pop();
+                discards--;
+                return;
+            default:
+                if (top == 0 && enclosed) {
+                    emit(v);
+                } else if (items[top] != null) {
+                    ((CollectionBuilder) items[top]).add(v);
+                }
+                return;
+            }
+        }
+    }
+
+    private void emit(Object v) {
+        if (tail == values.length) {
+            values = Arrays.copyOf(values, tail * 2);
+        }
+        values[tail++] = v;
+    }
+
+    private void push(byte kind, Object item, Token end) {
+        if (depth == kinds.length) {
+            kinds = Arrays.copyOf(kinds, depth * 2);
+            items = Arrays.copyOf(items, depth * 2);
+            ends = Arrays.copyOf(ends, depth * 2);
+        }
+        kinds[depth] = kind;
+        items[depth] = item;
+        ends[depth] = end;
+        depth++;
+    }
+
+    private void pop() {
+        depth--;
+        items[depth] = null;
+        ends[depth] = null;
+    }
+
+    private void keep(byte[] b, int off, int len) {
+        ensurePending(len);
+        System.arraycopy(b, off, pending, pendingLength, len);
+        pendingLength += len;
+    }
+
+    private void ensurePending(int n) {
+        if (pendingLength + n > pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(pendingLength + n, pending.length * 2));
+        }
+    }
+
+    /**
+     * True if the first token in {@code b[from..to)}, or a comment
+     * before it, runs up to {@code to} without ending, and so may go on
+     * in the next chunk.
+     */
+    static boolean reachesEnd(byte[] b, int from, int to) {
+        int i = from;
+        for (;;) {
+            if (i >= to) {
+                return false;
+            }
+            int c = b[i];
+            if (c >= 0 && isWhitespace((char) c)) {
+                i++;
+            } else if (c == ';') {
+                do {
+                    i++;
+                } while (i < to && b[i] != '\n' && b[i] != '\r');
+                if (i >= to) {
+                    return true;
+                }
+            } else {
+                break;
+            }
+        }
+        switch (b[i]) {
+        case '"':
+            for (i++; i < to; i++) {
+                if (b[i] == '\\') {
+                    i++;
+                } else if (b[i] == '"') {
+                    return false;
+                }
+            }
+            return true;
+        case '(': case ')': case '[': case ']': case '{': case '}':
+            return false;
+        case '\\':
+            i += 2;
+            break;
+        case '#':
+            if (i + 1 < to && (b[i + 1] == '{' || b[i + 1] == '_')) {
+                return false;
+            }
+            i += 2;
+            break;
+        default:
+            i++;
+        }
+        for (; i < to; i++) {
+            int c = b[i];
+            if (c >= 0 && separatesTokens((char) c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
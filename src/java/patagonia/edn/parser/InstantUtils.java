@@ -19,22 +19,147 @@ public class InstantUtils {
             "(?:[T](\\d\\d)(?::(\\d\\d)(?::(\\d\\d)(?:[.](\\d{1,9}))?)?)?)?)?)?" +
             "(?:[Z]|([-+])(\\d\\d):(\\d\\d))?");
 
+    /**
+     * Parse {@code value} by hand, falling back to the {@link #INSTANT}
+     * pattern, which also backtracks, for anything which isn't in the
+     * usual shape, and to report errors.
+     */
     static ParsedInstant parse(String value) {
+        ParsedInstant pi = scan(value);
+        return pi != null ? pi : match(value);
+    }
+
+    /**
+     * Scan an instant of the form the pattern matches greedily, without
+     * backtracking. Return null if it doesn't have that form.
+     */
+    private static ParsedInstant scan(String value) {
+        final int n = value.length();
+        if (n < 4) {
+            return null;
+        }
+        final int years = digits(value, 0, 4);
+        if (years < 0) {
+            return null;
+        }
+        int months = 1;
+        int days = 1;
+        int hours = 0;
+        int minutes = 0;
+        int seconds = 0;
+        int nanoseconds = 0;
+        int i = 4;
+        if (i + 3 <= n && value.charAt(i) == '-' && (i + 3 == n || value.charAt(i + 3) != ':')) {
+            if ((months = digits(value, i + 1, 2)) < 0) {
+                return null;
+            }
+            i += 3;
+            if (i + 3 <= n && value.charAt(i) == '-' && (i + 3 == n || value.charAt(i + 3) != ':')) {
+                if ((days = digits(value, i + 1, 2)) < 0) {
+                    return null;
+                }
+                i += 3;
+                if (i < n && value.charAt(i) == 'T') {
+                    if ((hours = digits(value, i + 1, 2)) < 0) {
+                        return null;
+                    }
+                    i += 3;
+                    if (i < n && value.charAt(i) == ':') {
+                        if ((minutes = digits(value, i + 1, 2)) < 0) {
+                            return null;
+                        }
+                        i += 3;
+                        if (i < n && value.charAt(i) == ':') {
+                            if ((seconds = digits(value, i + 1, 2)) < 0) {
+                                return null;
+                            }
+                            i += 3;
+                            if (i < n && value.charAt(i) == '.') {
+                                int start = ++i;
+                                while (i < n && i - start < 9 && isDigit(value.charAt(i))) {
+                                    nanoseconds = nanoseconds * 10 + (value.charAt(i++) - '0');
+                                }
+                                if (i == start) {
+                                    return null;
+                                }
+                                for (int k = i - start; k < 9; k++) {
+                                    nanoseconds *= 10;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        int offsetSign = 0;
+        int offsetHours = 0;
+        int offsetMinutes = 0;
+        if (i < n) {
+            char c = value.charAt(i);
+            if (c == 'Z') {
+                i++;
+            } else if (c == '-' || c == '+') {
+                offsetSign = c == '-' ? -1 : 1;
+                if (i + 6 > n || value.charAt(i + 3) != ':'
+                        || (offsetHours = digits(value, i + 1, 2)) < 0
+                        || (offsetMinutes = digits(value, i + 4, 2)) < 0) {
+                    return null;
+                }
+                i += 6;
+            }
+        }
+        if (i != n) {
+            return null;
+        }
+        return checked(value, years, months, days, hours, minutes, seconds,
+                nanoseconds, offsetSign, offsetHours, offsetMinutes);
+    }
+
+    /**
+     * Return the value of the {@code count} decimal digits at
+     * {@code start}, or -1 if they aren't all there.
+     */
+    private static int digits(String s, int start, int count) {
+        if (start + count > s.length()) {
+            return -1;
+        }
+        int v = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = s.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static ParsedInstant match(String value) {
         Matcher m = INSTANT.matcher(value);
         if (!m.matches()) {
             throw new EdnSyntaxException("Can't parse " + "\"" + value + "\"");
         }
 
-        final int years = Integer.parseInt(m.group(1));
-        final int months = parseIntOrElse(m.group(2), 1);
-        final int days = parseIntOrElse(m.group(3), 1);
-        final int hours = parseIntOrElse(m.group(4), 0);
-        final int minutes = parseIntOrElse(m.group(5), 0);
-        final int seconds = parseIntOrElse(m.group(6), 0);
-        final int nanoseconds = parseNanoseconds(m.group(7));
-        final int offsetSign = parseOffsetSign(m.group(8));
-        final int offsetHours = parseIntOrElse(m.group(9), 0);
-        final int offsetMinutes = parseIntOrElse(m.group(10), 0);
+        return checked(value,
+                Integer.parseInt(m.group(1)),
+                parseIntOrElse(m.group(2), 1),
+                parseIntOrElse(m.group(3), 1),
+                parseIntOrElse(m.group(4), 0),
+                parseIntOrElse(m.group(5), 0),
+                parseIntOrElse(m.group(6), 0),
+                parseNanoseconds(m.group(7)),
+                parseOffsetSign(m.group(8)),
+                parseIntOrElse(m.group(9), 0),
+                parseIntOrElse(m.group(10), 0));
+    }
+
+    private static ParsedInstant checked(String value, int years, int months,
+            int days, int hours, int minutes, int seconds, int nanoseconds,
+            int offsetSign, int offsetHours, int offsetMinutes) {
 
         // extra-grammatical restrictions from RFC3339
 
@@ -64,7 +189,7 @@ public class InstantUtils {
                             seconds, value));
         }
         assert 0 <= nanoseconds && nanoseconds <= 999999999:
-            "nanoseconds are assured to be in [0..999999999] by INSTANT Pattern";
+            "nanoseconds are assured to be in [0..999999999] by the parser";
         assert -1 <= offsetSign && offsetSign <= 1:
             "parser assuers offsetSign is -1, 0 or 1.";
         if (offsetHours < 0 || 23 < offsetHours) {
@@ -123,14 +248,56 @@ public class InstantUtils {
 
 
     static Timestamp makeTimestamp(ParsedInstant pi) {
-        GregorianCalendar c = makeCalendar(pi);
-        Timestamp ts = new Timestamp((c.getTimeInMillis() / 1000L) * 1000L);
+        Timestamp ts = new Timestamp((toMillis(pi) / 1000L) * 1000L);
         ts.setNanos(pi.nanoseconds);
         return ts;
     }
 
     static Date makeDate(ParsedInstant pi) {
-        return makeCalendar(pi).getTime();
+        return new Date(toMillis(pi));
+    }
+
+    /**
+     * The first year in which a GregorianCalendar, with its default
+     * cutover, counts days as the proleptic Gregorian calendar does.
+     */
+    private static final int FIRST_GREGORIAN_YEAR = 1583;
+
+    private static final long MILLIS_PER_DAY = 86400000L;
+
+    /** Instants in {@code [FAST_MIN, FAST_MAX)} are formatted by hand. */
+    private static final long FAST_MIN =
+            daysFromCivil(FIRST_GREGORIAN_YEAR, 1, 2) * MILLIS_PER_DAY;
+    private static final long FAST_MAX =
+            daysFromCivil(9999, 12, 31) * MILLIS_PER_DAY;
+
+    /**
+     * Return the instant as milliseconds since the epoch, as
+     * {@link #makeCalendar(ParsedInstant)} would, but without a
+     * calendar where the arithmetic is plain.
+     */
+    private static long toMillis(ParsedInstant pi) {
+        if (pi.years < FIRST_GREGORIAN_YEAR) {
+            return makeCalendar(pi).getTimeInMillis();
+        }
+        long seconds = daysFromCivil(pi.years, pi.months, pi.days) * 86400L
+                + pi.hours * 3600 + pi.minutes * 60 + pi.seconds
+                - pi.offsetSign * (pi.offsetHours * 3600 + pi.offsetMinutes * 60);
+        return seconds * 1000L + pi.nanoseconds / NANOSECS_PER_MILLISEC;
+    }
+
+    /**
+     * The number of days from 1970-01-01 to the given date of the
+     * proleptic Gregorian calendar.
+     */
+    static long daysFromCivil(int year, int month, int day) {
+        // Count from 0000-03-01, so that leap days come at year ends.
+        long y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yoe = y - era * 400;
+        long doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
     }
 
     static GregorianCalendar makeCalendar(ParsedInstant pi) {
@@ -178,11 +345,31 @@ public class InstantUtils {
      * @return an RFC3339 compatible string.
      */
     public static String calendarToString(GregorianCalendar cal) {
-        String s = String.format("%1$tFT%1$tT.%1$tL%1$tz", cal);
-        /* s is almost right, but is missing the colon in the offset */
-        assert Pattern.matches(".*[-+][0-9]{4}$", s);
-        int n = s.length();
-        return s.substring(0, n-2) + ":" + s.substring(n-2);
+        final int year = cal.get(GregorianCalendar.YEAR);
+        if (cal.get(GregorianCalendar.ERA) != GregorianCalendar.AD || year > 9999) {
+            String s = String.format("%1$tFT%1$tT.%1$tL%1$tz", cal);
+            /* s is almost right, but is missing the colon in the offset */
+            assert Pattern.matches(".*[-+][0-9]{4}$", s);
+            int n = s.length();
+            return s.substring(0, n-2) + ":" + s.substring(n-2);
+        }
+        // The offset is rounded towards zero to whole minutes, as %tz does.
+        int offset = cal.get(GregorianCalendar.ZONE_OFFSET)
+                   + cal.get(GregorianCalendar.DST_OFFSET);
+        char[] b = new char[29];
+        int i = fields(b, year,
+                cal.get(GregorianCalendar.MONTH) + 1,
+                cal.get(GregorianCalendar.DAY_OF_MONTH),
+                cal.get(GregorianCalendar.HOUR_OF_DAY),
+                cal.get(GregorianCalendar.MINUTE),
+                cal.get(GregorianCalendar.SECOND),
+                cal.get(GregorianCalendar.MILLISECOND), 3);
+        b[i++] = offset < 0 ? '-' : '+';
+        int minutes = Math.abs(offset) / 60000;
+        i = twoDigits(b, i, minutes / 60);
+        b[i++] = ':';
+        i = twoDigits(b, i, minutes % 60);
+        return new String(b, 0, i);
     }
 
     /**
@@ -191,6 +378,11 @@ public class InstantUtils {
      * @return an RFC3339 compatible string.
      */
     public static String dateToString(Date date) {
+        char[] b = new char[29];
+        int n = formatDate(date, b);
+        if (n >= 0) {
+            return new String(b, 0, n);
+        }
         GregorianCalendar c = new GregorianCalendar(GMT);
         c.setTime(date);
         String s = calendarToString(c);
@@ -198,6 +390,22 @@ public class InstantUtils {
         return s.substring(0, s.length() - 6) + "-00:00";
     }
 
+    /**
+     * Write {@link #dateToString(Date)} of {@code date} into {@code b},
+     * which must have room for 29 chars, and return its length; or
+     * return -1 for dates which are before 1583 or after 9999, which
+     * only {@code dateToString} handles.
+     */
+    public static int formatDate(Date date, char[] b) {
+        final long t = date.getTime();
+        if (t < FAST_MIN || t >= FAST_MAX) {
+            return -1;
+        }
+        long seconds = floorDiv(t, 1000);
+        int i = dateTime(b, seconds, (int) (t - seconds * 1000), 3);
+        return unknownOffset(b, i);
+    }
+
     private static final TimeZone GMT = TimeZone.getTimeZone("GMT");
 
 
@@ -207,10 +415,30 @@ public class InstantUtils {
      * @return an RFC3339 compatible string.
      */
     public static String timestampToString(Timestamp ts) {
+        char[] b = new char[35];
+        int n = formatTimestamp(ts, b);
+        if (n >= 0) {
+            return new String(b, 0, n);
+        }
         return TIMESTAMP_FORMAT.get().format(ts)
              + String.format(".%09d-00:00", ts.getNanos());
     }
 
+    /**
+     * Write {@link #timestampToString(Timestamp)} of {@code ts} into
+     * {@code b}, which must have room for 35 chars, and return its
+     * length; or return -1 for timestamps which are before 1583 or after
+     * 9999, which only {@code timestampToString} handles.
+     */
+    public static int formatTimestamp(Timestamp ts, char[] b) {
+        final long t = ts.getTime();
+        if (t < FAST_MIN || t >= FAST_MAX) {
+            return -1;
+        }
+        int i = dateTime(b, floorDiv(t, 1000), ts.getNanos(), 9);
+        return unknownOffset(b, i);
+    }
+
     private static final ThreadLocal<SimpleDateFormat> TIMESTAMP_FORMAT =
             new ThreadLocal<SimpleDateFormat>() {
         protected SimpleDateFormat initialValue() {
@@ -221,6 +449,70 @@ public class InstantUtils {
         }
     };
 
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        return q * y > x ? q - 1 : q;
+    }
+
+    /**
+     * Write the UTC date and time {@code seconds} after the epoch, which
+     * must be after year 0, with a fraction of {@code digits} digits.
+     */
+    private static int dateTime(char[] b, long seconds, int fraction, int digits) {
+        long days = floorDiv(seconds, 86400);
+        int secs = (int) (seconds - days * 86400);
+        // Civil date from days since 1970-01-01, counting from 0000-03-01.
+        long z = days + 719468;
+        long era = z / 146097;
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        int year = (int) (yoe + era * 400) + (month <= 2 ? 1 : 0);
+        return fields(b, year, month, day,
+                secs / 3600, secs / 60 % 60, secs % 60, fraction, digits);
+    }
+
+    private static int fields(char[] b, int year, int month, int day,
+            int hours, int minutes, int seconds, int fraction, int digits) {
+        int i = twoDigits(b, 0, year / 100);
+        i = twoDigits(b, i, year % 100);
+        b[i++] = '-';
+        i = twoDigits(b, i, month);
+        b[i++] = '-';
+        i = twoDigits(b, i, day);
+        b[i++] = 'T';
+        i = twoDigits(b, i, hours);
+        b[i++] = ':';
+        i = twoDigits(b, i, minutes);
+        b[i++] = ':';
+        i = twoDigits(b, i, seconds);
+        b[i++] = '.';
+        for (int k = i + digits - 1; k >= i; k--) {
+            b[k] = (char) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        return i + digits;
+    }
+
+    private static int twoDigits(char[] b, int i, int v) {
+        b[i] = (char) ('0' + v / 10);
+        b[i + 1] = (char) ('0' + v % 10);
+        return i + 2;
+    }
+
+    private static int unknownOffset(char[] b, int i) {
+        b[i++] = '-';
+        b[i++] = '0';
+        b[i++] = '0';
+        b[i++] = ':';
+        b[i++] = '0';
+        b[i++] = '0';
+        return i;
+    }
+
 }
 
 /*
@@ -0,0 +1,33 @@
+package patagonia.edn.parser;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+
+/**
+ * A list parsed from its {@link LazySlice} when first needed.
+ */
+final class LazyList extends AbstractList<Object> implements LazyValue {
+    private final LazySlice slice;
+
+    LazyList(LazySlice slice) {
+        this.slice = slice;
+    }
+
+    public boolean isRealized() {
+        return slice.isRealized();
+    }
+
+    public ByteBuffer getSource() {
+        return slice.getSource();
+    }
+
+    @Override
+    public Object get(int index) {
+        return slice.list().get(index);
+    }
+
+    @Override
+    public int size() {
+        return slice.list().size();
+    }
+}
@@ -0,0 +1,45 @@
+package patagonia.edn.parser;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A map parsed from its {@link LazySlice} when first needed.
+ */
+final class LazyMap extends AbstractMap<Object, Object> implements LazyValue {
+    private final LazySlice slice;
+
+    LazyMap(LazySlice slice) {
+        this.slice = slice;
+    }
+
+    public boolean isRealized() {
+        return slice.isRealized();
+    }
+
+    public ByteBuffer getSource() {
+        return slice.getSource();
+    }
+
+    @Override
+    public Set<Map.Entry<Object, Object>> entrySet() {
+        return slice.map().entrySet();
+    }
+
+    @Override
+    public Object get(Object key) {
+        return slice.map().get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return slice.map().containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return slice.map().size();
+    }
+}
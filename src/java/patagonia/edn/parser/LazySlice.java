@@ -0,0 +1,53 @@
+package patagonia.edn.parser;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The unparsed source of a {@link LazyValue}, and the value parsed from
+ * it once it's needed. Parsing twice on a race is harmless: both parses
+ * produce equal values, and the last one wins.
+ */
+final class LazySlice {
+
+    private final Parser parser;
+    private final byte[] buf;
+    private final int offset;
+    private final int length;
+    private volatile Object value;
+
+    LazySlice(Parser parser, byte[] buf, int offset, int length) {
+        this.parser = parser;
+        this.buf = buf;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    boolean isRealized() {
+        return value != null;
+    }
+
+    ByteBuffer getSource() {
+        return ByteBuffer.wrap(buf, offset, length).slice();
+    }
+
+    Object get() {
+        Object v = value;
+        if (v == null) {
+            v = parser.nextValue(new Utf8Parseable(buf, offset, length));
+            value = v;
+        }
+        return v;
+    }
+
+    @SuppressWarnings("unchecked")
+    Map<Object, Object> map() {
+        return (Map<Object, Object>) get();
+    }
+
+    @SuppressWarnings("unchecked")
+    List<Object> list() {
+        return (List<Object>) get();
+    }
+}
@@ -0,0 +1,29 @@
+package patagonia.edn.parser;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A map, vector or list returned by a lazy parser (see
+ * {@link Parsers#newLazyParser(Parser.Config, int)}) which has been
+ * captured as a slice of the parser's UTF-8 input instead of being
+ * parsed. It is parsed the first time its contents are accessed, and
+ * can be printed by copying its source without being parsed at all.
+ *
+ * <p>Lazy values are immutable and may be shared between threads. They
+ * hold on to the input array: it must not be modified while they are in
+ * use.
+ */
+public interface LazyValue {
+
+    /**
+     * True once the contents have been parsed.
+     */
+    boolean isRealized();
+
+    /**
+     * The edn text this value was captured from, from its opening to its
+     * closing bracket, as UTF-8. The buffer shares the parser's input
+     * and must not be modified.
+     */
+    ByteBuffer getSource();
+}
@@ -0,0 +1,34 @@
+package patagonia.edn.parser;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * A vector parsed from its {@link LazySlice} when first needed.
+ */
+final class LazyVector extends AbstractList<Object> implements RandomAccess, LazyValue {
+    private final LazySlice slice;
+
+    LazyVector(LazySlice slice) {
+        this.slice = slice;
+    }
+
+    public boolean isRealized() {
+        return slice.isRealized();
+    }
+
+    public ByteBuffer getSource() {
+        return slice.getSource();
+    }
+
+    @Override
+    public Object get(int index) {
+        return slice.list().get(index);
+    }
+
+    @Override
+    public int size() {
+        return slice.list().size();
+    }
+}
@@ -0,0 +1,63 @@
+package patagonia.edn.parser;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * An unmodifiable vector of longs, held in a {@code long[]} rather than
+ * as boxed {@link Long}s. The factory returned by
+ * {@link Parsers#primitiveVectorFactory()} builds one for a vector
+ * whose elements are all integers that fit in a long. It's equal to any
+ * other List of the same Longs.
+ */
+public final class LongVector extends AbstractList<Long> implements RandomAccess {
+
+    private final long[] values;
+
+    LongVector(long[] values) {
+        this.values = values;
+    }
+
+    /**
+     * Return a vector of a copy of {@code values}.
+     */
+    public static LongVector of(long... values) {
+        return new LongVector(values.clone());
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public Long get(int index) {
+        return getLong(index);
+    }
+
+    public long getLong(int index) {
+        return values[index];
+    }
+
+    /**
+     * Return a copy of the elements.
+     */
+    public long[] toLongArray() {
+        return values.clone();
+    }
+
+    @Override
+    public int hashCode() {
+        // The same as List's hashCode of the boxed elements.
+        return Arrays.hashCode(values);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof LongVector) {
+            return Arrays.equals(values, ((LongVector) o).values);
+        }
+        return super.equals(o);
+    }
+}
@@ -0,0 +1,174 @@
+package patagonia.edn.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import patagonia.edn.EdnException;
+import patagonia.edn.EdnSyntaxException;
+
+/**
+ * Parses UTF-8 input holding many top-level edn values, such as a log,
+ * on several threads. The calling thread runs a {@link FormSplitter}
+ * over the bytes to find where values end, which is much cheaper than
+ * parsing them, and cuts the input between values into chunks of about
+ * {@code chunkBytes}. Each chunk is handed to the executor as soon as
+ * its end is found. The calling thread parses the last chunk itself,
+ * then collects the values of all of them, in order.
+ *
+ * <p>Any executor will do; a ForkJoinPool, where there is one, suits
+ * this well. A ParallelParser is immutable and may be shared between
+ * threads, as long as its {@link Parser} may.
+ */
+public final class ParallelParser {
+
+    public static final int DEFAULT_CHUNK_BYTES = 64 * 1024;
+
+    private final Parser parser;
+    private final ExecutorService executor;
+    private final int chunkBytes;
+
+    public ParallelParser(Parser parser, ExecutorService executor, int chunkBytes) {
+        if (parser == null || executor == null) {
+            throw new NullPointerException();
+        }
+        if (chunkBytes <= 0) {
+            throw new IllegalArgumentException("chunkBytes must be positive");
+        }
+        this.parser = parser;
+        this.executor = executor;
+        this.chunkBytes = chunkBytes;
+    }
+
+    public ParallelParser(Parser parser, ExecutorService executor) {
+        this(parser, executor, DEFAULT_CHUNK_BYTES);
+    }
+
+    public List<Object> parseAll(byte[] input) {
+        return parseAll(input, 0, input.length);
+    }
+
+    /**
+     * Parse every top-level value in {@code input[offset..offset+length)}.
+     *
+     * @return the values, in the order they appear in the input.
+     *
+     * @throws EdnSyntaxException if brackets don't balance, or the input
+     *         ends inside a value. The splitter finds this while cutting
+     *         the input into chunks, and throws it at once, whatever the
+     *         chunks before it hold.
+     * @throws RuntimeException whatever the parser throws if a chunk
+     *         isn't valid edn. If several chunks are invalid, the error in
+     *         the first is thrown.
+     */
+    public List<Object> parseAll(byte[] input, int offset, int length) {
+        List<Future<Object[]>> futures = new ArrayList<Future<Object[]>>();
+        try {
+            Chunk last = split(input, offset, offset + length, futures);
+            if (last == null) {
+                return Collections.emptyList();
+            }
+            Object[] lastValues = null;
+            RuntimeException lastError = null;
+            try {
+                lastValues = last.call();
+            } catch (RuntimeException e) {
+                // Only thrown if the chunks before it parse.
+                lastError = e;
+            }
+            List<Object> values = new ArrayList<Object>();
+            for (Future<Object[]> f : futures) {
+                values.addAll(Arrays.asList(get(f)));
+            }
+            if (lastError != null) {
+                throw lastError;
+            }
+            values.addAll(Arrays.asList(lastValues));
+            return values;
+        } finally {
+            for (Future<Object[]> f : futures) {
+                f.cancel(false);
+            }
+        }
+    }
+
+    private static Object[] get(Future<Object[]> f) {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EdnException("Interrupted while parsing", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new EdnException(cause);
+        }
+    }
+
+    /**
+     * Cut {@code b[from..to)} into chunks which end where values do. Each
+     * chunk but the last is submitted as soon as its end is found, so the
+     * scan overlaps with the parsing. Return the last chunk, or null if
+     * there are no values at all.
+     */
+    private Chunk split(byte[] b, int from, int to, List<Future<Object[]>> futures) {
+        FormSplitter splitter = new FormSplitter();
+        Chunk pending = null;
+        int chunkStart = -1;
+        int chunkEnd = -1;
+        int i = from;
+        for (;;) {
+            int end = splitter.next(b, i, to);
+            if (end < 0) {
+                end = splitter.finish(to);
+            }
+            if (end >= 0 && chunkStart < 0) {
+                chunkStart = splitter.getFormStart();
+            }
+            splitter.consumed();
+            if (chunkStart >= 0 && (end < 0 || end - chunkStart >= chunkBytes)) {
+                if (pending != null) {
+                    futures.add(executor.submit(pending));
+                }
+                pending = new Chunk(b, chunkStart, end < 0 ? chunkEnd : end);
+                chunkStart = -1;
+            }
+            if (end < 0) {
+                return pending;
+            }
+            chunkEnd = end;
+            i = end;
+        }
+    }
+
+    private final class Chunk implements Callable<Object[]> {
+        private final byte[] buf;
+        private final int start;
+        private final int end;
+
+        Chunk(byte[] buf, int start, int end) {
+            this.buf = buf;
+            this.start = start;
+            this.end = end;
+        }
+
+        public Object[] call() {
+            Parseable pbr = Parsers.newParseable(buf, start, end - start);
+            List<Object> values = new ArrayList<Object>();
+            for (Object v = parser.nextValue(pbr); v != Parser.END_OF_INPUT; v = parser.nextValue(pbr)) {
+                values.add(v);
+            }
+            return values.toArray();
+        }
+    }
+}
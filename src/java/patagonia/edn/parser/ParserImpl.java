@@ -19,38 +19,108 @@ class ParserImpl implements Parser {
     private Config cfg;
     private Scanner scanner;
 
+    /**
+     * Maps, vectors and lists nested in a value parsed from bytes which
+     * take at least this many bytes are returned as {@link LazyValue}s.
+     * 0 if this parser is not lazy.
+     */
+    private final int lazyThreshold;
+
+    /**
+     * Scratch space lent to each {@link Utf8Parseable} parsed, and kept
+     * from one document to the next; null unless this parser is confined
+     * to a thread, and while it's lent.
+     */
+    private char[] scratch;
+
     ParserImpl(Config cfg, Scanner scanner) {
+        this(cfg, scanner, 0);
+    }
+
+    ParserImpl(Config cfg, Scanner scanner, int lazyThreshold) {
         this.scanner = scanner;
         this.cfg = cfg;
+        this.lazyThreshold = lazyThreshold;
+    }
+
+    /**
+     * A parser which may only be used by one thread, as it keeps scratch
+     * space between calls. It isn't lazy: a lazy value may be parsed on
+     * any thread.
+     */
+    static ParserImpl confined(Config cfg, Scanner scanner) {
+        ParserImpl p = new ParserImpl(cfg, scanner);
+        p.scratch = new char[64];
+        return p;
+    }
+
+    Config getConfig() {
+        return cfg;
     }
 
     public Object nextValue(Parseable pbr) {
-        Object value = nextValue(pbr, false);
+        if (scratch != null && pbr instanceof Utf8Parseable
+                && ((Utf8Parseable) pbr).chars == Utf8Parseable.NO_CHARS) {
+            // A tag handler parsing with this parser again goes without.
+            Utf8Parseable p = (Utf8Parseable) pbr;
+            p.chars = scratch;
+            scratch = null;
+            try {
+                return parse(pbr);
+            } finally {
+                scratch = p.chars;
+                p.chars = Utf8Parseable.NO_CHARS;
+            }
+        }
+        return parse(pbr);
+    }
+
+    private Object parse(Parseable pbr) {
+        // A top-level value is never lazy, but its elements may be.
+        int lazy = lazyThreshold > 0 && pbr instanceof Utf8Parseable ? LAZY_ELEMENTS : EAGER;
+        Object value = nextValue(pbr, false, lazy);
         if (value instanceof Token && value != END_OF_INPUT) {
             throw new EdnSyntaxException("Unexpected "+ value);
         }
         return value;
     }
 
+    /** Parse everything. */
+    private static final int EAGER = 0;
+    /** Parse this value, but its elements may be lazy. */
+    private static final int LAZY_ELEMENTS = 1;
+    /** This value may be lazy, if it's a large map, vector or list. */
+    private static final int LAZY = 2;
+
     private Object nextValue(Parseable pbr, boolean discard) {
-        Object curr = scanner.nextToken(pbr);
+        return nextValue(pbr, discard, EAGER);
+    }
+
+    private Object nextValue(Parseable pbr, boolean discard, int lazy) {
+        return nextValue(scanner.nextToken(pbr), pbr, discard, lazy);
+    }
+
+    /**
+     * Parse the value which begins with the token {@code curr}.
+     */
+    private Object nextValue(Object curr, Parseable pbr, boolean discard, int lazy) {
         if (curr instanceof Token) {
             switch ((Token) curr) {
             case BEGIN_LIST:
                 return parseIntoCollection(cfg.getListFactory(),
-                                           END_LIST, pbr, discard);
+                                           END_LIST, pbr, discard, lazy);
             case BEGIN_VECTOR:
                 return parseIntoCollection(cfg.getVectorFactory(),
-                                           END_VECTOR, pbr, discard);
+                                           END_VECTOR, pbr, discard, lazy);
             case BEGIN_SET:
                 return parseIntoCollection(cfg.getSetFactory(),
-                                           END_MAP_OR_SET, pbr, discard);
+                                           END_MAP_OR_SET, pbr, discard, lazy);
             case BEGIN_MAP:
                 return parseIntoCollection(cfg.getMapFactory(),
-                                           END_MAP_OR_SET, pbr, discard);
+                                           END_MAP_OR_SET, pbr, discard, lazy);
             case DISCARD:
                 nextValue(pbr, true);
-                return nextValue(pbr, discard);
+                return nextValue(pbr, discard, lazy);
             case NIL:
                 return null;
             case END_OF_INPUT:
@@ -78,12 +148,60 @@ class ParserImpl implements Parser {
         return x != null ? x.transform(t, v) : newTaggedValue(t, v);
     }
 
+    /**
+     * Lazy values only stand in for collections built by the default
+     * factories; what a custom factory builds may not be a Map or List.
+     */
     private Object parseIntoCollection(CollectionBuilder.Factory f, Token end,
-                                       Parseable pbr, boolean discard) {
+                                       Parseable pbr, boolean discard, int lazy) {
+        int elements = EAGER;
+        if (lazy != EAGER && !discard) {
+            elements = LAZY;
+            if (lazy == LAZY && (f == Parsers.DEFAULT_MAP_FACTORY
+                    || f == Parsers.DEFAULT_VECTOR_FACTORY
+                    || f == Parsers.DEFAULT_LIST_FACTORY)) {
+                Utf8Parseable p = (Utf8Parseable) pbr;
+                int start = p.pos - 1;
+                int stop = endOfLarge(p.buf, p.pos, p.limit);
+                if (stop >= 0) {
+                    p.pos = stop;
+                    LazySlice slice = new LazySlice(this, p.buf, start, stop - start);
+                    if (f == Parsers.DEFAULT_MAP_FACTORY) {
+                        return new LazyMap(slice);
+                    }
+                    return f == Parsers.DEFAULT_VECTOR_FACTORY
+                        ? new LazyVector(slice) : new LazyList(slice);
+                }
+                // Everything in a small collection is smaller still.
+                elements = EAGER;
+            }
+        }
         CollectionBuilder b = !discard ? f.builder() : null;
-        for (Object o = nextValue(pbr, discard); 
-             o != end; 
-             o = nextValue(pbr, discard)) {
+        CollectionBuilder.Primitive numbers = null;
+        Utf8Parseable p = null;
+        if (b instanceof CollectionBuilder.Primitive
+                && pbr instanceof Utf8Parseable && scanner instanceof ScannerImpl) {
+            numbers = (CollectionBuilder.Primitive) b;
+            p = (Utf8Parseable) pbr;
+        }
+        for (;;) {
+            Object o;
+            if (numbers != null) {
+                Object curr = ((ScannerImpl) scanner).nextTokenUnboxed(p);
+                if (curr == Utf8ScannerImpl.LONG) {
+                    numbers.addLong(p.longValue);
+                    continue;
+                } else if (curr == Utf8ScannerImpl.DOUBLE) {
+                    numbers.addDouble(p.doubleValue);
+                    continue;
+                }
+                o = nextValue(curr, pbr, discard, elements);
+            } else {
+                o = nextValue(pbr, discard, elements);
+            }
+            if (o == end) {
+                break;
+            }
             if (o instanceof Token) {
                 throw new EdnSyntaxException("Expected " + end +
                                              ", but found " + o);
@@ -95,4 +213,19 @@ class ParserImpl implements Parser {
         return !discard ? b.build() : null;
     }
 
+    /**
+     * Scan the collection whose contents begin at {@code from}. Return the
+     * index just past its closing bracket if it's at least
+     * {@link #lazyThreshold} bytes long, and -1 if it is shorter, or
+     * doesn't end at all, in which case parsing it reports the error.
+     */
+    private int endOfLarge(byte[] b, int from, int to) {
+        FormSplitter s = new FormSplitter();
+        int window = Math.min(to, Math.max(from, from - 1 + lazyThreshold));
+        if (s.skip(b, from, window, 1) >= 0) {
+            return -1;
+        }
+        return s.next(b, window, to);
+    }
+
 }
@@ -9,6 +9,7 @@ import static patagonia.edn.parser.Parser.Config.LONG_TAG;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.util.HashMap;
 import java.util.Map;
@@ -39,8 +40,9 @@ import patagonia.edn.parser.Parser.Config.Builder;
  *     {@link #newParser(Parser.Config)} to create a {@link Parser}.</li>
  *
  * <li>Create one or more {@link Parseable}s using
- *     {@link #newParseable(CharSequence)} or
- *     {@link #newParseable(Readable)}.</li>
+ *     {@link #newParseable(CharSequence)},
+ *     {@link #newParseable(Readable)} or, for UTF-8 bytes,
+ *     {@link #newParseable(byte[])}.</li>
  *
  * <li>Use {@link Parser#nextValue(Parseable)} to get
  *     the edn values contained in your Parseables</li>
@@ -61,6 +63,12 @@ public class Parsers {
     static final CollectionBuilder.Factory DEFAULT_MAP_FACTORY =
         new DefaultMapFactory();
 
+    static final CollectionBuilder.Factory PRIMITIVE_VECTOR_FACTORY =
+        new PrimitiveVectorFactory(true);
+
+    static final CollectionBuilder.Factory PRIMITIVE_LIST_FACTORY =
+        new PrimitiveVectorFactory(false);
+
     static final TagHandler INSTANT_TO_DATE = new InstantToDate();
 
     static final TagHandler UUID_HANDLER = new UuidHandler();
@@ -82,7 +90,83 @@ public class Parsers {
      * @return a Parser, never null.
      */
     public static Parser newParser(Parser.Config cfg) {
-        return new ParserImpl(cfg, new ScannerImpl(cfg));
+        if (cfg == DEFAULT_CONFIGURATION) {
+            return DEFAULT_PARSER;
+        }
+        return new ParserImpl(cfg, scanner(cfg));
+    }
+
+    /**
+     * Return the calling thread's Parser for {@code cfg}, which is the
+     * same one each time as long as the thread keeps asking for the same
+     * configuration.
+     *
+     * <p>Unlike other Parsers, it is confined to the thread: it keeps the
+     * scratch space into which strings, symbols and keywords are decoded
+     * from one document to the next, so that parsing bytes (see
+     * {@link #newParseable(byte[])}) allocates nothing but the values
+     * parsed once the thread has warmed up. It must not be handed to
+     * other threads.
+     *
+     * @param cfg The configuration of the Parser. Must not be null.
+     * @return a Parser, never null.
+     */
+    public static Parser threadLocalParser(Parser.Config cfg) {
+        ParserImpl p = THREAD_PARSER.get();
+        if (p == null || p.getConfig() != cfg) {
+            p = ParserImpl.confined(cfg, scanner(cfg));
+            THREAD_PARSER.set(p);
+        }
+        return p;
+    }
+
+    private static final ThreadLocal<ParserImpl> THREAD_PARSER =
+        new ThreadLocal<ParserImpl>();
+
+    /**
+     * A scanner for {@code cfg}. Scanners are stateless, so the default
+     * configuration's is shared.
+     */
+    static ScannerImpl scanner(Parser.Config cfg) {
+        return cfg == DEFAULT_CONFIGURATION ? DEFAULT_SCANNER : new ScannerImpl(cfg);
+    }
+
+    /**
+     * Return an {@link EventReader} reading from {@code pbr}, which
+     * handles tagged values as configured by {@code cfg}.
+     *
+     * @param cfg The configuration of the reader. Must not be null.
+     * @param pbr The input to read. Must not be null.
+     * @return an EventReader, never null.
+     */
+    public static EventReader newEventReader(Parser.Config cfg, Parseable pbr) {
+        return new EventReaderImpl(cfg, pbr);
+    }
+
+    /**
+     * Return a Parser configured by {@code cfg} which, when parsing from
+     * bytes (see {@link #newParseable(byte[])}), doesn't parse the maps,
+     * vectors and lists nested in a value which are at least
+     * {@code threshold} bytes long. It scans for their ends and returns
+     * them as {@link LazyValue}s, which are parsed when first accessed,
+     * so a large payload which is ignored or forwarded costs no more than
+     * a bracket scan. The top-level value itself is always parsed, as is
+     * everything when parsing from chars, and collections built by
+     * custom factories.
+     *
+     * <p>Syntax errors inside a lazy value are only reported when it is
+     * parsed, by whichever method of it first needs its contents.
+     *
+     * @param cfg The configuration of the Parser. Must not be null.
+     * @param threshold The size in bytes from which a nested collection
+     *        is lazy. Must be positive.
+     * @return a Parser, never null.
+     */
+    public static Parser newLazyParser(Parser.Config cfg, int threshold) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("threshold must be positive");
+        }
+        return new ParserImpl(cfg, scanner(cfg), threshold);
     }
 
     static final int BUFFER_SIZE = 4096;
@@ -110,24 +194,47 @@ public class Parsers {
      * @return a Parseable, never null.
      */
     public static Parseable newParseable(final CharSequence cs) {
-        return new Parseable() {
-            int i = 0;
+        return new CharSequenceParseable(cs);
+    }
 
-            public void close() throws IOException {
-            }
+    /**
+     * Create a new {@link Parseable} over the UTF-8 encoded bytes
+     * {@code bytes[offset..offset+length)}. Parsers created by this class
+     * scan such a Parseable directly, without first decoding it to
+     * characters. The array must not change while it is being parsed.
+     *
+     * <p>The {@link java.io.Closeable#close()} method of the resulting
+     * Parseable is a no-op.
+     *
+     * @return a Parseable, never null.
+     */
+    public static Parseable newParseable(byte[] bytes, int offset, int length) {
+        return new Utf8Parseable(bytes, offset, length);
+    }
 
-            public int read() throws IOException {
-                try {
-                    return cs.charAt(i++);
-                } catch (IndexOutOfBoundsException _) {
-                    return Parseable.END_OF_INPUT;
-                }
-            }
+    /**
+     * Equivalent to {@code newParseable(bytes, 0, bytes.length)}.
+     */
+    public static Parseable newParseable(byte[] bytes) {
+        return new Utf8Parseable(bytes, 0, bytes.length);
+    }
 
-            public void unread(int ch) throws IOException {
-                i--;
-            }
-        };
+    /**
+     * Create a new {@link Parseable} over the UTF-8 encoded bytes
+     * remaining in {@code buf}. A heap buffer is parsed in place; the
+     * contents of any other buffer are copied first. The position of
+     * {@code buf} is left unchanged.
+     *
+     * @return a Parseable, never null.
+     */
+    public static Parseable newParseable(ByteBuffer buf) {
+        if (buf.hasArray()) {
+            return new Utf8Parseable(buf.array(), buf.arrayOffset() + buf.position(),
+                                     buf.remaining());
+        }
+        byte[] copy = new byte[buf.remaining()];
+        buf.duplicate().get(copy);
+        return new Utf8Parseable(copy, 0, copy.length);
     }
 
     /**
@@ -262,6 +369,32 @@ public class Parsers {
         };
     }
 
+    /**
+     * Return a vector factory which builds a {@link LongVector} for a
+     * vector of integers which all fit in a long, and a
+     * {@link DoubleVector} for a vector of floating point numbers, so
+     * that their elements aren't boxed. Any other vector is built as by
+     * the default factory. Numbers are only parsed straight into the
+     * arrays when parsing from bytes with the default handlers for
+     * longs and doubles; otherwise they are boxed first, and unboxed
+     * again.
+     *
+     * @return a factory for {@link Parser.Config.Builder#setVectorFactory}.
+     */
+    public static CollectionBuilder.Factory primitiveVectorFactory() {
+        return PRIMITIVE_VECTOR_FACTORY;
+    }
+
+    /**
+     * Return a list factory which, like {@link #primitiveVectorFactory()},
+     * holds a list of only longs or only doubles in an array.
+     *
+     * @return a factory for {@link Parser.Config.Builder#setListFactory}.
+     */
+    public static CollectionBuilder.Factory primitiveListFactory() {
+        return PRIMITIVE_LIST_FACTORY;
+    }
+
     static Map<Tag, TagHandler> defaultTagHandlers() {
         Map<Tag, TagHandler> m = new HashMap<Tag, TagHandler>();
         m.put(EDN_UUID, UUID_HANDLER);
@@ -275,14 +408,20 @@ public class Parsers {
 
     /**
      * Return the default configuration. This is equivalent to {@code
-     * newParserConfigBuilder().build()}.
+     * newParserConfigBuilder().build()}, but the same immutable
+     * {@link Parser.Config} is returned each time.
      *
-     * @return a new {@link Parser.Config}, never null.
+     * @return the default {@link Parser.Config}, never null.
      */
     public static Config defaultConfiguration() {
         return DEFAULT_CONFIGURATION;
     }
 
-    static Config DEFAULT_CONFIGURATION = newParserConfigBuilder().build();
+    private static final Config DEFAULT_CONFIGURATION = newParserConfigBuilder().build();
+
+    static final ScannerImpl DEFAULT_SCANNER = new ScannerImpl(DEFAULT_CONFIGURATION);
+
+    private static final Parser DEFAULT_PARSER =
+        new ParserImpl(DEFAULT_CONFIGURATION, DEFAULT_SCANNER);
 
 }
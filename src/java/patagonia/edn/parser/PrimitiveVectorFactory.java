@@ -0,0 +1,100 @@
+package patagonia.edn.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Builds a {@link LongVector} or {@link DoubleVector} when every element
+ * is a Long or every element is a Double, and the same List as the
+ * default factories otherwise. Lists are wrapped so that they don't
+ * print as vectors.
+ */
+final class PrimitiveVectorFactory implements CollectionBuilder.Factory {
+
+    private final boolean vector;
+
+    PrimitiveVectorFactory(boolean vector) {
+        this.vector = vector;
+    }
+
+    public CollectionBuilder builder() {
+        return new Builder();
+    }
+
+    private final class Builder implements CollectionBuilder.Primitive {
+        private long[] longs;
+        private double[] doubles;
+        private ArrayList<Object> objects;
+        private int n;
+
+        public void addLong(long v) {
+            if (objects == null && doubles == null) {
+                if (longs == null) {
+                    longs = new long[8];
+                } else if (n == longs.length) {
+                    longs = Arrays.copyOf(longs, n * 2);
+                }
+                longs[n++] = v;
+            } else {
+                objects().add(v);
+            }
+        }
+
+        public void addDouble(double v) {
+            if (objects == null && longs == null) {
+                if (doubles == null) {
+                    doubles = new double[8];
+                } else if (n == doubles.length) {
+                    doubles = Arrays.copyOf(doubles, n * 2);
+                }
+                doubles[n++] = v;
+            } else {
+                objects().add(v);
+            }
+        }
+
+        public void add(Object o) {
+            if (o instanceof Long) {
+                addLong((Long) o);
+            } else if (o instanceof Double) {
+                addDouble((Double) o);
+            } else {
+                objects().add(o);
+            }
+        }
+
+        /**
+         * Box what's been added so far, once it's no longer homogeneous.
+         */
+        private List<Object> objects() {
+            if (objects == null) {
+                objects = new ArrayList<Object>(Math.max(10, n * 2));
+                for (int i = 0; i < n; i++) {
+                    objects.add(longs != null ? (Object) longs[i] : (Object) doubles[i]);
+                }
+                longs = null;
+                doubles = null;
+            }
+            return objects;
+        }
+
+        public Object build() {
+            List<?> list;
+            if (objects != null) {
+                list = objects;
+            } else if (longs != null) {
+                list = new LongVector(n == longs.length ? longs : Arrays.copyOf(longs, n));
+            } else if (doubles != null) {
+                list = new DoubleVector(n == doubles.length ? doubles : Arrays.copyOf(doubles, n));
+            } else {
+                list = new ArrayList<Object>(0);
+            }
+            if (!vector) {
+                return new DelegatingList<Object>(list);
+            }
+            return list instanceof ArrayList ? Collections.unmodifiableList(list) : list;
+        }
+    }
+}
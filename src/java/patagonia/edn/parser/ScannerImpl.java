@@ -34,6 +34,13 @@ class ScannerImpl implements Scanner {
     private final TagHandler bigDecimalHandler;
     private final TagHandler bigIntegerHandler;
     private final TagHandler doubleHandler;
+    private final Utf8ScannerImpl utf8;
+
+    /**
+     * True if longs and doubles are left as they are, so that they can be
+     * handed to a {@link CollectionBuilder.Primitive} without boxing.
+     */
+    final boolean unboxedNumbers;
 
     /**
      * Scanner may throw an IOException during construction, in which case
@@ -50,12 +57,18 @@ class ScannerImpl implements Scanner {
         this.bigIntegerHandler = cfg.getTagHandler(BIG_INTEGER_TAG);
         this.doubleHandler = cfg.getTagHandler(DOUBLE_TAG);
         this.bigDecimalHandler = cfg.getTagHandler(BIG_DECIMAL_TAG);
+        this.unboxedNumbers = longHandler == Parsers.IDENTITY
+            && doubleHandler == Parsers.IDENTITY;
+        this.utf8 = new Utf8ScannerImpl(this);
     }
 
     /* (non-Javadoc)
      * @see patagonia.edn.parser.ScannerIf#nextToken(patagonia.edn.parser.Parseable)
      */
     public Object nextToken(Parseable pbr) {
+        if (pbr instanceof Utf8Parseable) {
+            return utf8.nextToken((Utf8Parseable) pbr, false);
+        }
         try {
             return scanNextToken(pbr);
         } catch (IOException e) {
@@ -63,6 +76,15 @@ class ScannerImpl implements Scanner {
         }
     }
 
+    /**
+     * Like {@link #nextToken(Parseable)}, but if {@link #unboxedNumbers},
+     * return {@link Utf8ScannerImpl#LONG} or {@link Utf8ScannerImpl#DOUBLE}
+     * for a Long or Double, leaving its value in {@code p}.
+     */
+    Object nextTokenUnboxed(Utf8Parseable p) {
+        return utf8.nextToken(p, unboxedNumbers);
+    }
+
     private Object scanNextToken(Parseable pbr) throws IOException {
         skipWhitespaceAndComments(pbr);
         int curr = pbr.read();
@@ -283,7 +305,7 @@ class ScannerImpl implements Scanner {
         }
     }
 
-    private static char charForName(String name) {
+    static char charForName(String name) {
         switch (name.charAt(0)) {
         case 'n':
             if ("newline".equals(name)) {
@@ -322,7 +344,10 @@ class ScannerImpl implements Scanner {
     }
 
     private String readStringLiteral(Parseable pbr) throws IOException {
-        StringBuffer b = new StringBuffer();
+        if (pbr instanceof CharSequenceParseable) {
+            return readStringLiteral((CharSequenceParseable) pbr);
+        }
+        StringBuilder b = new StringBuilder();
         for (;;) {
             int curr = pbr.read();
             switch (curr) {
@@ -332,39 +357,7 @@ class ScannerImpl implements Scanner {
             case '"':
                 return b.toString();
             case '\\':
-                curr = pbr.read();
-                switch (curr) {
-                case END:
-                    throw new EdnSyntaxException(
-                        "Unexpected end of input in string literal");
-                case 'b':
-                    b.append('\b');
-                    break;
-                case 't':
-                    b.append('\t');
-                    break;
-                case 'n':
-                    b.append('\n');
-                    break;
-                case 'f':
-                    b.append('\f');
-                    break;
-                case 'r':
-                    b.append('\r');
-                    break;
-                case '"':
-                    b.append('"');
-                    break;
-                case '\'':
-                    b.append('\'');
-                    break;
-                case '\\':
-                    b.append('\\');
-                    break;
-                default:
-                    throw new EdnSyntaxException("Unsupported '"+ ((char)curr)
-                        +"' escape in string");
-                }
+                b.append(unescape(pbr.read()));
                 break;
             default:
                 b.append((char)curr);
@@ -372,9 +365,77 @@ class ScannerImpl implements Scanner {
         }
     }
 
+    /**
+     * Read a string literal straight out of the CharSequence, taking each
+     * run of characters up to a quote or backslash in one go. One with no
+     * escapes, which is most of them, is a single substring.
+     */
+    private static String readStringLiteral(CharSequenceParseable p) {
+        final CharSequence cs = p.cs;
+        final int n = cs.length();
+        StringBuilder b = null;
+        int start = p.i;
+        int i = start;
+        for (;;) {
+            char c = 0;
+            while (i < n && (c = cs.charAt(i)) != '"' && c != '\\') {
+                i++;
+            }
+            if (i >= n) {
+                p.i = n + 1;
+                throw new EdnSyntaxException(
+                    "Unexpected end of input in string literal");
+            }
+            if (c == '"') {
+                p.i = i + 1;
+                return b == null
+                    ? cs.subSequence(start, i).toString()
+                    : b.append(cs, start, i).toString();
+            }
+            if (b == null) {
+                b = new StringBuilder(i - start + 16);
+            }
+            b.append(cs, start, i);
+            i++;
+            b.append(unescape(i < n ? cs.charAt(i) : END));
+            start = ++i;
+        }
+    }
+
+    /**
+     * The char which the escape sequence {@code \c} in a string
+     * literal stands for.
+     */
+    static char unescape(int c) {
+        switch (c) {
+        case END:
+            throw new EdnSyntaxException(
+                "Unexpected end of input in string literal");
+        case 'b':
+            return '\b';
+        case 't':
+            return '\t';
+        case 'n':
+            return '\n';
+        case 'f':
+            return '\f';
+        case 'r':
+            return '\r';
+        case '"':
+            return '"';
+        case '\'':
+            return '\'';
+        case '\\':
+            return '\\';
+        default:
+            throw new EdnSyntaxException("Unsupported '"+ ((char)c)
+                +"' escape in string");
+        }
+    }
+
     private Object readNumber(int curr, Parseable pbr) throws IOException {
         assert curr != END && CharClassify.startsNumber((char)curr);
-        StringBuffer digits = new StringBuffer();
+        Digits digits = new Digits();
 
         if (curr != '+') {
             digits.append((char)curr);
@@ -421,13 +482,7 @@ class ScannerImpl implements Scanner {
             }
             unread(pbr, curr);
 
-            if (decimal) {
-                BigDecimal d = new BigDecimal(digits.toString());
-                return bigDecimalHandler.transform(BIG_DECIMAL_TAG, d);
-            } else {
-                double d = Double.parseDouble(digits.toString());
-                return doubleHandler.transform(DOUBLE_TAG, d);
-            }
+            return floatingPoint(digits.cs, 0, digits.n, decimal);
         } else {
             final boolean bigint = (curr == 'N');
             if (bigint) {
@@ -440,14 +495,169 @@ class ScannerImpl implements Scanner {
             }
             unread(pbr, curr);
 
-            final BigInteger n = new BigInteger(digits.toString());
+            return integer(digits.cs, 0, digits.n, bigint);
+        }
+    }
+
+    /**
+     * The characters of a numeric literal, collected without the locking
+     * of a StringBuffer.
+     */
+    private static final class Digits {
+        char[] cs = new char[24];
+        int n;
+
+        void append(char c) {
+            if (n == cs.length) {
+                char[] bigger = new char[n * 2];
+                System.arraycopy(cs, 0, bigger, 0, n);
+                cs = bigger;
+            }
+            cs[n++] = c;
+        }
+
+        @Override
+        public String toString() {
+            return new String(cs, 0, n);
+        }
+    }
+
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+        1e21, 1e22
+    };
 
-            if (bigint || MIN_LONG.compareTo(n) > 0 || n.compareTo(MAX_LONG) > 0) {
-                return bigIntegerHandler.transform(BIG_INTEGER_TAG, n);
+    /**
+     * Convert the digits of a floating point literal in
+     * {@code cs[off..off+len)}, without any trailing 'M', and pass the
+     * result to the configured handler.
+     */
+    Object floatingPoint(char[] cs, int off, int len, boolean decimal) {
+        if (decimal) {
+            BigDecimal d = new BigDecimal(cs, off, len);
+            return bigDecimalHandler.transform(BIG_DECIMAL_TAG, d);
+        } else {
+            return doubleHandler.transform(DOUBLE_TAG, toDouble(cs, off, len));
+        }
+    }
+
+    static double toDouble(char[] cs, int off, int len) {
+        double d = fastDouble(cs, off, len);
+        if (d != d) {
+            d = Double.parseDouble(new String(cs, off, len));
+        }
+        return d;
+    }
+
+    /**
+     * Convert a floating point literal whose significant digits fit in
+     * 53 bits and whose decimal exponent is at most 22 in magnitude. Both
+     * the significand and the power of ten are then exact doubles, so a
+     * single multiplication or division rounds correctly. Return NaN,
+     * which no literal produces, for anything else.
+     */
+    static double fastDouble(char[] cs, int off, int len) {
+        int i = off;
+        final int end = off + len;
+        boolean negative = false;
+        if (cs[i] == '-') {
+            negative = true;
+            i++;
+        }
+        long m = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            char c = cs[i];
+            if (c >= '0' && c <= '9') {
+                if (m != 0 || c != '0') {
+                    if (++digits > 18) {
+                        return Double.NaN;
+                    }
+                    m = m * 10 + (c - '0');
+                }
+                if (fraction) {
+                    scale--;
+                }
+            } else if (c == '.') {
+                fraction = true;
             } else {
-                return longHandler.transform(LONG_TAG, n.longValue());
+                break;
+            }
+        }
+        if (i < end) {
+            // the exponent: 'e' or 'E', an optional sign, digits
+            i++;
+            boolean negExp = false;
+            if (cs[i] == '-' || cs[i] == '+') {
+                negExp = cs[i] == '-';
+                i++;
+            }
+            if (i == end) {
+                return Double.NaN;
+            }
+            int exp = 0;
+            for (; i < end; i++) {
+                exp = exp * 10 + (cs[i] - '0');
+                if (exp > 400) {
+                    return Double.NaN;
+                }
+            }
+            scale += negExp ? -exp : exp;
+        }
+        if (m > (1L << 53)) {
+            return Double.NaN;
+        }
+        double d;
+        if (m == 0) {
+            d = 0.0;
+        } else if (scale >= 0 && scale <= 22) {
+            d = m * POWERS_OF_TEN[scale];
+        } else if (scale < 0 && scale >= -22) {
+            d = m / POWERS_OF_TEN[-scale];
+        } else {
+            return Double.NaN;
+        }
+        return negative ? -d : d;
+    }
+
+    /**
+     * Convert the digits of an integer literal in {@code cs[off..off+len)},
+     * without any leading '+' or trailing 'N', and pass the result to the
+     * configured handler. The digits are accumulated into a long, negated
+     * so that {@code Long.MIN_VALUE} fits; only a literal marked 'N' or
+     * one which overflows becomes a BigInteger.
+     */
+    Object integer(char[] cs, int off, int len, boolean bigint) {
+        if (!bigint) {
+            int i = off;
+            final int end = off + len;
+            final boolean negative = cs[i] == '-';
+            if (negative) {
+                i++;
+            }
+            final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+            final long multmin = limit / 10;
+            long n = 0;
+            for (; i < end; i++) {
+                int d = cs[i] - '0';
+                if (n < multmin) {
+                    break;
+                }
+                n *= 10;
+                if (n < limit + d) {
+                    break;
+                }
+                n -= d;
+            }
+            if (i == end) {
+                return longHandler.transform(LONG_TAG, negative ? n : -n);
             }
         }
+        final BigInteger n = new BigInteger(new String(cs, off, len));
+        return bigIntegerHandler.transform(BIG_INTEGER_TAG, n);
     }
 
     private Keyword readKeyword(Parseable pbr) throws IOException {
@@ -480,25 +690,30 @@ class ScannerImpl implements Scanner {
         } while (curr != END && !separatesTokens((char)curr));
         unread(pbr, curr);
 
-        validateUseOfSlash(b, n, p);
-        return makeSymbol(b, n, p);
+        Symbol sym = Symbol.findInterned(b);
+        if (sym != null) {
+            return sym;
+        }
+        String s = b.toString();
+        validateUseOfSlash(s, n, p);
+        return makeSymbol(s, n, p);
     }
 
-    private Symbol makeSymbol(StringBuilder b, int slashCount, int slashPos) {
+    static Symbol makeSymbol(String s, int slashCount, int slashPos) {
         if (slashCount == 0) {
-            return newSymbol(b.toString());
+            return newSymbol(s);
         } else {
             assert slashCount == 1;
             if (slashPos == 0) {
-                assert b.length() == 1 && b.charAt(0) == '/';
-                return newSymbol(b.toString());
+                assert s.length() == 1 && s.charAt(0) == '/';
+                return newSymbol(s);
             } else {
-                return newSymbol(b.substring(0, slashPos), b.substring(slashPos+1));
+                return newSymbol(s.substring(0, slashPos), s.substring(slashPos+1));
             }
         }
     }
 
-    private void validateUseOfSlash(CharSequence s, int slashCount, int lastSlashPos) {
+    static void validateUseOfSlash(CharSequence s, int slashCount, int lastSlashPos) {
         if (slashCount > 1) {
             throw new EdnSyntaxException(
                 "The name '"+ s +"' must not contain more than one '/'.");
@@ -515,8 +730,6 @@ class ScannerImpl implements Scanner {
         }
     }
 
-    private static final BigInteger MIN_LONG = BigInteger.valueOf(Long.MIN_VALUE);
-    private static final BigInteger MAX_LONG = BigInteger.valueOf(Long.MAX_VALUE);
 
 
 }
@@ -5,16 +5,13 @@ package patagonia.edn.parser;
  */
 public class Scanners {
 
-    private static final Scanner DEFAULT_SCANNER =
-        new ScannerImpl(Parsers.defaultConfiguration());
-
     /**
      * Provides a {@link Scanner}.
      *
      * @return a {@link Scanner}, never null.
      */
     public static Scanner newScanner() {
-        return DEFAULT_SCANNER;
+        return Parsers.DEFAULT_SCANNER;
     }
 
     private Scanners() {
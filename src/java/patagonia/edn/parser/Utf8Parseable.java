@@ -0,0 +1,134 @@
+package patagonia.edn.parser;
+
+import java.io.IOException;
+
+/**
+ * A {@link Parseable} over UTF-8 encoded bytes held in an array, read
+ * through an index cursor. The default {@link Scanner} recognizes it and
+ * scans the bytes directly, decoding UTF-8 only where a token can contain
+ * non-ASCII characters. {@link #read()} decodes UTF-8 for anything else
+ * which reads it.
+ *
+ * <p>Malformed UTF-8 decodes to U+FFFD, as when decoding a String.
+ * Closing a Utf8Parseable is a no-op.
+ */
+final class Utf8Parseable implements Parseable {
+
+    private static final int NONE = -2;
+
+    final byte[] buf;
+    final int limit;
+    int pos;
+
+    /**
+     * The scratch space of a Utf8Parseable until the scanner first needs
+     * some, or a parser lends it its own.
+     */
+    static final char[] NO_CHARS = new char[0];
+
+    /** Scratch space for the scanner, so tokens don't need builders. */
+    char[] chars = NO_CHARS;
+
+    /** The number the scanner last returned unboxed. */
+    long longValue;
+    double doubleValue;
+
+    private int pendingLow = NONE;
+    private int lastPos;
+    private boolean lastWasLow;
+
+    Utf8Parseable(byte[] buf, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > buf.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        this.buf = buf;
+        this.pos = offset;
+        this.limit = offset + length;
+    }
+
+    public void close() throws IOException {
+    }
+
+    public int read() throws IOException {
+        if (pendingLow != NONE) {
+            int c = pendingLow;
+            pendingLow = NONE;
+            lastWasLow = true;
+            return c;
+        }
+        lastWasLow = false;
+        lastPos = pos;
+        if (pos >= limit) {
+            return END_OF_INPUT;
+        }
+        int b = buf[pos++];
+        if (b >= 0) {
+            return b;
+        }
+        int cp = decode(b);
+        if (cp >= 0x10000) {
+            char[] pair = Character.toChars(cp);
+            pendingLow = pair[1];
+            return pair[0];
+        }
+        return cp;
+    }
+
+    public void unread(int ch) throws IOException {
+        if (lastWasLow) {
+            pendingLow = ch;
+            lastWasLow = false;
+        } else {
+            pendingLow = NONE;
+            pos = lastPos;
+        }
+    }
+
+    /**
+     * Decode the sequence whose lead byte {@code b} has just been consumed,
+     * consuming its continuation bytes. Return its code point.
+     */
+    int decode(int b) {
+        int n;
+        int cp;
+        int min;
+        if ((b & 0xe0) == 0xc0) {
+            n = 1;
+            cp = b & 0x1f;
+            min = 0x80;
+        } else if ((b & 0xf0) == 0xe0) {
+            n = 2;
+            cp = b & 0x0f;
+            min = 0x800;
+        } else if ((b & 0xf8) == 0xf0) {
+            n = 3;
+            cp = b & 0x07;
+            min = 0x10000;
+        } else {
+            return 0xfffd;
+        }
+        for (int i = 0; i < n; i++) {
+            if (pos >= limit || (buf[pos] & 0xc0) != 0x80) {
+                return 0xfffd;
+            }
+            cp = (cp << 6) | (buf[pos++] & 0x3f);
+        }
+        if (cp < min || cp > 0x10ffff || (cp >= 0xd800 && cp <= 0xdfff)) {
+            return 0xfffd;
+        }
+        return cp;
+    }
+
+    /**
+     * Make room in {@link #chars} for at least {@code n} chars, keeping the
+     * first {@code used}.
+     */
+    char[] growChars(int used, int n) {
+        if (used + n > chars.length) {
+            char[] bigger = new char[Math.max(used + n, Math.max(64, chars.length * 2))];
+            System.arraycopy(chars, 0, bigger, 0, used);
+            chars = bigger;
+        }
+        return chars;
+    }
+}
@@ -0,0 +1,470 @@
+package patagonia.edn.parser;
+
+import static patagonia.edn.Tag.newTag;
+import static patagonia.edn.util.CharClassify.isDigit;
+import static patagonia.edn.util.CharClassify.isWhitespace;
+import static patagonia.edn.util.CharClassify.separatesTokens;
+import static patagonia.edn.util.CharClassify.symbolStart;
+
+import java.nio.charset.Charset;
+
+import patagonia.edn.EdnSyntaxException;
+import patagonia.edn.Keyword;
+import patagonia.edn.Symbol;
+
+/**
+ * The part of {@link ScannerImpl} which scans a {@link Utf8Parseable}.
+ * It walks the byte array with an index instead of reading one char at
+ * a time, and only decodes UTF-8 inside string literals and in the rare
+ * symbol or character literal which isn't ASCII. Tokens are scanned
+ * exactly as {@link ScannerImpl} scans them; numbers are converted by
+ * it, so its tag handlers apply.
+ */
+class Utf8ScannerImpl {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Returned, when asked for, in place of a Long or a Double; the value
+     * itself is left in {@link Utf8Parseable#longValue} or
+     * {@link Utf8Parseable#doubleValue}.
+     */
+    static final Object LONG = new Object();
+    static final Object DOUBLE = new Object();
+
+    private final ScannerImpl owner;
+
+    Utf8ScannerImpl(ScannerImpl owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * True if the byte {@code c} ends a token. Bytes of multi-byte
+     * sequences never do.
+     */
+    private static boolean separates(int c) {
+        return c >= 0 && separatesTokens((char) c);
+    }
+
+    /**
+     * @param unboxed if true, return {@link #LONG} or {@link #DOUBLE}
+     *        for a number which would be a Long or a Double.
+     */
+    Object nextToken(Utf8Parseable p, boolean unboxed) {
+        final byte[] b = p.buf;
+        final int limit = p.limit;
+        int i = p.pos;
+        for (;;) {
+            if (i >= limit) {
+                p.pos = i;
+                return Token.END_OF_INPUT;
+            }
+            int c = b[i];
+            if (c >= 0 && isWhitespace((char) c)) {
+                i++;
+            } else if (c == ';') {
+                do {
+                    i++;
+                } while (i < limit && b[i] != '\n' && b[i] != '\r');
+            } else {
+                break;
+            }
+        }
+        int c = b[i];
+        p.pos = i + 1;
+        switch (c) {
+        case '{':
+            return Token.BEGIN_MAP;
+        case '}':
+            return Token.END_MAP_OR_SET;
+        case '[':
+            return Token.BEGIN_VECTOR;
+        case ']':
+            return Token.END_VECTOR;
+        case '(':
+            return Token.BEGIN_LIST;
+        case ')':
+            return Token.END_LIST;
+        case '"':
+            return readStringLiteral(p);
+        case ':':
+            return readKeyword(p);
+        case '#':
+            return readHashDispatched(p);
+        case '\\':
+            return readCharacterLiteral(p);
+        case '0':
+        case '1':
+        case '2':
+        case '3':
+        case '4':
+        case '5':
+        case '6':
+        case '7':
+        case '8':
+        case '9':
+            return readNumber(p, i, unboxed);
+        case '+':
+        case '-':
+            if (i + 1 < limit && b[i + 1] >= 0 && isDigit((char) b[i + 1])) {
+                return readNumber(p, i, unboxed);
+            }
+            return readSymbolOrLiteral(p, i);
+        default:
+            if (c >= 0 && symbolStart((char) c)) {
+                return readSymbolOrLiteral(p, i);
+            }
+            int cp = c >= 0 ? c : p.decode(c);
+            throw new EdnSyntaxException(
+                String.format("Unexpected character '%s', \\"+"u%04x",
+                    new String(Character.toChars(cp)), cp));
+        }
+    }
+
+    private Object readHashDispatched(Utf8Parseable p) {
+        if (p.pos >= p.limit) {
+            throw new EdnSyntaxException("Unexpected end of input following '#'");
+        }
+        switch (p.buf[p.pos]) {
+        case '{':
+            p.pos++;
+            return Token.BEGIN_SET;
+        case '_':
+            p.pos++;
+            return Token.DISCARD;
+        default:
+            return newTag(readSymbol(p, p.pos));
+        }
+    }
+
+    private Keyword readKeyword(Utf8Parseable p) {
+        final int start = p.pos;
+        if (start < p.limit) {
+            int end = scanToken(p, start);
+            Keyword k = Keyword.findInterned(p.buf, start, end - start);
+            if (k != null && !(end - start == 1 && p.buf[start] == '/')) {
+                return k;
+            }
+            p.pos = start;
+        }
+        Symbol sym = readSymbol(p, p.pos);
+        if (ScannerImpl.SLASH_SYMBOL.equals(sym)) {
+            throw new EdnSyntaxException("':/' is not a valid keyword.");
+        }
+        return Keyword.newKeyword(sym);
+    }
+
+    /**
+     * Scan a token starting at {@code start}, whose first byte is taken
+     * whatever it is, up to the next separator. Leave the cursor after it
+     * and return its end.
+     */
+    private static int scanToken(Utf8Parseable p, int start) {
+        final byte[] b = p.buf;
+        final int limit = p.limit;
+        int j = start + 1;
+        while (j < limit && !separates(b[j])) {
+            j++;
+        }
+        p.pos = j;
+        return j;
+    }
+
+    private Object readSymbolOrLiteral(Utf8Parseable p, int start) {
+        int end = scanToken(p, start);
+        byte[] b = p.buf;
+        int n = end - start;
+        if (n == 3 && b[start] == 'n' && b[start + 1] == 'i' && b[start + 2] == 'l') {
+            return Token.NIL;
+        }
+        if (n == 4 && b[start] == 't' && b[start + 1] == 'r' && b[start + 2] == 'u'
+                && b[start + 3] == 'e') {
+            return true;
+        }
+        if (n == 5 && b[start] == 'f' && b[start + 1] == 'a' && b[start + 2] == 'l'
+                && b[start + 3] == 's' && b[start + 4] == 'e') {
+            return false;
+        }
+        return symbol(p, start, end);
+    }
+
+    private Symbol readSymbol(Utf8Parseable p, int start) {
+        if (start >= p.limit) {
+            throw new EdnSyntaxException(
+                "Unexpected end of input while reading an identifier");
+        }
+        return symbol(p, start, scanToken(p, start));
+    }
+
+    private Symbol symbol(Utf8Parseable p, int start, int end) {
+        Symbol sym = Symbol.findInterned(p.buf, start, end - start);
+        if (sym != null) {
+            return sym;
+        }
+        String s = token(p, start, end);
+        int slashes = 0;
+        int slashPos = Integer.MIN_VALUE;
+        for (int k = 0; k < s.length(); k++) {
+            if (s.charAt(k) == '/') {
+                slashes++;
+                slashPos = k;
+            }
+        }
+        ScannerImpl.validateUseOfSlash(s, slashes, slashPos);
+        return ScannerImpl.makeSymbol(s, slashes, slashPos);
+    }
+
+    /**
+     * The text of {@code buf[start..end)}, copied char for char while it
+     * is ASCII, and decoded otherwise.
+     */
+    private static String token(Utf8Parseable p, int start, int end) {
+        final byte[] b = p.buf;
+        final int n = end - start;
+        char[] cs = p.growChars(0, n);
+        for (int k = 0; k < n; k++) {
+            int c = b[start + k];
+            if (c < 0) {
+                return new String(b, start, n, UTF8);
+            }
+            cs[k] = (char) c;
+        }
+        return new String(cs, 0, n);
+    }
+
+    private char readCharacterLiteral(Utf8Parseable p) {
+        int start = p.pos;
+        if (start >= p.limit) {
+            throw new EdnSyntaxException(
+                "Unexpected end of input following '\'");
+        }
+        int c = p.buf[start];
+        if (c >= 0 && isWhitespace((char) c) && c != ',') {
+            throw new EdnSyntaxException(
+                "A backslash introducing character literal must not be "+
+                "immediately followed by whitespace.");
+        }
+        int end = scanToken(p, start);
+        if (end - start == 1 && c >= 0) {
+            return (char) c;
+        }
+        String name = token(p, start, end);
+        if (name.length() == 1) {
+            return name.charAt(0);
+        }
+        return ScannerImpl.charForName(name);
+    }
+
+    /**
+     * Read a string literal, copying each run of plain ASCII in a tight
+     * loop of its own. A literal which is all plain ASCII, which is most
+     * of them, is made into a String straight from the bytes.
+     */
+    private String readStringLiteral(Utf8Parseable p) {
+        final byte[] b = p.buf;
+        final int limit = p.limit;
+        int i = plainAscii(b, p.pos, limit);
+        if (i < limit && b[i] == '"') {
+            String s = ascii(b, p.pos, i - p.pos);
+            p.pos = i + 1;
+            return s;
+        }
+        char[] cs = p.chars;
+        int n = 0;
+        int start = p.pos;
+        for (;;) {
+            // Room for the run, and for what follows it: two chars of a
+            // supplementary code point at most.
+            if (n + (i - start) + 2 > cs.length) {
+                cs = p.growChars(n, i - start + 2);
+            }
+            while (start < i) {
+                cs[n++] = (char) b[start++];
+            }
+            if (i >= limit) {
+                throw new EdnSyntaxException(
+                    "Unexpected end of input in string literal");
+            }
+            int c = b[i++];
+            if (c == '"') {
+                p.pos = i;
+                return new String(cs, 0, n);
+            } else if (c == '\\') {
+                if (i >= limit) {
+                    throw new EdnSyntaxException(
+                        "Unexpected end of input in string literal");
+                }
+                c = b[i++];
+                if (c < 0) {
+                    p.pos = i;
+                    throw new EdnSyntaxException("Unsupported '"+
+                        new String(Character.toChars(p.decode(c)))
+                        +"' escape in string");
+                }
+                cs[n++] = ScannerImpl.unescape(c);
+            } else if ((c = decode2or3(b, i - 1, limit)) >= 0) {
+                // Two or three bytes, which is everything but emoji and
+                // the like, decoded here rather than by the Parseable.
+                cs[n++] = (char) c;
+                i += c < 0x800 ? 1 : 2;
+            } else {
+                c = b[i - 1];
+                p.pos = i;
+                int cp = p.decode(c);
+                i = p.pos;
+                if (cp >= 0x10000) {
+                    n += Character.toChars(cp, cs, n);
+                } else {
+                    cs[n++] = (char) cp;
+                }
+            }
+            start = i;
+            i = plainAscii(b, i, limit);
+        }
+    }
+
+    /**
+     * The char encoded by the well-formed two or three byte sequence at
+     * {@code b[i]}, or -1 if there isn't one.
+     */
+    private static int decode2or3(byte[] b, int i, int limit) {
+        int c = b[i];
+        if ((c & 0xe0) == 0xc0) {
+            if (i + 1 < limit && (b[i + 1] & 0xc0) == 0x80 && c >= (byte) 0xc2) {
+                return ((c & 0x1f) << 6) | (b[i + 1] & 0x3f);
+            }
+        } else if ((c & 0xf0) == 0xe0) {
+            if (i + 2 < limit && (b[i + 1] & 0xc0) == 0x80 && (b[i + 2] & 0xc0) == 0x80) {
+                int ch = ((c & 0x0f) << 12) | ((b[i + 1] & 0x3f) << 6) | (b[i + 2] & 0x3f);
+                if (ch >= 0x800 && (ch < 0xd800 || ch > 0xdfff)) {
+                    return ch;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The index of the first byte in {@code b[i..limit)} which isn't
+     * ASCII, a quote or a backslash, or {@code limit}.
+     */
+    private static int plainAscii(byte[] b, int i, int limit) {
+        while (i < limit) {
+            int c = b[i];
+            if (c < 0 || c == '"' || c == '\\') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * A String of the ASCII bytes {@code b[off..off+len)}. The
+     * deprecated constructor is the one which copies them without
+     * decoding.
+     */
+    @SuppressWarnings("deprecation")
+    private static String ascii(byte[] b, int off, int len) {
+        return new String(b, 0, off, len);
+    }
+
+    private Object readNumber(Utf8Parseable p, int start, boolean unboxed) {
+        final byte[] b = p.buf;
+        final int limit = p.limit;
+        final int from = b[start] == '+' ? start + 1 : start;
+        int i = start + 1;
+        while (i < limit && isDigitByte(b[i])) {
+            i++;
+        }
+        int curr = i < limit ? b[i] : ScannerImpl.END;
+
+        if (curr == '.' || curr == 'e' || curr == 'E' || curr == 'M') {
+            if (curr == '.') {
+                do {
+                    i++;
+                } while (i < limit && isDigitByte(b[i]));
+                curr = i < limit ? b[i] : ScannerImpl.END;
+            }
+
+            if (curr == 'e' || curr == 'E') {
+                i++;
+                curr = i < limit ? b[i] : ScannerImpl.END;
+                if (curr == ScannerImpl.END) {
+                    throw new EdnSyntaxException(
+                        "Unexpected end of input in numeric literal");
+                }
+                if (!(curr == '-' || curr == '+' || isDigitByte(curr))) {
+                    throw notANumber(p, from, i);
+                }
+                do {
+                    i++;
+                } while (i < limit && isDigitByte(b[i]));
+                curr = i < limit ? b[i] : ScannerImpl.END;
+            }
+
+            final int end = i;
+            final boolean decimal = (curr == 'M');
+            if (decimal) {
+                i++;
+                curr = i < limit ? b[i] : ScannerImpl.END;
+            }
+
+            if (curr != ScannerImpl.END && !separates(curr)) {
+                throw notANumber(p, from, i);
+            }
+            p.pos = i;
+            if (unboxed && !decimal) {
+                p.doubleValue = ScannerImpl.toDouble(ascii(p, from, end), 0, end - from);
+                return DOUBLE;
+            }
+            return owner.floatingPoint(ascii(p, from, end), 0, end - from, decimal);
+        } else {
+            final int end = i;
+            final boolean bigint = (curr == 'N');
+            if (bigint) {
+                i++;
+                curr = i < limit ? b[i] : ScannerImpl.END;
+            }
+
+            if (curr != ScannerImpl.END && !separates(curr)) {
+                throw notANumber(p, from, i);
+            }
+            p.pos = i;
+            // Up to 18 digits always fit.
+            if (unboxed && !bigint && end - from <= 18) {
+                final boolean negative = b[from] == '-';
+                long n = 0;
+                for (int k = negative ? from + 1 : from; k < end; k++) {
+                    n = n * 10 + (b[k] - '0');
+                }
+                p.longValue = negative ? -n : n;
+                return LONG;
+            }
+            return owner.integer(ascii(p, from, end), 0, end - from, bigint);
+        }
+    }
+
+    /**
+     * Copy {@code buf[start..end)}, which is known to be ASCII, into the
+     * parseable's scratch chars.
+     */
+    private static char[] ascii(Utf8Parseable p, int start, int end) {
+        final byte[] b = p.buf;
+        final int n = end - start;
+        char[] cs = p.growChars(0, n);
+        for (int k = 0; k < n; k++) {
+            cs[k] = (char) b[start + k];
+        }
+        return cs;
+    }
+
+    private static boolean isDigitByte(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static EdnSyntaxException notANumber(Utf8Parseable p, int from, int bad) {
+        return new EdnSyntaxException(
+            "Not a number: '"+ new String(p.buf, from, bad - from + 1, UTF8) +"'.");
+    }
+}
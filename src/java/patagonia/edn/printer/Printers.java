@@ -1,6 +1,7 @@
 package patagonia.edn.printer;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
 import java.io.Closeable;
 import java.math.BigDecimal;
@@ -99,6 +100,11 @@ public class Printers {
         return new Printer() {
             int softspace = 0;
 
+            // The class printed last and its Fn. Collections are
+            // mostly of one class, so this usually spares the lookup.
+            Class<?> lastClass;
+            Printer.Fn<Object> lastFn;
+
             public void close() {
                 if (out instanceof Closeable) {
                     try {
@@ -137,13 +143,21 @@ public class Printers {
             }
 
             public Printer printValue(Object ednValue) {
-                @SuppressWarnings("unchecked")
-                Printer.Fn<Object> printFn = (Printer.Fn<Object>)
-                    fns.lookup(getClassOrNull(ednValue));
-                if (printFn == null) {
-                    throw new EdnException(String.format(
-                            "Don't know how to write '%s' of type '%s'",
-                            ednValue, getClassOrNull(ednValue)));
+                Class<?> c = getClassOrNull(ednValue);
+                Printer.Fn<Object> printFn;
+                if (c == lastClass && c != null) {
+                    printFn = lastFn;
+                } else {
+                    @SuppressWarnings("unchecked")
+                    Printer.Fn<Object> fn = (Printer.Fn<Object>) fns.lookup(c);
+                    if (fn == null) {
+                        throw new EdnException(String.format(
+                                "Don't know how to write '%s' of type '%s'",
+                                ednValue, c));
+                    }
+                    printFn = fn;
+                    lastClass = c;
+                    lastFn = fn;
                 }
                 printFn.eval(ednValue, this);
                 return this;
@@ -157,6 +171,72 @@ public class Printers {
         };
     }
 
+    /**
+     * Return a new Printer with the default printing protocol, which
+     * encodes what it prints as UTF-8 straight into {@code out}, without
+     * building Strings for the keywords, symbols, strings and integers
+     * it prints. {@link Printer#close()} does nothing.
+     *
+     * @param out to which values will be printed. Never null.
+     *
+     * @return a Printer with default configuration, never null.
+     */
+    public static Printer newUtf8Printer(final Utf8Output out) {
+        return newUtf8Printer(defaultPrinterProtocol(), out);
+    }
+
+    /**
+     * Return a new Printer with the printing protocol given as {@code
+     * fns}, which encodes what it prints as UTF-8 straight into {@code
+     * out}.
+     *
+     * @param fns a Protocol which knows how to print all the classes
+     *        of objects that we'll be asking our Printer to print.
+     *        Never null.
+     * @param out to which values will be printed. Never null.
+     *
+     * @return a Printer, never null.
+     */
+    public static Printer newUtf8Printer(final Protocol<Printer.Fn<?>> fns,
+                                         final Utf8Output out) {
+        return new Utf8Printer(fns, out, null);
+    }
+
+    /**
+     * Return a new Printer with the default printing protocol, which
+     * encodes what it prints as UTF-8 into a buffer, and writes the
+     * buffer to {@code out} after each top-level value.
+     * {@link Printer#close()} will close {@code out}.
+     *
+     * @param out to which values will be printed. Never null.
+     *
+     * @return a Printer with default configuration, never null.
+     */
+    public static Printer newUtf8Printer(final OutputStream out) {
+        return newUtf8Printer(defaultPrinterProtocol(), out);
+    }
+
+    /**
+     * Return a new Printer with the printing protocol given as {@code
+     * fns}, which encodes what it prints as UTF-8 into a buffer, and
+     * writes the buffer to {@code out} after each top-level value.
+     * {@link Printer#close()} will close {@code out}.
+     *
+     * @param fns a Protocol which knows how to print all the classes
+     *        of objects that we'll be asking our Printer to print.
+     *        Never null.
+     * @param out to which values will be printed. Never null.
+     *
+     * @return a Printer, never null.
+     */
+    public static Printer newUtf8Printer(final Protocol<Printer.Fn<?>> fns,
+                                         final OutputStream out) {
+        if (out == null) {
+            throw new NullPointerException();
+        }
+        return new Utf8Printer(fns, new Utf8Output(), out);
+    }
+
     static Class<?> getClassOrNull(Object o) {
         return o == null ? null : o.getClass();
     }
@@ -219,14 +299,19 @@ public class Printers {
         return protocolBuilder;
     }
 
+    private static final Protocol<Printer.Fn<?>> DEFAULT_PRINTER_PROTOCOL =
+            defaultProtocolBuilder().build();
+
     /**
      * Return the default printer {@link Protocol}. This is equivalent
-     * to {@code defaultProtocolBuilder().build()}.
+     * to {@code defaultProtocolBuilder().build()}, except that it is
+     * built once and shared: Protocols are immutable, and their lookups
+     * don't lock, so every printer on every thread can use it.
      *
      * @return the default printing {@link Protocol}, never null.
      */
     public static Protocol<Printer.Fn<?>> defaultPrinterProtocol() {
-        return defaultProtocolBuilder().build();
+        return DEFAULT_PRINTER_PROTOCOL;
     }
 
 
@@ -318,39 +403,43 @@ public class Printers {
         };
     }
 
+    /**
+     * For each ASCII char, the char which follows a backslash to escape
+     * it in a string literal, or 0 if it's printed as it is.
+     */
+    static final char[] STRING_ESCAPES = new char[128];
+    static {
+        STRING_ESCAPES['"'] = '"';
+        STRING_ESCAPES['\b'] = 'b';
+        STRING_ESCAPES['\t'] = 't';
+        STRING_ESCAPES['\n'] = 'n';
+        STRING_ESCAPES['\r'] = 'r';
+        STRING_ESCAPES['\f'] = 'f';
+        STRING_ESCAPES['\\'] = '\\';
+    }
+
     static Printer.Fn<CharSequence> writeCharSequenceFn() {
         return new Printer.Fn<CharSequence>() {
             @Override
             public void eval(CharSequence self, Printer writer) {
+                final char[] escapes = STRING_ESCAPES;
+                final int n = self.length();
                 writer.append('"');
-                for (int i = 0; i < self.length(); i++) {
+                // Append the runs between escapes whole.
+                int start = 0;
+                for (int i = 0; i < n; i++) {
                     final char c = self.charAt(i);
-                    switch (c) {
-                    case '"':
-                        writer.append('\\').append('"');
-                        break;
-                    case '\b':
-                        writer.append('\\').append('b');
-                        break;
-                    case '\t':
-                        writer.append('\\').append('t');
-                        break;
-                    case '\n':
-                        writer.append('\\').append('n');
-                        break;
-                    case '\r':
-                        writer.append('\\').append('r');
-                        break;
-                    case '\f':
-                        writer.append('\\').append('f');
-                        break;
-                    case '\\':
-                        writer.append('\\').append('\\');
-                        break;
-                    default:
-                        writer.append(c);
+                    if (c < 0x80 && escapes[c] != 0) {
+                        if (start < i) {
+                            writer.append(self.subSequence(start, i));
+                        }
+                        writer.append('\\').append(escapes[c]);
+                        start = i + 1;
                     }
                 }
+                if (start < n) {
+                    writer.append(start == 0 ? self : self.subSequence(start, n));
+                }
                 writer.append('"');
             }
         };
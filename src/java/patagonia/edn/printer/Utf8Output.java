@@ -0,0 +1,242 @@
+package patagonia.edn.printer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link Appendable} which encodes everything appended to it as UTF-8
+ * into a growable byte array. A printer made by
+ * {@link Printers#newUtf8Printer(Utf8Output)} writes to one directly;
+ * any other printer can append to it too, without first building a
+ * String.
+ *
+ * <p>A Utf8Output can be {@linkplain #reset() reset} and reused, which
+ * keeps its backing array. Like {@link Printer}, it should only be used
+ * from a single thread.
+ */
+public final class Utf8Output implements Appendable {
+
+    private static final int RUN = 256;
+
+    private byte[] buf;
+    private int count;
+    private char highSurrogate;
+
+    public Utf8Output(int initialCapacity) {
+        this.buf = new byte[Math.max(16, initialCapacity)];
+    }
+
+    public Utf8Output() {
+        this(256);
+    }
+
+    public Utf8Output append(CharSequence csq) {
+        return append(csq, 0, csq.length());
+    }
+
+    public Utf8Output append(CharSequence csq, int start, int end) {
+        ensureCapacity(end - start);
+        for (int i = start; i < end; i++) {
+            char c = csq.charAt(i);
+            if (c < 0x80 && highSurrogate == 0) {
+                if (count == buf.length) {
+                    ensureCapacity(end - i);
+                }
+                buf[count++] = (byte) c;
+            } else {
+                encode(c);
+            }
+        }
+        return this;
+    }
+
+    public Utf8Output append(char c) {
+        if (c < 0x80 && highSurrogate == 0) {
+            if (count == buf.length) {
+                ensureCapacity(1);
+            }
+            buf[count++] = (byte) c;
+        } else {
+            encode(c);
+        }
+        return this;
+    }
+
+    /**
+     * Append raw bytes, which the caller promises are already valid
+     * UTF-8.
+     */
+    public Utf8Output write(byte[] b, int off, int len) {
+        flushSurrogate();
+        ensureCapacity(len);
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+        return this;
+    }
+
+    /**
+     * Append {@code s} as the inside of an edn string literal: an ASCII
+     * char {@code c} for which {@code escapes[c]} isn't 0 is written as a
+     * backslash followed by that. Room is made once for each run of up
+     * to {@link #RUN} chars, rather than for each char.
+     */
+    void appendEscaped(CharSequence s, char[] escapes) {
+        flushSurrogate();
+        final int n = s.length();
+        int i = 0;
+        while (i < n) {
+            final int end = Math.min(n, i + RUN);
+            // Three bytes a char at most, and one more in case the run
+            // ends with the first half of a surrogate pair.
+            ensureCapacity(3 * (end - i) + 1);
+            final byte[] b = buf;
+            int k = count;
+            for (; i < end; i++) {
+                final char c = s.charAt(i);
+                if (c < 0x80) {
+                    final char e = escapes[c];
+                    if (e == 0) {
+                        b[k++] = (byte) c;
+                    } else {
+                        b[k++] = '\\';
+                        b[k++] = (byte) e;
+                    }
+                } else if (c < 0x800) {
+                    b[k++] = (byte) (0xc0 | (c >> 6));
+                    b[k++] = (byte) (0x80 | (c & 0x3f));
+                } else if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+                    b[k++] = (byte) (0xe0 | (c >> 12));
+                    b[k++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    b[k++] = (byte) (0x80 | (c & 0x3f));
+                } else if (Character.isHighSurrogate(c) && i + 1 < n
+                        && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    final int cp = Character.toCodePoint(c, s.charAt(++i));
+                    b[k++] = (byte) (0xf0 | (cp >> 18));
+                    b[k++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                    b[k++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                    b[k++] = (byte) (0x80 | (cp & 0x3f));
+                } else {
+                    b[k++] = '?';
+                }
+            }
+            count = k;
+        }
+    }
+
+    private void encode(char c) {
+        if (highSurrogate != 0) {
+            char hi = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                encodeCodePoint(Character.toCodePoint(hi, c));
+                return;
+            }
+            put1('?');
+        }
+        if (c < 0x80) {
+            put1(c);
+        } else if (c < 0x800) {
+            ensureCapacity(2);
+            buf[count++] = (byte) (0xc0 | (c >> 6));
+            buf[count++] = (byte) (0x80 | (c & 0x3f));
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            put1('?');
+        } else {
+            ensureCapacity(3);
+            buf[count++] = (byte) (0xe0 | (c >> 12));
+            buf[count++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+            buf[count++] = (byte) (0x80 | (c & 0x3f));
+        }
+    }
+
+    private void encodeCodePoint(int cp) {
+        ensureCapacity(4);
+        buf[count++] = (byte) (0xf0 | (cp >> 18));
+        buf[count++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+        buf[count++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+        buf[count++] = (byte) (0x80 | (cp & 0x3f));
+    }
+
+    private void put1(int b) {
+        ensureCapacity(1);
+        buf[count++] = (byte) b;
+    }
+
+    /**
+     * A dangling high surrogate can't be completed any more; encode it
+     * as '?', as {@link String#getBytes(String)} would.
+     */
+    private void flushSurrogate() {
+        if (highSurrogate != 0) {
+            highSurrogate = 0;
+            put1('?');
+        }
+    }
+
+    private void ensureCapacity(int extra) {
+        int needed = count + extra;
+        if (needed > buf.length) {
+            byte[] bigger = new byte[Math.max(needed, buf.length << 1)];
+            System.arraycopy(buf, 0, bigger, 0, count);
+            buf = bigger;
+        }
+    }
+
+    /**
+     * The number of bytes encoded so far.
+     */
+    public int size() {
+        flushSurrogate();
+        return count;
+    }
+
+    /**
+     * The capacity of the backing array.
+     */
+    public int capacity() {
+        return buf.length;
+    }
+
+    /**
+     * Discard the contents, keeping the backing array for reuse.
+     */
+    public void reset() {
+        count = 0;
+        highSurrogate = 0;
+    }
+
+    /**
+     * Return a ByteBuffer view of the bytes encoded so far. The view
+     * shares the backing array and is invalidated by further appends
+     * or {@link #reset()}.
+     */
+    public ByteBuffer asByteBuffer() {
+        flushSurrogate();
+        return ByteBuffer.wrap(buf, 0, count);
+    }
+
+    public byte[] toByteArray() {
+        flushSurrogate();
+        byte[] copy = new byte[count];
+        System.arraycopy(buf, 0, copy, 0, count);
+        return copy;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        flushSurrogate();
+        out.write(buf, 0, count);
+    }
+
+    @Override
+    public String toString() {
+        flushSurrogate();
+        try {
+            return new String(buf, 0, count, "UTF-8");
+        } catch (java.io.UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
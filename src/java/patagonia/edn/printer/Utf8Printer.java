@@ -0,0 +1,303 @@
+package patagonia.edn.printer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.UUID;
+
+import patagonia.edn.EdnException;
+import patagonia.edn.EdnIOException;
+import patagonia.edn.Keyword;
+import patagonia.edn.Symbol;
+import patagonia.edn.parser.DoubleVector;
+import patagonia.edn.parser.InstantUtils;
+import patagonia.edn.parser.LazyValue;
+import patagonia.edn.parser.LongVector;
+import patagonia.edn.parser.Parser;
+import patagonia.edn.protocols.Protocol;
+import patagonia.edn.util.CharClassify;
+
+/**
+ * A {@link Printer} which encodes straight into a {@link Utf8Output},
+ * and from there, optionally, into an {@link OutputStream}.
+ *
+ * <p>With the default protocol, nil, booleans, integers, strings,
+ * keywords, symbols, UUIDs, Dates and Timestamps are written without
+ * going through their {@link Printer.Fn}s: keywords and symbols by
+ * copying their cached UTF-8 bytes, the others by encoding them in
+ * place. The elements of {@link LongVector}s and {@link DoubleVector}s
+ * are written without boxing them. The integers are encoded in place;
+ * the doubles are formatted into a reused buffer, so they don't need a
+ * String each, but the JDK's formatting may still allocate. A {@link LazyValue} is written by
+ * copying its source, unparsed. Apart from that, the output is the same
+ * as that of a printer made by {@link Printers#newPrinter(Appendable)}.
+ * With any other protocol, or for any other class, the protocol decides
+ * as usual.
+ *
+ * <p>A printer writing to a stream writes the buffered bytes out after
+ * each top-level value, and when it is closed.
+ */
+final class Utf8Printer implements Printer {
+
+    private static final byte[] NIL = { 'n', 'i', 'l' };
+    private static final byte[] TRUE = { 't', 'r', 'u', 'e' };
+    private static final byte[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+    private static final byte[] HEX = {
+        '0', '1', '2', '3', '4', '5', '6', '7',
+        '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+    };
+
+    private final Protocol<Printer.Fn<?>> fns;
+    private final boolean defaults;
+    private final Utf8Output out;
+    private final OutputStream stream;
+    private final byte[] scratch = new byte[36];
+    private final char[] chars = new char[35];
+    // Doubles are formatted here rather than into a String each.
+    private final StringBuilder number = new StringBuilder(24);
+    private int softspace = 0;
+    private int depth = 0;
+
+    private Class<?> lastClass;
+    private Printer.Fn<Object> lastFn;
+
+    Utf8Printer(Protocol<Printer.Fn<?>> fns, Utf8Output out, OutputStream stream) {
+        this.fns = fns;
+        this.defaults = fns == Printers.defaultPrinterProtocol();
+        this.out = out;
+        this.stream = stream;
+    }
+
+    public void close() {
+        if (stream != null) {
+            try {
+                flush();
+                stream.close();
+            } catch (IOException e) {
+                throw new EdnIOException(e);
+            }
+        }
+    }
+
+    private void flush() throws IOException {
+        out.writeTo(stream);
+        out.reset();
+    }
+
+    public Printer append(CharSequence csq) {
+        if (softspace > 1 && csq.length() > 0 &&
+                !CharClassify.isWhitespace(csq.charAt(0))) {
+            out.append(' ');
+        }
+        softspace = 0;
+        out.append(csq);
+        return this;
+    }
+
+    public Printer append(char c) {
+        if (softspace > 1 && !CharClassify.isWhitespace(c)) {
+            out.append(' ');
+        }
+        softspace = 0;
+        out.append(c);
+        return this;
+    }
+
+    public Printer softspace() {
+        softspace += 1;
+        return this;
+    }
+
+    public Printer printValue(Object ednValue) {
+        depth++;
+        try {
+            if (!defaults || !printDirectly(ednValue)) {
+                printWithProtocol(ednValue);
+            }
+        } finally {
+            depth--;
+        }
+        if (depth == 0 && stream != null) {
+            try {
+                flush();
+            } catch (IOException e) {
+                throw new EdnIOException(e);
+            }
+        }
+        return this;
+    }
+
+    private void printWithProtocol(Object ednValue) {
+        Class<?> c = ednValue == null ? null : ednValue.getClass();
+        Printer.Fn<Object> printFn;
+        if (c == lastClass && c != null) {
+            printFn = lastFn;
+        } else {
+            @SuppressWarnings("unchecked")
+            Printer.Fn<Object> fn = (Printer.Fn<Object>) fns.lookup(c);
+            if (fn == null) {
+                throw new EdnException(String.format(
+                        "Don't know how to write '%s' of type '%s'",
+                        ednValue, c));
+            }
+            printFn = fn;
+            lastClass = c;
+            lastFn = fn;
+        }
+        printFn.eval(ednValue, this);
+    }
+
+    /**
+     * Print the values whose default Fns this printer knows how to
+     * replace. Return false for anything else.
+     */
+    private boolean printDirectly(Object ednValue) {
+        if (ednValue == null) {
+            word(NIL);
+            return true;
+        }
+        Class<?> c = ednValue.getClass();
+        if (c == Keyword.class) {
+            word(((Keyword) ednValue).toUtf8());
+        } else if (c == String.class) {
+            string((String) ednValue);
+        } else if (c == Long.class || c == Integer.class
+                || c == Short.class || c == Byte.class) {
+            integer(((Number) ednValue).longValue());
+        } else if (c == Boolean.class) {
+            word(((Boolean) ednValue) ? TRUE : FALSE);
+        } else if (c == Symbol.class) {
+            word(((Symbol) ednValue).toUtf8());
+        } else if (c == UUID.class) {
+            word(Parser.Config.EDN_UUID.toUtf8());
+            uuid((UUID) ednValue);
+        } else if (c == Date.class || c == Timestamp.class) {
+            return instant(ednValue);
+        } else if (c == LongVector.class) {
+            LongVector v = (LongVector) ednValue;
+            append('[');
+            for (int i = 0, n = v.size(); i < n; i++) {
+                integer(v.getLong(i));
+            }
+            append(']');
+        } else if (c == DoubleVector.class) {
+            DoubleVector v = (DoubleVector) ednValue;
+            append('[');
+            for (int i = 0, n = v.size(); i < n; i++) {
+                decimal(v.getDouble(i));
+            }
+            append(']');
+        } else if (ednValue instanceof LazyValue) {
+            ByteBuffer b = ((LazyValue) ednValue).getSource();
+            append((char) b.get(b.position()));
+            out.write(b.array(), b.arrayOffset() + b.position() + 1, b.remaining() - 1);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Write a token which must be kept apart from its neighbours, as
+     * {@code softspace().append(token).softspace()} would.
+     */
+    private void word(byte[] token) {
+        if (softspace > 0) {
+            out.append(' ');
+        }
+        out.write(token, 0, token.length);
+        softspace = 1;
+    }
+
+    private void integer(long n) {
+        byte[] b = scratch;
+        int i = b.length;
+        // Accumulate negatively, so that Long.MIN_VALUE needs no care.
+        long m = n < 0 ? n : -n;
+        do {
+            b[--i] = (byte) ('0' - (m % 10));
+            m /= 10;
+        } while (m != 0);
+        if (n < 0) {
+            b[--i] = '-';
+        }
+        if (softspace > 0) {
+            out.append(' ');
+        }
+        out.write(b, i, b.length - i);
+        softspace = 1;
+    }
+
+    /**
+     * Write a double as {@code String.valueOf} would, through a builder
+     * kept for the purpose.
+     */
+    private void decimal(double d) {
+        StringBuilder b = number;
+        b.setLength(0);
+        b.append(d);
+        if (softspace > 0) {
+            out.append(' ');
+        }
+        out.append(b);
+        softspace = 1;
+    }
+
+    private void string(String s) {
+        append('"');
+        out.appendEscaped(s, Printers.STRING_ESCAPES);
+        out.append('"');
+    }
+
+    /**
+     * Write a Date or Timestamp, unless it's too far in the past or
+     * future to be formatted in place.
+     */
+    private boolean instant(Object ednValue) {
+        final char[] cs = chars;
+        int n = ednValue instanceof Timestamp
+            ? InstantUtils.formatTimestamp((Timestamp) ednValue, cs)
+            : InstantUtils.formatDate((Date) ednValue, cs);
+        if (n < 0) {
+            return false;
+        }
+        byte[] b = scratch;
+        for (int i = 0; i < n; i++) {
+            b[i] = (byte) cs[i];
+        }
+        word(Parser.Config.EDN_INSTANT.toUtf8());
+        append('"');
+        out.write(b, 0, n);
+        out.append('"');
+        return true;
+    }
+
+    private void uuid(UUID u) {
+        byte[] b = scratch;
+        hex(b, 0, u.getMostSignificantBits() >>> 32, 8);
+        b[8] = '-';
+        hex(b, 9, u.getMostSignificantBits() >>> 16, 4);
+        b[13] = '-';
+        hex(b, 14, u.getMostSignificantBits(), 4);
+        b[18] = '-';
+        hex(b, 19, u.getLeastSignificantBits() >>> 48, 4);
+        b[23] = '-';
+        hex(b, 24, u.getLeastSignificantBits(), 12);
+        append('"');
+        out.write(b, 0, 36);
+        out.append('"');
+    }
+
+    /**
+     * Write the low {@code digits} hex digits of {@code v} into
+     * {@code b} at {@code off}.
+     */
+    private static void hex(byte[] b, int off, long v, int digits) {
+        for (int i = off + digits - 1; i >= off; i--) {
+            b[i] = HEX[(int) (v & 0xf)];
+            v >>>= 4;
+        }
+    }
+}
@@ -48,6 +48,14 @@ public class Protocols {
         final Map<Class<?>, F> m = new HashMap<Class<?>, F>();
         boolean built = false;
 
+        /**
+         * Every class looked up so far, mapped to its F. Lookups read it
+         * without locking; a class seen for the first time is resolved
+         * and added to a copy, which then replaces it. Misses only happen
+         * once per class, so the copying is soon over.
+         */
+        volatile Map<Class<?>, F> resolved;
+
         public String toString() {
             if (built) {
                 return "Protocol '" + name + "'";
@@ -83,6 +91,7 @@ public class Protocols {
                 throw new IllegalStateException(SINGLE_USE_MSG);
             }
             built = true;
+            resolved = new HashMap<Class<?>, F>(m);
             return this;
         }
 
@@ -96,21 +105,33 @@ public class Protocols {
             if (selfClass == null) {
                 return nullFn;
             }
-            synchronized (m) {
-                F fn;
-                fn = m.get(selfClass);
+            Map<Class<?>, F> r = resolved;
+            if (r != null) {
+                F fn = r.get(selfClass);
                 if (fn != null) {
                     return fn;
                 }
-                for (Class<?> c: butfirst(methodResolutionOrder(selfClass))) {
-                    fn = m.get(c);
-                    if (fn != null) {
-                        m.put(selfClass, fn);
-                        return fn;
-                    }
+            }
+            return resolve(selfClass);
+        }
+
+        private F resolve(Class<?> selfClass) {
+            F fn = null;
+            for (Class<?> c: butfirst(methodResolutionOrder(selfClass))) {
+                fn = m.get(c);
+                if (fn != null) {
+                    break;
                 }
-                return null;
             }
+            if (fn == null || !built) {
+                return fn;
+            }
+            synchronized (m) {
+                Map<Class<?>, F> r = new HashMap<Class<?>, F>(resolved);
+                r.put(selfClass, fn);
+                resolved = r;
+            }
+            return fn;
         }
     }
 
@@ -0,0 +1,613 @@
+package patagonia.edn.schema;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import patagonia.edn.EdnException;
+import patagonia.edn.Keyword;
+import patagonia.edn.parser.EventReader;
+import patagonia.edn.parser.EventReader.Event;
+import patagonia.edn.parser.Parseable;
+import patagonia.edn.parser.Parser;
+import patagonia.edn.parser.Parsers;
+import patagonia.edn.printer.Printer;
+
+/**
+ * A Schema binds the entries of an edn map with a fixed shape, such as
+ * a packet envelope, to the fields of a class, so that messages of that
+ * shape can be read into, and printed from, plain objects rather than
+ * Maps.
+ *
+ * <p>Each entry is bound to a field by its keyword, and read and
+ * printed according to the field's type, which is looked up once, when
+ * the schema is built:
+ * <ul>
+ * <li>{@code long}, {@code int}, {@code double} and {@code boolean}
+ *     fields are read and written without going through a boxed
+ *     field value, and {@code long[]} and {@code double[]} fields as
+ *     vectors of their elements.</li>
+ * <li>A field bound with a nested schema holds a map of that schema's
+ *     shape, and a field of an array or List of the nested schema's
+ *     class holds a vector of such maps.</li>
+ * <li>Any other field holds whatever a {@link Parser} would have parsed
+ *     for the entry, which must be an instance of the field's type, or
+ *     nil.</li>
+ * </ul>
+ *
+ * <p>Reading goes through an {@link EventReader}, so no Map is built
+ * for the message or the nested schemas it holds, and entries without a
+ * binding are skipped unparsed. Entries missing from a message leave
+ * their fields as the class's no-argument constructor set them.
+ * Printing goes field by field, in the order the fields were bound,
+ * without looking the object's class up in the printer's protocol; the
+ * protocol can still print instances found inside other values if
+ * {@link #printFn()} is registered for the class. Keys, nil and the
+ * values of primitive fields and arrays are appended as text, without
+ * boxing them or looking them up either; only the values of other
+ * fields go through the protocol.
+ *
+ * <pre>
+ * {@code Schema<Entity> ENTITY = Schema.builder(Entity.class)
+ *     .field("entity/id", "id")
+ *     .field("pos", "pos")
+ *     .build();
+ * Schema<Push> PUSH = Schema.builder(Push.class)
+ *     .field("tag", "tag")
+ *     .field("game/entities", "entities", ENTITY)
+ *     .build();}
+ * </pre>
+ *
+ * <p>A Schema is immutable and thread-safe. The class it binds needs a
+ * no-argument constructor, which may be private.
+ */
+public final class Schema<T> {
+
+    private final Class<T> type;
+    private final Constructor<T> constructor;
+    private final Slot[] slots;
+    private final Map<Keyword, Slot> byKey;
+
+    private Schema(Builder<T> b) {
+        this.type = b.type;
+        this.constructor = b.constructor;
+        this.slots = b.slots.values().toArray(new Slot[b.slots.size()]);
+        this.byKey = new HashMap<Keyword, Slot>(b.slots);
+    }
+
+    public static <T> Builder<T> builder(Class<T> type) {
+        return new Builder<T>(type);
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * Read the next value of {@code pbr}, which must be a map of this
+     * schema's shape or nil, using the default configuration.
+     *
+     * @return the object read, or null for nil.
+     *
+     * @throws EdnException if the value is not such a map, or is missing
+     *         at the end of input.
+     */
+    public T read(Parseable pbr) {
+        return read(Parsers.newEventReader(Parsers.defaultConfiguration(), pbr));
+    }
+
+    /**
+     * Read the next value of {@code r}, which must be a map of this
+     * schema's shape or nil. The reader is left after the end of the
+     * map, so several messages, or a message within a larger value, can
+     * be read from it.
+     *
+     * @return the object read, or null for nil.
+     */
+    public T read(EventReader r) {
+        return read(r, r.next());
+    }
+
+    T read(EventReader r, Event e) {
+        if (e == Event.VALUE && r.getValue() == null) {
+            return null;
+        }
+        if (e != Event.BEGIN_MAP) {
+            throw new EdnException("Expected a map for " + type.getName()
+                                   + ", but found " + describe(r, e));
+        }
+        T o = newInstance();
+        for (;;) {
+            e = r.next();
+            if (e == Event.END_COLLECTION) {
+                return o;
+            }
+            Slot s = e == Event.KEY ? byKey.get(r.getValue()) : null;
+            if (s != null) {
+                s.read(r, o);
+            } else {
+                if (e != Event.KEY) {
+                    r.skipCollection();
+                }
+                r.skipValue();
+            }
+        }
+    }
+
+    /**
+     * Print {@code o}, which may be null, as a map of this schema's
+     * shape.
+     *
+     * @return {@code p}
+     */
+    public Printer write(T o, Printer p) {
+        if (o == null) {
+            return token(p, "nil");
+        }
+        p.append('{');
+        try {
+            for (Slot s : slots) {
+                token(p, s.keyText);
+                s.write(p, o);
+            }
+        } catch (IllegalAccessException e) {
+            throw new EdnException(e);
+        }
+        return p.append('}');
+    }
+
+    /**
+     * A function printing instances of this schema's class, for
+     * registering with a printer's protocol.
+     */
+    public Printer.Fn<T> printFn() {
+        return new Printer.Fn<T>() {
+            public void eval(T self, Printer printer) {
+                write(self, printer);
+            }
+        };
+    }
+
+    private T newInstance() {
+        try {
+            return constructor.newInstance();
+        } catch (InstantiationException e) {
+            throw new EdnException(e);
+        } catch (IllegalAccessException e) {
+            throw new EdnException(e);
+        } catch (InvocationTargetException e) {
+            throw new EdnException(e.getCause());
+        }
+    }
+
+    static String describe(EventReader r, Event e) {
+        switch (e) {
+        case KEY:
+        case VALUE:
+            Object v = r.getValue();
+            return v == null ? "nil" : v.getClass().getName() + " " + v;
+        default:
+            return e.toString();
+        }
+    }
+
+    public static final class Builder<T> {
+        private final Class<T> type;
+        private final Constructor<T> constructor;
+        private final Map<Keyword, Slot> slots = new LinkedHashMap<Keyword, Slot>();
+
+        private Builder(Class<T> type) {
+            this.type = type;
+            try {
+                this.constructor = type.getDeclaredConstructor();
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException(
+                    type.getName() + " has no no-argument constructor");
+            }
+            this.constructor.setAccessible(true);
+        }
+
+        /**
+         * Bind the entry whose key is the keyword {@code key}, written
+         * without its colon as in "name" or "prefix/name", to the field
+         * {@code fieldName}, declared by the class or a superclass.
+         *
+         * @throws IllegalArgumentException if there is no such field,
+         *         the field is static or final, or the key is already
+         *         bound.
+         */
+        public Builder<T> field(String key, String fieldName) {
+            Field f = find(fieldName);
+            return bind(key, slot(keyword(key), f));
+        }
+
+        /**
+         * Bind the entry whose key is {@code key} to the field
+         * {@code fieldName}, which holds either an instance of
+         * {@code nested}'s class, or an array or List of them.
+         */
+        public Builder<T> field(String key, String fieldName, Schema<?> nested) {
+            Field f = find(fieldName);
+            Class<?> c = f.getType();
+            Keyword k = keyword(key);
+            Slot s;
+            if (c == nested.type) {
+                s = new NestedSlot(k, f, nested);
+            } else if (c.isArray() && c.getComponentType() == nested.type) {
+                s = new NestedArraySlot(k, f, nested, true);
+            } else if (c == List.class) {
+                s = new NestedArraySlot(k, f, nested, false);
+            } else {
+                throw new IllegalArgumentException(
+                    "Field " + fieldName + " can't hold a " + nested.type.getName());
+            }
+            return bind(key, s);
+        }
+
+        public Schema<T> build() {
+            return new Schema<T>(this);
+        }
+
+        private Builder<T> bind(String key, Slot s) {
+            if (slots.containsKey(s.key)) {
+                throw new IllegalArgumentException(":" + key + " is already bound");
+            }
+            slots.put(s.key, s);
+            return this;
+        }
+
+        private Field find(String fieldName) {
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                try {
+                    Field f = c.getDeclaredField(fieldName);
+                    if ((f.getModifiers() & (Modifier.STATIC | Modifier.FINAL)) != 0) {
+                        throw new IllegalArgumentException(
+                            "Field " + fieldName + " is static or final");
+                    }
+                    f.setAccessible(true);
+                    return f;
+                } catch (NoSuchFieldException e) {
+                    // Look in the superclass.
+                }
+            }
+            throw new IllegalArgumentException(
+                type.getName() + " has no field " + fieldName);
+        }
+
+        private static Keyword keyword(String key) {
+            int slash = key.indexOf('/');
+            return slash > 0 && key.length() > 1
+                ? Keyword.newKeyword(key.substring(0, slash), key.substring(slash + 1))
+                : Keyword.newKeyword(key);
+        }
+
+        private static Slot slot(Keyword k, Field f) {
+            Class<?> c = f.getType();
+            if (c == long.class) {
+                return new LongSlot(k, f);
+            } else if (c == int.class) {
+                return new IntSlot(k, f);
+            } else if (c == double.class) {
+                return new DoubleSlot(k, f);
+            } else if (c == boolean.class) {
+                return new BooleanSlot(k, f);
+            } else if (c == long[].class) {
+                return new LongArraySlot(k, f);
+            } else if (c == double[].class) {
+                return new DoubleArraySlot(k, f);
+            } else if (c.isPrimitive()) {
+                throw new IllegalArgumentException(
+                    "Field " + f.getName() + " is a " + c + ", which has no edn form");
+            }
+            return new ObjectSlot(k, f);
+        }
+    }
+
+    /**
+     * The binding of one entry to one field.
+     */
+    /**
+     * Append {@code t} to {@code p} as a token of its own, as the
+     * printer's protocol would for a keyword, number, boolean or nil.
+     *
+     * @return {@code p}
+     */
+    static Printer token(Printer p, String t) {
+        return p.softspace().append(t).softspace();
+    }
+
+    abstract static class Slot {
+        final Keyword key;
+        // The key as printed, made once.
+        final String keyText;
+        final Field field;
+
+        Slot(Keyword key, Field field) {
+            this.key = key;
+            this.keyText = key.toString();
+            this.field = field;
+        }
+
+        /**
+         * Read the entry's value from {@code r}, which is just past its
+         * key, into the field of {@code o}.
+         */
+        final void read(EventReader r, Object o) {
+            try {
+                readInto(r, o);
+            } catch (IllegalAccessException e) {
+                throw new EdnException(e);
+            }
+        }
+
+        abstract void readInto(EventReader r, Object o) throws IllegalAccessException;
+
+        /**
+         * Print the field of {@code o} as the entry's value.
+         */
+        abstract void write(Printer p, Object o) throws IllegalAccessException;
+
+        /**
+         * The next event, which must be an atomic value of class
+         * {@code c}; the value is returned.
+         */
+        final Object atom(EventReader r, Class<?> c) {
+            Event e = r.next();
+            Object v = r.getValue();
+            if (e != Event.VALUE || !c.isInstance(v)) {
+                throw mismatch(r, e, c.getSimpleName());
+            }
+            return v;
+        }
+
+        final EdnException mismatch(EventReader r, Event e, String expected) {
+            return new EdnException("Expected " + expected + " for " + key
+                                    + ", but found " + describe(r, e));
+        }
+    }
+
+    static final class LongSlot extends Slot {
+        LongSlot(Keyword key, Field field) {
+            super(key, field);
+        }
+
+        void readInto(EventReader r, Object o) throws IllegalAccessException {
+            field.setLong(o, (Long) atom(r, Long.class));
+        }
+
+        void write(Printer p, Object o) throws IllegalAccessException {
+            token(p, String.valueOf(field.getLong(o)));
+        }
+    }
+
+    static final class IntSlot extends Slot {
+        IntSlot(Keyword key, Field field) {
+            super(key, field);
+        }
+
+        void readInto(EventReader r, Object o) throws IllegalAccessException {
+            long v = (Long) atom(r, Long.class);
+            if (v != (int) v) {
+                throw new EdnException(v + " is out of range for " + key);
+            }
+            field.setInt(o, (int) v);
+        }
+
+        void write(Printer p, Object o) throws IllegalAccessException {
+            token(p, String.valueOf(field.getInt(o)));
+        }
+    }
+
+    static final class DoubleSlot extends Slot {
+        DoubleSlot(Keyword key, Field field) {
+            super(key, field);
+        }
+
+        void readInto(EventReader r, Object o) throws IllegalAccessException {
+            field.setDouble(o, ((Number) atom(r, Number.class)).doubleValue());
+        }
+
+        void write(Printer p, Object o) throws IllegalAccessException {
+            token(p, String.valueOf(field.getDouble(o)));
+        }
+    }
+
+    static final class BooleanSlot extends Slot {
+        BooleanSlot(Keyword key, Field field) {
+            super(key, field);
+        }
+
+        void readInto(EventReader r, Object o) throws IllegalAccessException {
+            field.setBoolean(o, (Boolean) atom(r, Boolean.class));
+        }
+
+        void write(Printer p, Object o) throws IllegalAccessException {
+            token(p, field.getBoolean(o) ? "true" : "false");
+        }
+    }
+
+    static final class LongArraySlot extends Slot {
+        LongArraySlot(Keyword key, Field field) {
+            super(key, field);
+        }
+
+        void readInto(EventReader r, Object o) throws IllegalAccessException {
+            Event e = r.next();
+            if (e == Event.VALUE && r.getValue() == null) {
+                field.set(o, null);
+                return;
+            }
+            if (e != Event.BEGIN_VECTOR && e != Event.BEGIN_LIST) {
+                throw mismatch(r, e, "a vector of integers");
+            }
+            long[] a = new long[8];
+            int n = 0;
+            while ((e = r.next()) != Event.END_COLLECTION) {
+                if (e != Event.VALUE || !(r.getValue() instanceof Long)) {
+                    throw mismatch(r, e, "an integer");
+                }
+                if (n == a.length) {
+                    a = Arrays.copyOf(a, n * 2);
+                }
+                a[n++] = (Long) r.getValue();
+            }
+            field.set(o, Arrays.copyOf(a, n));
+        }
+
+        void write(Printer p, Object o) throws IllegalAccessException {
+            long[] a = (long[]) field.get(o);
+            if (a == null) {
+                token(p, "nil");
+                return;
+            }
+            p.append('[');
+            for (long v : a) {
+                token(p, String.valueOf(v));
+            }
+            p.append(']');
+        }
+    }
+
+    static final class DoubleArraySlot extends Slot {
+        DoubleArraySlot(Keyword key, Field field) {
+            super(key, field);
+        }
+
+        void readInto(EventReader r, Object o) throws IllegalAccessException {
+            Event e = r.next();
+            if (e == Event.VALUE && r.getValue() == null) {
+                field.set(o, null);
+                return;
+            }
+            if (e != Event.BEGIN_VECTOR && e != Event.BEGIN_LIST) {
+                throw mismatch(r, e, "a vector of numbers");
+            }
+            double[] a = new double[8];
+            int n = 0;
+            while ((e = r.next()) != Event.END_COLLECTION) {
+                if (e != Event.VALUE || !(r.getValue() instanceof Number)) {
+                    throw mismatch(r, e, "a number");
+                }
+                if (n == a.length) {
+                    a = Arrays.copyOf(a, n * 2);
+                }
+                a[n++] = ((Number) r.getValue()).doubleValue();
+            }
+            field.set(o, Arrays.copyOf(a, n));
+        }
+
+        void write(Printer p, Object o) throws IllegalAccessException {
+            double[] a = (double[]) field.get(o);
+            if (a == null) {
+                token(p, "nil");
+                return;
+            }
+            p.append('[');
+            for (double v : a) {
+                token(p, String.valueOf(v));
+            }
+            p.append(']');
+        }
+    }
+
+    static final class ObjectSlot extends Slot {
+        private final Class<?> type;
+
+        ObjectSlot(Keyword key, Field field) {
+            super(key, field);
+            this.type = field.getType();
+        }
+
+        void readInto(EventReader r, Object o) throws IllegalAccessException {
+            Object v = r.readValue();
+            if (v != null && !type.isInstance(v)) {
+                throw new EdnException("Expected " + type.getSimpleName() + " for " + key
+                                       + ", but found " + v.getClass().getName() + " " + v);
+            }
+            field.set(o, v);
+        }
+
+        void write(Printer p, Object o) throws IllegalAccessException {
+            p.printValue(field.get(o));
+        }
+    }
+
+    static final class NestedSlot extends Slot {
+        private final Schema<?> schema;
+
+        NestedSlot(Keyword key, Field field, Schema<?> schema) {
+            super(key, field);
+            this.schema = schema;
+        }
+
+        void readInto(EventReader r, Object o) throws IllegalAccessException {
+            field.set(o, schema.read(r, r.next()));
+        }
+
+        @SuppressWarnings("unchecked")
+        void write(Printer p, Object o) throws IllegalAccessException {
+            ((Schema<Object>) schema).write(field.get(o), p);
+        }
+    }
+
+    static final class NestedArraySlot extends Slot {
+        private final Schema<?> schema;
+        private final boolean array;
+
+        NestedArraySlot(Keyword key, Field field, Schema<?> schema, boolean array) {
+            super(key, field);
+            this.schema = schema;
+            this.array = array;
+        }
+
+        void readInto(EventReader r, Object o) throws IllegalAccessException {
+            Event e = r.next();
+            if (e == Event.VALUE && r.getValue() == null) {
+                field.set(o, null);
+                return;
+            }
+            if (e != Event.BEGIN_VECTOR && e != Event.BEGIN_LIST) {
+                throw mismatch(r, e, "a vector of " + schema.type.getSimpleName());
+            }
+            List<Object> l = new ArrayList<Object>();
+            while ((e = r.next()) != Event.END_COLLECTION) {
+                l.add(schema.read(r, e));
+            }
+            if (array) {
+                Object[] a = (Object[]) Array.newInstance(schema.type, l.size());
+                field.set(o, l.toArray(a));
+            } else {
+                field.set(o, l);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void write(Printer p, Object o) throws IllegalAccessException {
+            Object v = field.get(o);
+            if (v == null) {
+                token(p, "nil");
+                return;
+            }
+            Schema<Object> s = (Schema<Object>) schema;
+            p.append('[');
+            if (array) {
+                for (Object e : (Object[]) v) {
+                    s.write(e, p);
+                }
+            } else {
+                for (Object e : (List<?>) v) {
+                    s.write(e, p);
+                }
+            }
+            p.append(']');
+        }
+    }
+}
@@ -204,6 +204,13 @@ public abstract class AbstractIOReactor implements IOReactor {
         return this.status;
     }
 
+    /**
+     * Returns the number of I/O sessions currently managed by this I/O reactor.
+     */
+    public int getSessionCount() {
+        return this.sessions.size();
+    }
+
     /**
      * Returns <code>true</code> if interest Ops queueing is enabled, <code>false</code> otherwise.
      *
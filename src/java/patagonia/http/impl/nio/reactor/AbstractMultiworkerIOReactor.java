@@ -39,7 +39,9 @@ import java.nio.channels.Selector;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ThreadFactory;
 
@@ -231,6 +233,25 @@ public abstract class AbstractMultiworkerIOReactor implements IOReactor {
         return this.status;
     }
 
+    /**
+     * Returns the number of I/O sessions multiplexed by each worker I/O
+     * reactor, keyed by the name of its dispatch thread. Workers that have
+     * not been started yet are omitted.
+     */
+    public Map<String, Integer> getSessionCounts() {
+        Map<String, Integer> counts = new LinkedHashMap<String, Integer>();
+        synchronized (this.statusLock) {
+            for (int i = 0; i < this.workerCount; i++) {
+                BaseIOReactor dispatcher = this.dispatchers[i];
+                Thread thread = this.threads[i];
+                if (dispatcher != null && thread != null) {
+                    counts.put(thread.getName(), Integer.valueOf(dispatcher.getSessionCount()));
+                }
+            }
+        }
+        return counts;
+    }
+
     /**
      * Returns the audit log containing exceptions thrown by the I/O reactor
      * prior and in the course of the reactor shutdown.
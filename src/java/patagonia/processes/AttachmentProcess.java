@@ -2,12 +2,12 @@ package patagonia.processes;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.util.List;
 import java.util.UUID;
 
 
 import patagonia.IClient;
-import patagonia.Util;
 import patagonia.callbacks.Callback;
 import patagonia.edn.parser.Parseable;
 import patagonia.edn.parser.Parser;
@@ -16,42 +16,65 @@ import patagonia.http.HttpResponse;
 
 public class AttachmentProcess extends Callback {
     private IClient client;
+    private volatile boolean attached;
     
 	public AttachmentProcess(IClient client) {
 		this.client = client;
 	}
 	
+	/**
+	 * Takes the channel from the first value of the response: a uuid, or
+	 * a vector of them.
+	 */
+	public void received(Object value) {
+		if (this.attached) {
+			return;
+		}
+		if (value instanceof List && !((List<?>) value).isEmpty())
+			value = ((List<?>) value).get(0);
+		if (!(value instanceof UUID))
+			throw new RuntimeException("Could not attach!");
+		this.client.setChannel((UUID) value);
+		this.attached = true;
+	}
+	
 	public void completed(InputStream inputStream) {
-    	try {
-    		String str = Util.slurp(inputStream);
-			Parseable pbr = Parsers.newParseable(str);
+		try {
+			Parseable pbr = Parsers.newParseable(new InputStreamReader(inputStream, "UTF-8"));
 			Parser p = Parsers.newParser(Parsers.defaultConfiguration());
-			Object uuids = p.nextValue(pbr);
-			
-			if (uuids instanceof List)
-				this.client.setChannel((UUID) ((List)uuids).get(0));
-			else if (uuids instanceof UUID)
-				this.client.setChannel((UUID) uuids);
-			else
-				throw new RuntimeException("Could not attach!");
-			
+			this.received(p.nextValue(pbr));
+			pbr.close();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
-    }
+	}
 	
-    public void completed(HttpResponse response) {
-    	try {
+	/**
+	 * With an {@link patagonia.EdnResponseConsumer} in front, the channel
+	 * has already been {@linkplain #received(Object) received} and the
+	 * response carries no entity.
+	 */
+	public void completed(HttpResponse response) {
+		if (response.getEntity() == null) {
+			if (!this.attached)
+				throw new RuntimeException("Could not attach!");
+			return;
+		}
+		try {
 			this.completed(response.getEntity().getContent());
 		} catch (IllegalStateException e) {
 			e.printStackTrace();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
-    }
+	}
 
 	public static String url(String proto, String host, int port) {
-		return proto + "://" + host + ":" + port + "/hi";
+		return proto + "://" + host + ":" + port + path();
+	}
+
+	public static String path() {
+		return "/hi";
 	}
 
 }
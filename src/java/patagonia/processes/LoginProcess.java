@@ -14,7 +14,11 @@ public class LoginProcess extends Callback {
     private Client client;
     
     public static String url(String proto, String host, int port, String name, String email) {
-    	return proto + "://" + host + ":" + port + "/" + "login?name=" + name + "&email=" + email;
+    	return proto + "://" + host + ":" + port + path(name, email);
+    }
+    
+    public static String path(String name, String email) {
+    	return "/" + "login?name=" + name + "&email=" + email;
     }
 	
 	public LoginProcess(String name, String email, final Client client) {